@@ -29,11 +29,20 @@ public class AudioDataStructure {
     private final AudioFileType audioFileType;
     private ID3Container id3Data;
     private final long fileSize;
+    private final long lastModified; // 0 if unknown, which always counts as stale
     private boolean qualityErrorOnThis = false;
+    private long version; // Bumped on every change, including changes made to the ID3Container
+    private ChangeListener listener;
+
+    // Make a lambda for this
+    public interface ChangeListener {
+        void changed(AudioDataStructure data);
+    }
 
     // Requires: filename points to a file (obviously)
     // Modifies: this
     // Effects:  creates a data structure for the audio from a file
+    //           only reads file headers and tags, no audio is decoded
     public AudioDataStructure(String filename) {
         String fileSystemFilename;
         try {
@@ -47,16 +56,19 @@ public class AudioDataStructure {
             bitrate = -1;
             sampleSize = -1;
             fileSize = -1;
+            lastModified = 0;
             audioFileType = AudioFileType.EMPTY;
             return;
         }
         fileSize = new File(filename).length(); // Will exist
-        audioDecoder.prepareToPlayAudio();
+        lastModified = new File(filename).lastModified();
+        audioDecoder.probeAudio(); // Only need the headers, don't spin up the codec
         audioFileType = audioDecoder.getFileType();
         AudioFormat format = audioDecoder.getAudioOutputFormat();
         bitrate = (long) (format.getSampleSizeInBits() * format.getSampleRate() * format.getChannels());
         sampleSize = format.getSampleSizeInBits();
         id3Data = audioDecoder.getID3();
+        watchID3();
         audioDecoder.closeAudioFile();
     }
 
@@ -67,16 +79,36 @@ public class AudioDataStructure {
 
     // Modifies: this
     // Effects:  creates a data structure for the audio from known data (loading from database)
-    //           ID3 string variant
+    //           ID3 string variant, modification time is unknown
     public AudioDataStructure(String filename, long fileSize, long bitrate,
                               long sampleSize, AudioFileType fileType,
                               JSONObject id3Data) {
+        this(filename, fileSize, 0, bitrate, sampleSize, fileType, id3Data);
+    }
+
+    // Modifies: this
+    // Effects:  creates a data structure for the audio from known data (loading from database)
+    //           ID3 string variant
+    public AudioDataStructure(String filename, long fileSize, long lastModified, long bitrate,
+                              long sampleSize, AudioFileType fileType,
+                              JSONObject id3Data) {
+        this(filename, fileSize, lastModified, bitrate, sampleSize, fileType, new ID3Container(id3Data));
+    }
+
+    // Modifies: this
+    // Effects:  creates a data structure for the audio from known data (loading from database)
+    //           ID3Container variant
+    public AudioDataStructure(String filename, long fileSize, long lastModified, long bitrate,
+                              long sampleSize, AudioFileType fileType,
+                              ID3Container id3Data) {
         this.filename = filename;
         this.fileSize = fileSize;
+        this.lastModified = lastModified;
         this.bitrate = bitrate;
         this.sampleSize = sampleSize;
         audioFileType = fileType;
-        this.id3Data = new ID3Container(id3Data);
+        this.id3Data = id3Data;
+        watchID3();
     }
 
     // Effects: gets ID3Container
@@ -119,6 +151,18 @@ public class AudioDataStructure {
         return fileSize;
     }
 
+    // Effects: gets file modification time when this was created, 0 if unknown
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    // Effects: returns true if the file on disk doesn't match the size and modification time recorded here
+    //          only stats the file, doesn't open it
+    public boolean isStale() {
+        File file = new File(filename);
+        return lastModified == 0 || file.lastModified() != lastModified || file.length() != fileSize;
+    }
+
     // Effects: encodes data
     public JSONObject encode() {
         JSONObject out = new JSONObject();
@@ -127,6 +171,7 @@ public class AudioDataStructure {
         out.put("bitrate", bitrate);
         out.put("samplesize", sampleSize);
         out.put("filesize", fileSize);
+        out.put("modified", lastModified);
         try {
             out.put("ID3data", id3Data.encode());
         } catch (NullPointerException e) {
@@ -144,8 +189,9 @@ public class AudioDataStructure {
         long bitrate = getLong(data.get("bitrate"));
         long filesize = getLong(data.get("filesize"));
         long samplesize = getLong(data.get("samplesize"));
+        long modified = data.has("modified") ? getLong(data.get("modified")) : 0; // Older databases lack it
         JSONObject id3 = (JSONObject) data.get("ID3data");
-        return new AudioDataStructure(filename, filesize, bitrate, samplesize, filetype, id3);
+        return new AudioDataStructure(filename, filesize, modified, bitrate, samplesize, filetype, id3);
     }
 
     // Effects: returns long representation of value
@@ -183,7 +229,40 @@ public class AudioDataStructure {
     // Modifies: this
     // Effects:  replaces ID3Container
     public void updateID3(ID3Container nu) {
+        if (id3Data != null) {
+            id3Data.setChangeListener(null);
+        }
         id3Data = nu;
+        watchID3();
+        changed();
+    }
+
+    // Modifies: this
+    // Effects:  listens for changes made directly to the ID3Container
+    private void watchID3() {
+        if (id3Data != null) {
+            id3Data.setChangeListener(this::changed);
+        }
+    }
+
+    // Modifies: this
+    // Effects:  records a change and tells the listener about it
+    private void changed() {
+        version++;
+        if (listener != null) {
+            listener.changed(this);
+        }
+    }
+
+    // Effects: returns number of changes made to this since it was created
+    public long getVersion() {
+        return version;
+    }
+
+    // Modifies: this
+    // Effects:  sets listener told about every change, null removes it
+    public void setChangeListener(ChangeListener listener) {
+        this.listener = listener;
     }
 
     // Effects: returns filename hashcode
@@ -3,6 +3,7 @@ package audio;
 import org.jaudiotagger.tag.images.Artwork;
 
 import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
 
 // Audio decoder interface
 // Most functions explain themselves
@@ -21,6 +22,12 @@ public interface AudioDecoder {
     // Effects:  loads audio and makes all other functions valid
     void prepareToPlayAudio();
 
+    // Modifies: this
+    // Effects:  reads the audio format and tags from the file headers without decoding any audio
+    //           getAudioOutputFormat() and getID3() are valid afterwards, nothing else is
+    //           much cheaper than prepareToPlayAudio(), use this if you only need metadata
+    void probeAudio();
+
     // Requires: prepareToPlayAudio() called
     // Modifies: this
     // Effects:  unloads audio file, to save memory
@@ -29,7 +36,27 @@ public interface AudioDecoder {
 
     // Requires: prepareToPlayAudio() called
     // Effects:  decodes and returns the next audio sample
-    AudioSample getNextSample();
+    //           allocates a new sample every call, loops should use readSamples() instead
+    default AudioSample getNextSample() {
+        AudioSample sample = new AudioSample();
+        readSamples(sample);
+        return sample;
+    }
+
+    // Requires: prepareToPlayAudio() called
+    // Modifies: this, reuse
+    // Effects:  decodes the next audio sample into reuse, returns its length in bytes (0 if there isn't one)
+    //           reuse may point at a buffer owned by the decoder, which gets overwritten by the next read
+    int readSamples(AudioSample reuse);
+
+    // Requires: prepareToPlayAudio() called
+    // Modifies: this
+    // Effects:  returns the next audio sample as a read-only view of the decoder's data, without copying it
+    //           the view is empty at the end of the file, and only valid until the next read
+    //           returns null (and reads nothing) if the decoder can't do this, use readSamples() instead
+    default ByteBuffer readBuffer() {
+        return null;
+    }
 
     // Requires: prepareToPlayAudio() called
     //           0 <= time <= audio length
@@ -25,8 +25,14 @@ public class AudioFileLoader {
     public static AudioDecoder loadFile(String filename) {
         switch (getAudioFiletype(filename)) {
             case AIFF:
-                return new Aiff(filename);
+                if (MappedPcm.canDecode(filename)) {
+                    return new MappedPcm(filename, AudioFileType.AIFF);
+                }
+                return new Aiff(filename); // Compressed AIFC and the like
             case PCM_WAV:
+                if (MappedPcm.canDecode(filename)) {
+                    return new MappedPcm(filename, AudioFileType.PCM_WAV);
+                }
                 return new WAV(filename);
             case MPEG:
             case MP3: // Encoder catchall
@@ -36,18 +36,35 @@ public class AudioSample {
         return length;
     }
 
+    // Modifies: this
+    // Effects:  points this sample at data, so decoders can refill it instead of allocating
+    //           returns length
+    public int set(byte[] data, int length) {
+        this.data = data;
+        this.length = length;
+        return length;
+    }
+
+    // Modifies: this
+    // Effects:  empties this sample, keeping its buffer around, returns 0
+    public int clear() {
+        length = 0;
+        return 0;
+    }
+
     // Modifies: this
     // Effects:  reduces sample bit depth by 8 bits (remove 1 byte)
-    //           implementation looks cursed due to the fact that I'm never allocating a new object
+    //           works in place, I'm never allocating a new object here
     //           (I tried it that way, anything above 16 bit was unlistenable due to slowdown)
     public void reduceBitdepth(int currentSampleBitdepth, boolean bigEndian) {
-        int j = 0;
-        for (int i = 0; i < data.length; i++) {
-            if ((i + (bigEndian ? 1 : 0)) % currentSampleBitdepth != 0) {
-                data[j] = data[i];
-                j++;
-            }
-        }
-        length = length * (currentSampleBitdepth - 1) / currentSampleBitdepth;
+        reduceBitdepth(currentSampleBitdepth, currentSampleBitdepth - 1, bigEndian);
+    }
+
+    // Requires: 0 < targetBytes <= currentBytes
+    // Modifies: this
+    // Effects:  reduces samples from currentBytes to targetBytes bytes each in one pass, keeping the most
+    //           significant bytes
+    public void reduceBitdepth(int currentBytes, int targetBytes, boolean bigEndian) {
+        length = PcmConversion.narrow(data, 0, length, currentBytes, targetBytes, bigEndian);
     }
 }
@@ -2,13 +2,22 @@ package audio;
 
 import org.json.JSONObject;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 // Container for ID3 data
 public class ID3Container {
     private final Map<String, Object> id3data;
+    private long version; // Bumped on every change
+    private ChangeListener listener;
+
+    // Make a lambda for this
+    public interface ChangeListener {
+        void changed();
+    }
 
     // Effects: creates an empty JSON object to place data
     public ID3Container() {
@@ -35,7 +44,7 @@ public class ID3Container {
     // Effects:  sets specified key to specified value
     //           specific definition for long fixes issues with integers
     public void setID3Data(String key, long value) {
-        id3data.put(key, value);
+        put(key, value);
     }
 
     // Modifies: this
@@ -44,7 +53,7 @@ public class ID3Container {
         if (value == null || value.toString().isEmpty()) {
             return;
         }
-        id3data.put(key, value);
+        put(key, value);
     }
 
     // Modifies: this
@@ -54,12 +63,45 @@ public class ID3Container {
             return;
         }
         try {
-            id3data.put(key, Long.parseLong(value));
+            put(key, Long.parseLong(value));
         } catch (NumberFormatException e) {
-            id3data.put(key, value);
+            put(key, value);
         }
     }
 
+    // Modifies: this
+    // Effects:  sets key to value, only counts as a change if the value is actually different
+    private void put(String key, Object value) {
+        if (!Objects.equals(id3data.put(key, value), value)) {
+            changed();
+        }
+    }
+
+    // Modifies: this
+    // Effects:  records a change and tells the listener about it
+    private void changed() {
+        version++;
+        if (listener != null) {
+            listener.changed();
+        }
+    }
+
+    // Effects: returns number of changes made to this container
+    public long getVersion() {
+        return version;
+    }
+
+    // Modifies: this
+    // Effects:  sets listener told about every change, null removes it
+    public void setChangeListener(ChangeListener listener) {
+        this.listener = listener;
+    }
+
+    // Effects: returns all keys with data set, read-only
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(id3data.keySet());
+    }
+
     // Effects: encodes data into string
     //          yes I'm making one of these myself
     public JSONObject encode() {
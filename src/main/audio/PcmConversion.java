@@ -0,0 +1,196 @@
+package audio;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+// Conversions between raw PCM bytes and samples, shared by the encoders and playback
+// Every sample size and byte order gets its own loop, picked once per call rather than once per sample,
+// so the loops are straight-line code the JIT can unroll; unsigned audio is an XOR instead of a branch
+// Nothing here allocates, everything works in place or into arrays the caller reuses
+public final class PcmConversion {
+    private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class,
+            ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.BIG_ENDIAN);
+
+    private PcmConversion() {
+    }
+
+    // Requires: 1 <= bytesPerSample <= 4, dst has room for len / bytesPerSample samples after dstOff
+    // Modifies: dst
+    // Effects:  decodes the whole samples in len bytes of src at off into sign extended ints in dst at dstOff
+    //           unsigned audio is centered around 0, returns number of samples decoded
+    public static int toInt(byte[] src, int off, int len, int[] dst, int dstOff,
+                            int bytesPerSample, boolean bigEndian, boolean signed) {
+        int count = len / bytesPerSample;
+        int flip = signed ? 0 : 1 << (bytesPerSample * 8 - 1); // Moves unsigned audio to signed
+        switch (bytesPerSample) {
+            case 1:
+                toInt8(src, off, count, dst, dstOff, flip);
+                break;
+            case 2:
+                if (bigEndian) {
+                    toInt16BE(src, off, count, dst, dstOff, flip);
+                } else {
+                    toInt16LE(src, off, count, dst, dstOff, flip);
+                }
+                break;
+            case 3:
+                if (bigEndian) {
+                    toInt24BE(src, off, count, dst, dstOff, flip);
+                } else {
+                    toInt24LE(src, off, count, dst, dstOff, flip);
+                }
+                break;
+            case 4:
+                if (bigEndian) {
+                    toInt32BE(src, off, count, dst, dstOff, flip);
+                } else {
+                    toInt32LE(src, off, count, dst, dstOff, flip);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported sample size: " + bytesPerSample);
+        }
+        return count;
+    }
+
+    // Requires: 0 < toBytes <= fromBytes
+    // Modifies: data
+    // Effects:  cuts every sample in len bytes of data at off down to its toBytes most significant bytes,
+    //           packing them together in place, returns the new length in bytes
+    public static int narrow(byte[] data, int off, int len, int fromBytes, int toBytes, boolean bigEndian) {
+        int count = len / fromBytes;
+        if (toBytes == fromBytes) {
+            return count * toBytes;
+        }
+        int skip = bigEndian ? 0 : fromBytes - toBytes; // Least significant bytes come first in little endian
+        if (toBytes == 2) {
+            narrowTo16(data, off, count, fromBytes, skip);
+        } else {
+            narrowTo(data, off, count, fromBytes, toBytes, skip);
+        }
+        return count * toBytes;
+    }
+
+    // Requires: 1 <= bytesPerSample <= 4
+    // Modifies: data
+    // Effects:  reverses the byte order of every sample in len bytes of data at off
+    public static void swapByteOrder(byte[] data, int off, int len, int bytesPerSample) {
+        int end = off + len / bytesPerSample * bytesPerSample;
+        switch (bytesPerSample) {
+            case 1:
+                break;
+            case 2:
+                for (int i = off; i < end; i += 2) {
+                    SHORT_LE.set(data, i, (short) SHORT_BE.get(data, i));
+                }
+                break;
+            case 3:
+                for (int i = off; i < end; i += 3) {
+                    byte first = data[i];
+                    data[i] = data[i + 2];
+                    data[i + 2] = first;
+                }
+                break;
+            case 4:
+                for (int i = off; i < end; i += 4) {
+                    INT_LE.set(data, i, (int) INT_BE.get(data, i));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported sample size: " + bytesPerSample);
+        }
+    }
+
+    // Modifies: data
+    // Effects:  switches every sample in len bytes of data at off between signed and unsigned
+    public static void flipSign(byte[] data, int off, int len, int bytesPerSample, boolean bigEndian) {
+        int end = off + len / bytesPerSample * bytesPerSample;
+        for (int i = off + (bigEndian ? 0 : bytesPerSample - 1); i < end; i += bytesPerSample) {
+            data[i] ^= (byte) 0x80; // Sign bit lives in the most significant byte
+        }
+    }
+
+    // Modifies: dst
+    // Effects:  decodes 8 bit samples
+    private static void toInt8(byte[] src, int off, int count, int[] dst, int dstOff, int flip) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOff + i] = (byte) (src[off + i] ^ flip);
+        }
+    }
+
+    // Modifies: dst
+    // Effects:  decodes little endian 16 bit samples
+    private static void toInt16LE(byte[] src, int off, int count, int[] dst, int dstOff, int flip) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOff + i] = (short) ((short) SHORT_LE.get(src, off + i * 2) ^ flip);
+        }
+    }
+
+    // Modifies: dst
+    // Effects:  decodes big endian 16 bit samples
+    private static void toInt16BE(byte[] src, int off, int count, int[] dst, int dstOff, int flip) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOff + i] = (short) ((short) SHORT_BE.get(src, off + i * 2) ^ flip);
+        }
+    }
+
+    // Modifies: dst
+    // Effects:  decodes little endian 24 bit samples, the shifts sign extend them
+    private static void toInt24LE(byte[] src, int off, int count, int[] dst, int dstOff, int flip) {
+        for (int i = 0, j = off; i < count; i++, j += 3) {
+            int raw = (src[j] & 0xFF) | (src[j + 1] & 0xFF) << 8 | (src[j + 2] & 0xFF) << 16;
+            dst[dstOff + i] = (raw ^ flip) << 8 >> 8;
+        }
+    }
+
+    // Modifies: dst
+    // Effects:  decodes big endian 24 bit samples, the shifts sign extend them
+    private static void toInt24BE(byte[] src, int off, int count, int[] dst, int dstOff, int flip) {
+        for (int i = 0, j = off; i < count; i++, j += 3) {
+            int raw = (src[j] & 0xFF) << 16 | (src[j + 1] & 0xFF) << 8 | (src[j + 2] & 0xFF);
+            dst[dstOff + i] = (raw ^ flip) << 8 >> 8;
+        }
+    }
+
+    // Modifies: dst
+    // Effects:  decodes little endian 32 bit samples
+    private static void toInt32LE(byte[] src, int off, int count, int[] dst, int dstOff, int flip) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOff + i] = (int) INT_LE.get(src, off + i * 4) ^ flip;
+        }
+    }
+
+    // Modifies: dst
+    // Effects:  decodes big endian 32 bit samples
+    private static void toInt32BE(byte[] src, int off, int count, int[] dst, int dstOff, int flip) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOff + i] = (int) INT_BE.get(src, off + i * 4) ^ flip;
+        }
+    }
+
+    // Modifies: data
+    // Effects:  packs the 2 bytes at skip of every sample together, the usual case for playback
+    private static void narrowTo16(byte[] data, int off, int count, int fromBytes, int skip) {
+        for (int i = 0, from = off + skip, to = off; i < count; i++, from += fromBytes, to += 2) {
+            data[to] = data[from];
+            data[to + 1] = data[from + 1];
+        }
+    }
+
+    // Modifies: data
+    // Effects:  packs the toBytes bytes at skip of every sample together
+    private static void narrowTo(byte[] data, int off, int count, int fromBytes, int toBytes, int skip) {
+        for (int i = 0, from = off + skip, to = off; i < count; i++, from += fromBytes, to += toBytes) {
+            for (int k = 0; k < toBytes; k++) {
+                data[to + k] = data[from + k];
+            }
+        }
+    }
+}
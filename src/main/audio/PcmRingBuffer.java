@@ -0,0 +1,179 @@
+package audio;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+// Single-producer single-consumer ring buffer for decoded PCM audio
+// Allocated once, neither side ever takes a lock: each only parks when the buffer is full or empty
+// and gets woken up by the other side
+public class PcmRingBuffer {
+    private static final long MAX_PARK_NANOS = 10_000_000; // Safety net, unpark() should always come first
+    private final byte[] buffer;
+    private volatile long written = 0; // Only moved by the producer
+    private volatile long read = 0; // Only moved by the consumer
+    private volatile long discardUntil = 0;
+    private volatile boolean closed = false;
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+    private volatile boolean expectingData = false;
+    private volatile int underruns = 0;
+
+    // Requires: capacity > 0
+    // Effects:  creates an empty buffer holding capacity bytes
+    public PcmRingBuffer(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    // Effects: returns the buffer size in bytes
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    // Effects: returns the number of bytes waiting to be read
+    public int getBuffered() {
+        return (int) Math.max(written - Math.max(read, discardUntil), 0);
+    }
+
+    // Effects: returns total number of bytes ever written
+    public long getWritePosition() {
+        return written;
+    }
+
+    // Effects: returns total number of bytes ever read or discarded
+    public long getReadPosition() {
+        return Math.max(read, discardUntil);
+    }
+
+    // Effects: returns how many times the consumer found the buffer empty mid-playback
+    public int getUnderruns() {
+        return underruns;
+    }
+
+    // Effects: returns true if close() was called
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Requires: only called from the producer thread
+    // Modifies: this
+    // Effects:  copies len bytes from data into the buffer, waiting for space if needed
+    //           returns false if the buffer was closed before everything was written
+    public boolean write(byte[] data, int off, int len) {
+        while (len > 0) {
+            if (closed) {
+                return false;
+            }
+            int free = buffer.length - (int) (written - read);
+            if (free == 0) {
+                waitingProducer = Thread.currentThread();
+                if (written - read == buffer.length && !closed) {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+                waitingProducer = null;
+                continue;
+            }
+            int count = Math.min(len, free);
+            int start = (int) (written % buffer.length);
+            int first = Math.min(count, buffer.length - start);
+            System.arraycopy(data, off, buffer, start, first);
+            System.arraycopy(data, off + first, buffer, 0, count - first);
+            written += count;
+            off += count;
+            len -= count;
+            wake(waitingConsumer);
+        }
+        return true;
+    }
+
+    // Requires: only called from the producer thread
+    // Modifies: this, data
+    // Effects:  copies the remaining bytes of data into the buffer, waiting for space if needed
+    //           returns false if the buffer was closed before everything was written
+    public boolean write(ByteBuffer data) {
+        while (data.hasRemaining()) {
+            if (closed) {
+                return false;
+            }
+            int free = buffer.length - (int) (written - read);
+            if (free == 0) {
+                waitingProducer = Thread.currentThread();
+                if (written - read == buffer.length && !closed) {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+                waitingProducer = null;
+                continue;
+            }
+            int count = Math.min(data.remaining(), free);
+            int start = (int) (written % buffer.length);
+            int first = Math.min(count, buffer.length - start);
+            data.get(buffer, start, first);
+            data.get(buffer, 0, count - first);
+            written += count;
+            wake(waitingConsumer);
+        }
+        return true;
+    }
+
+    // Requires: only called from the consumer thread, len >= frameSize > 0
+    // Modifies: this
+    // Effects:  copies up to len bytes (whole frames only) into out, waiting for data if needed
+    //           returns number of bytes read, or -1 once the buffer is closed and drained
+    public int read(byte[] out, int off, int len, int frameSize) {
+        boolean starved = false;
+        while (true) {
+            long target = discardUntil;
+            if (target > read) {
+                read = target;
+            }
+            int available = (int) (written - read);
+            int count = Math.min(available, len);
+            count -= count % frameSize;
+            if (count > 0) {
+                int start = (int) (read % buffer.length);
+                int first = Math.min(count, buffer.length - start);
+                System.arraycopy(buffer, start, out, off, first);
+                System.arraycopy(buffer, 0, out, off + first, count - first);
+                read += count;
+                expectingData = true;
+                wake(waitingProducer);
+                return count;
+            }
+            if (closed) {
+                return -1; // Any partial frame left over can't be played anyway
+            }
+            if (!starved && expectingData) {
+                underruns++;
+            }
+            starved = true;
+            waitingConsumer = Thread.currentThread();
+            if (written - read < frameSize && !closed) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            }
+            waitingConsumer = null;
+        }
+    }
+
+    // Modifies: this
+    // Effects:  drops everything written so far, the consumer continues with whatever is written next
+    //           safe to call from any thread, use it after seeking
+    public void discard() {
+        expectingData = false;
+        discardUntil = written;
+        wake(waitingProducer);
+    }
+
+    // Modifies: this
+    // Effects:  tells both sides no more data is coming, waking them up
+    public void close() {
+        closed = true;
+        wake(waitingProducer);
+        wake(waitingConsumer);
+    }
+
+    // Effects: wakes thread if it's parked
+    private static void wake(Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -65,6 +65,8 @@ public class Aiff implements AudioDecoder {
             int frameSize = format.getFrameSize();
             bytesPerSecond = frameSize * audioFrameRate;
             duration = f.getAudioHeader().getPreciseTrackLength();
+            numberBytesRead = 0;
+            bytesPlayed = 0;
             EventLog.getInstance().logEvent(new Event("AIFF decoder ready!"));
             ready = true;
         } catch (Exception e) {
@@ -72,6 +74,18 @@ public class Aiff implements AudioDecoder {
         }
     }
 
+    // Modifies: this
+    // Effects:  reads audio format without decoding any audio
+    @Override
+    public void probeAudio() {
+        try {
+            file = new File(filename);
+            format = new AiffAudioFileReader().getAudioFileFormat(file).getFormat();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // Requires: prepareToPlayAudio() called
     // Modifies: this
     // Effects:  unloads audio file, to save memory
@@ -83,9 +97,11 @@ public class Aiff implements AudioDecoder {
     }
 
     // Requires: prepareToPlayAudio() called
-    // Effects:  decodes and returns the next audio sample
+    // Modifies: this, reuse
+    // Effects:  decodes the next audio sample into reuse, returns its length in bytes (0 if there isn't one)
+    //           reuse may point at an internal buffer, which gets overwritten by the next read
     @Override
-    public AudioSample getNextSample() {
+    public int readSamples(AudioSample reuse) {
         numberBytesRead = -2;
         while (moreSamples()) {
             ExceptionIgnore.ignoreExc(() -> numberBytesRead = in.read(data, 0, data.length));
@@ -93,9 +109,9 @@ public class Aiff implements AudioDecoder {
                 continue;
             } // Yes I have to do this to track time
             bytesPlayed += numberBytesRead;
-            return new AudioSample(data, numberBytesRead);
+            return reuse.set(data, numberBytesRead);
         }
-        return new AudioSample();
+        return reuse.clear();
     }
 
     // Effects: returns true if goToTime() is running
@@ -173,7 +189,7 @@ public class Aiff implements AudioDecoder {
         base.setID3Data("Title", getFileName());
         AudioFile f;
         try {
-            f = AudioFileIO.read(file);
+            f = AudioFileIO.read(new File(filename));
         } catch (Exception e) {
             return base;
         }
@@ -0,0 +1,41 @@
+package audio.filetypes.decoders;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Helpers shared by the decoders and the indexes they read their files with
+final class DecoderUtilities {
+    private DecoderUtilities() {
+    }
+
+    // Effects: reads exactly length bytes at position, throws IOException if the file ends first
+    static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Effects: returns where the data after the ID3v2 tag at the start of channel begins, 0 if there's no tag
+    static long skipID3v2(FileChannel channel) throws IOException {
+        ByteBuffer header = read(channel, 0, 10);
+        if (header.get(0) != 'I' || header.get(1) != 'D' || header.get(2) != '3') {
+            return 0;
+        }
+        return 10 + ((header.get(6) & 0x7F) << 21 | (header.get(7) & 0x7F) << 14 // Size is syncsafe
+                | (header.get(8) & 0x7F) << 7 | (header.get(9) & 0x7F));
+    }
+
+    // Effects: returns the named field of type, made accessible
+    static Field field(Class<?> type, String name) throws NoSuchFieldException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+}
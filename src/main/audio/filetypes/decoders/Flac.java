@@ -37,16 +37,21 @@ public class Flac implements AudioDecoder {
     private long bytesPlayed = 0;
     private boolean skipping = false;
     private FileInputStream in;
+    private ByteData pcm; // Reused between frames, the decoder only grows it when a frame doesn't fit
+    private final AudioSample skipSample = new AudioSample();
+    private FlacSeekIndex seekIndex; // Built on the first seek, kept for the rest
 
 
-    // Decode a single frame and converts the returned ByteData to an AudioSample (not hard lmao)
-    private AudioSample decodeFrame() {
+    // Decode a single frame into out (not hard lmao)
+    private void decodeFrame(AudioSample out) {
         try {
-            ByteData byteData = decoder.decodeFrame(decoder.readNextFrame(),
-                    new ByteData(info.getBitsPerSample() * 128));
-            return new AudioSample(byteData.getData(), byteData.getLen());
+            if (pcm == null) {
+                pcm = new ByteData(info.getBitsPerSample() * 128);
+            }
+            pcm = decoder.decodeFrame(decoder.readNextFrame(), pcm);
+            out.set(pcm.getData(), pcm.getLen());
         } catch (Exception e) {
-            return new AudioSample();
+            out.clear();
         }
     }
 
@@ -74,6 +79,17 @@ public class Flac implements AudioDecoder {
         }
     }
 
+    // Modifies: this
+    // Effects:  reads stream info without decoding any audio
+    @Override
+    public void probeAudio() {
+        try (FileInputStream probeIn = new FileInputStream(filename)) {
+            info = new FLACDecoder(probeIn).readStreamInfo();
+        } catch (IOException e) {
+            prepareToPlayAudio(); // Stream info isn't where it should be, do it the slow way
+        }
+    }
+
     // Returns filetype of decoder
     @Override
     public AudioFileType getFileType() {
@@ -117,18 +133,17 @@ public class Flac implements AudioDecoder {
     }
 
     // Requires: prepareToPlayAudio() called
-    // Effects:  decodes and returns the next audio sample
+    // Modifies: this, reuse
+    // Effects:  decodes the next audio sample into reuse, returns its length in bytes (0 if there isn't one)
+    //           reuse may point at an internal buffer, which gets overwritten by the next read
     @Override
-    public AudioSample getNextSample() {
-        if (skipping) {
-            return new AudioSample();
-        }
-        if (moreSamples()) {
-            AudioSample sample = decodeFrame();
-            bytesPlayed += sample.getLength();
-            return sample;
+    public int readSamples(AudioSample reuse) {
+        if (skipping || !moreSamples()) {
+            return reuse.clear();
         }
-        return new AudioSample();
+        decodeFrame(reuse);
+        bytesPlayed += reuse.getLength();
+        return reuse.getLength();
     }
 
     // Effects: returns the current time in the audio in seconds
@@ -147,12 +162,18 @@ public class Flac implements AudioDecoder {
     @Override
     public void goToTime(double time) {
         skipping = true;
-        if (getCurrentTime() > time) {
-            prepareToPlayAudio();
-            bytesPlayed = 0;
+        try {
+            jumpToFrame(time);
+        } catch (IOException e) {
+            EventLog.getInstance().logEvent(new Event("FLAC seek index failed, decoding up to " + time));
+            if (getCurrentTime() > time) {
+                prepareToPlayAudio();
+                bytesPlayed = 0;
+            }
         }
         while (time > getCurrentTime()) {
-            bytesPlayed += decodeFrame().getLength();
+            decodeFrame(skipSample);
+            bytesPlayed += skipSample.getLength();
             if (decoder.isEOF()) {
                 break;
             }
@@ -160,6 +181,34 @@ public class Flac implements AudioDecoder {
         skipping = false;
     }
 
+    // Requires: prepareToPlayAudio() called
+    // Modifies: this
+    // Effects:  moves decoder to the start of the frame containing time, without decoding anything
+    //           leaves it where it is if that frame is the current one
+    private void jumpToFrame(double time) throws IOException {
+        if (seekIndex == null) {
+            seekIndex = new FlacSeekIndex(filename);
+        }
+        long frameBytes = (long) info.getBitsPerSample() * info.getChannels() / 8;
+        long target = (long) (time * info.getSampleRate());
+        if (info.getTotalSamples() > 0) {
+            target = Math.min(target, info.getTotalSamples() - 1);
+        }
+        long[] frame = seekIndex.find(Math.max(target, 0));
+        long current = bytesPlayed / frameBytes;
+        if (!decoder.isEOF() && current >= frame[1] && current <= target) {
+            return; // Already in the right frame, decoding forward is cheaper
+        }
+        if (decoder.isEOF()) {
+            in.close();
+            prepareToPlayAudio(); // Decoder can't be told it isn't at the end anymore
+        }
+        in.getChannel().position(frame[0]);
+        decoder.getBitInputStream().reset();
+        decoder.setSamplesDecoded(frame[1]);
+        bytesPlayed = frame[1] * frameBytes;
+    }
+
     // Effects: returns the duration of the audio in seconds
     @Override
     public double getFileDuration() {
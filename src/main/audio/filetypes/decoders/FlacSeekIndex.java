@@ -0,0 +1,219 @@
+package audio.filetypes.decoders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static audio.filetypes.decoders.DecoderUtilities.read;
+import static audio.filetypes.decoders.DecoderUtilities.skipID3v2;
+
+// Finds where FLAC frames start in the file, so seeking can jump straight there
+// instead of decoding everything before the target
+// Starts from the SEEKTABLE if the file has one, then bisects the file reading frame headers only
+// Every frame header found along the way is remembered, so later seeks start from a tighter range
+class FlacSeekIndex {
+    private static final int SCAN_CHUNK = 1 << 16;
+    private static final int MAX_HEADER = 16;
+    private static final int WALK_WINDOW = 1 << 16; // Bisect until this close, then walk frame by frame
+    private static final int STREAMINFO = 0;
+    private static final int SEEKTABLE = 3;
+    private static final long PLACEHOLDER = 0xFFFFFFFFFFFFFFFFL;
+    private static final int[] CRC8 = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? (crc << 1) ^ 0x07 : crc << 1;
+            }
+            CRC8[i] = crc & 0xFF;
+        }
+    }
+
+    private final String filename;
+    private final TreeMap<Long, Long> frames = new TreeMap<>(); // First sample -> file offset
+    private long audioStart;
+    private long fileLength;
+    private int blockSize; // Fixed-blocksize streams number frames instead of samples
+    private long totalSamples;
+    private int seekPoints = 0;
+
+    // Effects: reads the metadata blocks of filename, throws IOException if it isn't a FLAC file
+    FlacSeekIndex(String filename) throws IOException {
+        this.filename = filename;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            fileLength = channel.size();
+            readMetadata(channel);
+        }
+        frames.put(0L, audioStart);
+    }
+
+    // Effects: returns the number of usable SEEKTABLE points
+    int getSeekPointCount() {
+        return seekPoints;
+    }
+
+    // Effects: returns the number of frame positions known so far
+    int getKnownFrameCount() {
+        return frames.size();
+    }
+
+    // Effects: returns the file offset of the first audio frame
+    long getAudioStart() {
+        return audioStart;
+    }
+
+    // Modifies: this
+    // Effects:  returns {file offset, first sample} of the frame containing sample
+    //           or of the last frame if sample is past the end
+    long[] find(long sample) throws IOException {
+        Map.Entry<Long, Long> floor = frames.floorEntry(sample);
+        Map.Entry<Long, Long> ceiling = frames.higherEntry(sample);
+        long lo = floor.getValue();
+        long loSample = floor.getKey();
+        long hi = ceiling == null ? fileLength : ceiling.getValue();
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_CHUNK + MAX_HEADER);
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            while (hi - lo > WALK_WINDOW) {
+                long mid = lo + (hi - lo) / 2;
+                long[] frame = nextFrame(channel, buffer, mid, hi);
+                if (frame == null || frame[1] > sample) {
+                    hi = mid; // Target frame starts before mid
+                } else {
+                    lo = frame[0];
+                    loSample = frame[1];
+                }
+            }
+            long[] frame;
+            while ((frame = nextFrame(channel, buffer, lo + 1, hi)) != null && frame[1] <= sample) {
+                lo = frame[0];
+                loSample = frame[1];
+            }
+        }
+        return new long[] {lo, loSample};
+    }
+
+    // Modifies: this
+    // Effects:  returns {file offset, first sample} of the first frame starting in [from, limit)
+    //           or null if there isn't one
+    private long[] nextFrame(FileChannel channel, ByteBuffer buffer, long from, long limit) throws IOException {
+        byte[] data = buffer.array();
+        for (long position = from; position < limit; position += SCAN_CHUNK) {
+            buffer.clear();
+            int length = 0;
+            int read;
+            while (buffer.hasRemaining() && (read = channel.read(buffer, position + length)) > 0) {
+                length += read;
+            }
+            int end = (int) Math.min(Math.min(SCAN_CHUNK, limit - position), length - 1);
+            for (int i = 0; i < end; i++) {
+                if (data[i] != (byte) 0xFF) {
+                    continue;
+                }
+                long sample = parseHeader(data, i, length);
+                if (sample >= 0) {
+                    frames.put(sample, position + i);
+                    return new long[] {position + i, sample};
+                }
+            }
+        }
+        return null;
+    }
+
+    // Effects: returns first sample of the frame whose header starts at data[start]
+    //          or -1 if there isn't a valid frame header there
+    private long parseHeader(byte[] data, int start, int length) {
+        if (length - start < MAX_HEADER || (data[start + 1] & 0xFE) != 0xF8) {
+            return -1;
+        }
+        boolean variable = (data[start + 1] & 1) == 1;
+        int blockCode = (data[start + 2] >> 4) & 0x0F;
+        int rateCode = data[start + 2] & 0x0F;
+        int channels = (data[start + 3] >> 4) & 0x0F;
+        int sizeCode = (data[start + 3] >> 1) & 0x07;
+        if (blockCode == 0 || rateCode == 15 || channels > 10 || sizeCode == 3 || (data[start + 3] & 1) != 0) {
+            return -1;
+        }
+        int position = start + 4;
+        int first = data[position++] & 0xFF;
+        int extra = Integer.numberOfLeadingZeros(~first << 24); // Leading ones of the UTF-8 style number
+        if (extra == 1 || extra > 7) {
+            return -1;
+        }
+        long number = extra == 0 ? first : first & (0x3F >> (extra - 1));
+        for (int i = 1; i < extra; i++) {
+            int next = data[position++] & 0xFF;
+            if ((next & 0xC0) != 0x80) {
+                return -1;
+            }
+            number = (number << 6) | (next & 0x3F);
+        }
+        position += blockCode == 6 ? 1 : blockCode == 7 ? 2 : 0;
+        position += rateCode == 12 ? 1 : rateCode == 13 || rateCode == 14 ? 2 : 0;
+        if (crc8(data, start, position) != (data[position] & 0xFF)) {
+            return -1;
+        }
+        long sample = variable ? number : number * blockSize;
+        if (totalSamples > 0 && sample >= totalSamples) {
+            return -1;
+        }
+        return sample;
+    }
+
+    // Effects: returns CRC-8 (polynomial 0x07) of data[start, end)
+    private static int crc8(byte[] data, int start, int end) {
+        int crc = 0;
+        for (int i = start; i < end; i++) {
+            crc = CRC8[(crc ^ data[i]) & 0xFF];
+        }
+        return crc;
+    }
+
+    // Modifies: this
+    // Effects:  reads STREAMINFO and SEEKTABLE, and finds where the audio frames start
+    private void readMetadata(FileChannel channel) throws IOException {
+        long position = skipID3v2(channel);
+        if (read(channel, position, 4).getInt() != 0x664C6143) { // "fLaC"
+            throw new IOException("Not a FLAC file");
+        }
+        position += 4;
+        boolean last = false;
+        while (!last) {
+            int blockHeader = read(channel, position, 4).getInt();
+            last = blockHeader < 0;
+            int type = (blockHeader >> 24) & 0x7F;
+            int length = blockHeader & 0xFFFFFF;
+            position += 4;
+            if (type == STREAMINFO) {
+                ByteBuffer info = read(channel, position, 18);
+                blockSize = info.getShort(2) & 0xFFFF;
+                totalSamples = info.getLong(10) & 0xFFFFFFFFFL;
+            } else if (type == SEEKTABLE) {
+                readSeekTable(read(channel, position, length));
+            }
+            position += length;
+        }
+        audioStart = position;
+        for (Map.Entry<Long, Long> point : new TreeMap<>(frames).entrySet()) {
+            frames.put(point.getKey(), point.getValue() + audioStart); // Points are relative to the first frame
+        }
+    }
+
+    // Modifies: this
+    // Effects:  remembers every non-placeholder seek point, offsets still relative to the first frame
+    private void readSeekTable(ByteBuffer table) {
+        while (table.remaining() >= 18) {
+            long sample = table.getLong();
+            long offset = table.getLong();
+            table.getShort();
+            if (sample != PLACEHOLDER && offset >= 0) {
+                frames.put(sample, offset);
+                seekPoints++;
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@ import net.sourceforge.jaad.mp4.api.Movie;
 import net.sourceforge.jaad.mp4.api.Track;
 import org.jaudiotagger.audio.AudioFile;
 import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.AudioHeader;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
 import org.jaudiotagger.tag.images.Artwork;
@@ -80,6 +81,24 @@ public class MP4AAC implements AudioDecoder {
     }
 
 
+    // Modifies: this
+    // Effects:  reads audio format from the MP4 headers without setting up the AAC decoder
+    @Override
+    public void probeAudio() {
+        try {
+            if (AudioFileLoader.getAudioFiletype(filename) != AudioFileType.AAC_MP4) {
+                throw new Exception("Incorrect file type");
+            }
+            AudioHeader header = AudioFileIO.read(new File(filename)).getAudioHeader();
+            int sampleSize = header.getBitsPerSample() > 0 ? header.getBitsPerSample() : 16;
+            audioFormat = new AudioFormat(header.getSampleRateAsNumber(), sampleSize,
+                    Integer.parseInt(header.getChannels()), true, true);
+            duration = header.getPreciseTrackLength();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // Requires: prepareToPlayAudio() called
     // Modifies: this
     // Effects:  unloads audio file, to save memory
@@ -106,22 +125,24 @@ public class MP4AAC implements AudioDecoder {
     }
 
     // Requires: prepareToPlayAudio() called
-    // Effects:  decodes and returns the next audio sample
+    // Modifies: this, reuse
+    // Effects:  decodes the next audio sample into reuse, returns its length in bytes (0 if there isn't one)
+    //           reuse may point at an internal buffer, which gets overwritten by the next read
     @Override
-    public AudioSample getNextSample() {
+    public int readSamples(AudioSample reuse) {
         while (moreSamples()) {
             try {
                 frame = tracks.readNextFrame();
                 decoder.decodeFrame(frame.getData(), buffer);
-                return new AudioSample(buffer.getData());
+                return reuse.set(buffer.getData(), buffer.getData().length);
             } catch (AACException e) {
                 ExceptionIgnore.logException(e);
             } catch (IOException e) {
-                return new AudioSample();
+                return reuse.clear();
             }
             // If we encountered an error, just move along to the next sample
         }
-        return new AudioSample();
+        return reuse.clear();
     }
 
     // Requires: prepareToPlayAudio() called
@@ -133,8 +154,9 @@ public class MP4AAC implements AudioDecoder {
         skipping = true;
         if (time > getFileDuration()) {
             tracks.seek(Math.floor(getFileDuration()));
+            AudioSample skipped = new AudioSample();
             while (moreSamples()) {
-                getNextSample();
+                readSamples(skipped);
             }
         } else {
             tracks.seek(time);
@@ -180,8 +202,8 @@ public class MP4AAC implements AudioDecoder {
         base.setID3Data("VBR", "UNKNOWN");
         base.setID3Data("Title", getFileName());
         ExceptionIgnore.ignoreExc(() -> {
-            base.setID3Data("bitRate", tracks.getSampleSize());
-            base.setID3Data("sampleRate", tracks.getSampleRate());
+            base.setID3Data("bitRate", audioFormat.getSampleSizeInBits());
+            base.setID3Data("sampleRate", (int) audioFormat.getSampleRate());
             File file = new File(filename);
             AudioFile f = AudioFileIO.read(file);
             base.setID3Data("VBR", f.getAudioHeader().isVariableBitRate() ? "YES" : "NO");
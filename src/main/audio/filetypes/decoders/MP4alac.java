@@ -11,18 +11,22 @@ import model.EventLog;
 import model.ExceptionIgnore;
 import org.jaudiotagger.audio.AudioFile;
 import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.AudioHeader;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
 import org.jaudiotagger.tag.images.Artwork;
 
 import javax.sound.sampled.AudioFormat;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.Date;
 import java.util.Map;
 
 import static audio.filetypes.TagConversion.keyConv;
+import static audio.filetypes.decoders.DecoderUtilities.field;
 import static java.io.File.separatorChar;
 
 // ALAC file decoder class
@@ -37,6 +41,28 @@ public class MP4alac implements AudioDecoder {
     private long totalSamples = 0;
     private boolean allowSampleReads = true;
     private long bytesPlayed = 0;
+    private Mp4SampleTable sampleTable; // Built on the first seek, kept for the rest
+    private SeekableStream in;
+
+    // Buffered file stream that can jump anywhere
+    // The ALAC library buffers plain streams itself, which makes its own seeking do nothing
+    private static class SeekableStream extends BufferedInputStream {
+        private final FileInputStream file;
+
+        SeekableStream(FileInputStream file) {
+            super(file);
+            this.file = file;
+        }
+
+        // Modifies: this
+        // Effects:  drops anything buffered and continues reading at position
+        void seek(long position) throws IOException {
+            file.getChannel().position(position);
+            count = 0;
+            pos = 0;
+            markpos = -1;
+        }
+    }
 
     // Effects: returns true if audio can be decoded currently
     @Override
@@ -53,8 +79,8 @@ public class MP4alac implements AudioDecoder {
     @Override
     public void prepareToPlayAudio() {
         try {
-            File file = new File(filename);
-            alac = new Alac(new FileInputStream(file));
+            in = new SeekableStream(new FileInputStream(filename));
+            alac = new Alac(in);
             totalSamples = alac.getNumSamples();
             format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
                     alac.getSampleRate(),
@@ -72,6 +98,25 @@ public class MP4alac implements AudioDecoder {
         }
     }
 
+    // Modifies: this
+    // Effects:  reads audio format from the MP4 headers without setting up the ALAC decoder
+    @Override
+    public void probeAudio() {
+        try {
+            AudioHeader header = AudioFileIO.read(new File(filename)).getAudioHeader();
+            int channels = Integer.parseInt(header.getChannels());
+            format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+                    header.getSampleRateAsNumber(),
+                    header.getBitsPerSample(),
+                    channels,
+                    channels * header.getBitsPerSample() / 8,
+                    header.getSampleRateAsNumber(),
+                    false);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // Requires: prepareToPlayAudio() called
     // Modifies: this
     // Effects:  unloads audio file, to save memory
@@ -85,21 +130,23 @@ public class MP4alac implements AudioDecoder {
     private int[] decodeBuffer = new int[1024 * 24 * 3];
 
     // Requires: prepareToPlayAudio() called
-    // Effects:  decodes and returns the next audio sample
+    // Modifies: this, reuse
+    // Effects:  decodes the next audio sample into reuse, returns its length in bytes (0 if there isn't one)
+    //           reuse may point at an internal buffer, which gets overwritten by the next read
     @Override
-    public AudioSample getNextSample() {
+    public int readSamples(AudioSample reuse) {
         if (!allowSampleReads) {
-            return new AudioSample();
+            return reuse.clear();
         }
         if (moreSamples()) {
             numberBytesRead = alac.decode(decodeBuffer, data);
             if (numberBytesRead > 0) {
                 // Yes I have to do this to track time
                 bytesPlayed += numberBytesRead;
-                return new AudioSample(data, numberBytesRead);
+                return reuse.set(data, numberBytesRead);
             }
         }
-        return new AudioSample();
+        return reuse.clear();
     }
 
     // Effects: returns true if goToTime() is running
@@ -116,6 +163,10 @@ public class MP4alac implements AudioDecoder {
     @Override
     public void goToTime(double time) {
         allowSampleReads = false;
+        if (jumpToFrame((long) (time * format.getSampleRate()))) {
+            allowSampleReads = true;
+            return;
+        }
         if (getCurrentTime() > time) {
             prepareToPlayAudio(); // Reset
             decodeBuffer = new int[1024 * 24 * 3]; // Reset decoding buffer
@@ -140,6 +191,34 @@ public class MP4alac implements AudioDecoder {
         allowSampleReads = true;
     }
 
+    // Modifies: this
+    // Effects:  moves decoder straight to frame using the MP4 sample table, returns false if it can't
+    //           the decoder drops the start of the sample holding frame, so playback resumes exactly there
+    private boolean jumpToFrame(long frame) {
+        try {
+            if (sampleTable == null) {
+                sampleTable = new Mp4SampleTable(filename);
+            }
+            frame = Math.min(Math.max(frame, 0), sampleTable.getTotalFrames());
+            int sample = sampleTable.sampleAt(frame);
+            Object context = field(Alac.class, "ac").get(alac);
+            field(context.getClass(), "current_sample_block").setInt(context, sample);
+            field(context.getClass(), "offset").setInt(context,
+                    (int) (frame - sampleTable.getFirstFrame(sample)) * format.getChannels());
+            if (sample < sampleTable.getSampleCount()) {
+                in.seek(sampleTable.getOffset(sample));
+            }
+            numberBytesRead = sample < sampleTable.getSampleCount() ? 1 : 0;
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            EventLog.getInstance().logEvent(new Event("ALAC sample table unusable, decoding to seek: "
+                    + e.getMessage()));
+            sampleTable = null;
+            return false;
+        }
+        bytesPlayed = frame * format.getFrameSize();
+        return true;
+    }
+
     // Effects: returns the current time in the audio in seconds
     @Override
     public double getCurrentTime() {
@@ -0,0 +1,237 @@
+package audio.filetypes.decoders;
+
+import audio.AudioDecoder;
+import audio.AudioFileType;
+import audio.AudioSample;
+import audio.ID3Container;
+import model.Event;
+import model.EventLog;
+import model.ExceptionIgnore;
+import org.jaudiotagger.tag.images.Artwork;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Uncompressed WAV (RIFF and RF64) and AIFF/AIFC decoder class
+// Parses the chunks itself and plays straight out of the memory mapped file, so huge masters
+// don't go through AudioSystem streams and a small buffer
+// Tags aren't on the playback path, those are left to the WAV and Aiff decoders
+public class MappedPcm implements AudioDecoder {
+    private static final int BUFFER_SIZE = 1 << 16; // Rounded down to whole frames
+    private final String filename;
+    private final AudioFileType type;
+    private final AudioDecoder tags;
+    private PcmDataChunk pcm;
+    private AudioFormat format;
+    private byte[] data = new byte[0];
+    private boolean ready = false;
+    private int numberBytesRead = 0;
+    private double bytesPerSecond;
+    private long bytesPlayed = 0;
+    private double duration;
+    private boolean skipping = false;
+
+    // Requires: type is PCM_WAV or AIFF
+    public MappedPcm(String filename, AudioFileType type) {
+        this.filename = filename;
+        this.type = type;
+        tags = type == AudioFileType.AIFF ? new Aiff(filename) : new WAV(filename);
+    }
+
+    // Effects: returns true if filename is an uncompressed file this decoder can play
+    public static boolean canDecode(String filename) {
+        try {
+            new PcmDataChunk(filename).close();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    // Effects: returns true if audio can be decoded currently
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Modifies: this
+    // Effects:  loads audio and makes all other functions valid
+    @Override
+    public void prepareToPlayAudio() {
+        try {
+            pcm = new PcmDataChunk(filename);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        format = pcm.getFormat();
+        int frameSize = format.getFrameSize();
+        bytesPerSecond = frameSize * format.getFrameRate();
+        duration = pcm.getLength() / bytesPerSecond;
+        data = new byte[Math.max(BUFFER_SIZE / frameSize, 1) * frameSize];
+        numberBytesRead = 0;
+        bytesPlayed = 0;
+        EventLog.getInstance().logEvent(new Event("Mapped PCM decoder ready!"));
+        ready = true;
+    }
+
+    // Modifies: this
+    // Effects:  reads audio format without decoding any audio
+    @Override
+    public void probeAudio() {
+        try {
+            PcmDataChunk header = new PcmDataChunk(filename);
+            format = header.getFormat();
+            duration = header.getLength() / (format.getFrameSize() * format.getFrameRate());
+            header.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Requires: prepareToPlayAudio() called
+    // Modifies: this
+    // Effects:  unloads audio file, to save memory
+    //           getAudioOutputFormat() and atEndOfFile() remain valid
+    @Override
+    public void closeAudioFile() {
+        ready = false;
+        if (pcm != null) {
+            ExceptionIgnore.ignoreExc(() -> pcm.close());
+        }
+    }
+
+    // Requires: prepareToPlayAudio() called
+    // Modifies: this, reuse
+    // Effects:  decodes the next audio sample into reuse, returns its length in bytes (0 if there isn't one)
+    //           reuse may point at an internal buffer, which gets overwritten by the next read
+    @Override
+    public int readSamples(AudioSample reuse) {
+        try {
+            numberBytesRead = pcm.read(data);
+        } catch (IOException e) {
+            ExceptionIgnore.logException(e);
+            numberBytesRead = -1;
+        }
+        if (numberBytesRead < 0) {
+            return reuse.clear();
+        }
+        bytesPlayed += numberBytesRead;
+        return reuse.set(data, numberBytesRead);
+    }
+
+    // Requires: prepareToPlayAudio() called
+    // Modifies: this
+    // Effects:  returns the next audio sample as a read-only view of the mapped file, without copying it
+    //           the view is empty at the end of the file, and only valid until the next read
+    @Override
+    public ByteBuffer readBuffer() {
+        ByteBuffer view;
+        try {
+            view = pcm.slice(data.length);
+        } catch (IOException e) {
+            ExceptionIgnore.logException(e);
+            view = ByteBuffer.allocate(0); // Can't map it, treat it like the end of the file
+        }
+        numberBytesRead = view.hasRemaining() ? view.remaining() : -1;
+        bytesPlayed += view.remaining();
+        return view;
+    }
+
+    // Effects: returns true if goToTime() is running
+    //          only exists due to having multiple threads
+    @Override
+    public boolean skipInProgress() {
+        return skipping;
+    }
+
+    // Requires: prepareToPlayAudio() called
+    //           0 <= time <= audio length
+    // Modifies: this
+    // Effects:  moves audio to a different point of the file
+    @Override
+    public void goToTime(double time) {
+        skipping = true;
+        int frameSize = format.getFrameSize();
+        bytesPlayed = (long) Math.max(Math.min(time * bytesPerSecond, pcm.getLength()), 0);
+        bytesPlayed -= bytesPlayed % frameSize;
+        pcm.seek(bytesPlayed);
+        numberBytesRead = pcm.getLength() - bytesPlayed < frameSize ? -1 : 0;
+        skipping = false;
+    }
+
+    // Effects: returns the current time in the audio in seconds
+    @Override
+    public double getCurrentTime() {
+        return bytesPlayed / bytesPerSecond;
+    }
+
+    // Effects: returns the duration of the audio in seconds
+    @Override
+    public double getFileDuration() {
+        return duration;
+    }
+
+    // Requires: prepareToPlayAudio() called once
+    // Effects:  returns the audio format of the file
+    @Override
+    public AudioFormat getAudioOutputFormat() {
+        return format;
+    }
+
+    // Effects:  returns true if there are more samples to be played
+    //           will return false is no file is loaded
+    @Override
+    public boolean moreSamples() {
+        return numberBytesRead != -1;
+    }
+
+    // Effects: returns decoded ID3 data
+    @Override
+    public ID3Container getID3() {
+        return tags.getID3();
+    }
+
+    // Modifies: file on filesystem
+    // Effects:  updates ID3 data
+    @Override
+    public void setID3(ID3Container container) {
+        tags.setID3(container);
+    }
+
+    // Effects: returns filename without directories
+    @Override
+    public String getFileName() {
+        return tags.getFileName();
+    }
+
+    // Effects: returns album artwork if possible
+    @Override
+    public Artwork getArtwork() {
+        return tags.getArtwork();
+    }
+
+    // Effects: sets the album artwork if possible
+    @Override
+    public void setArtwork(Artwork image) {
+        tags.setArtwork(image);
+    }
+
+    // Effects: removes the album artwork if possible
+    @Override
+    public void removeArtwork() {
+        tags.removeArtwork();
+    }
+
+    // Returns filetype of decoder
+    @Override
+    public AudioFileType getFileType() {
+        return type;
+    }
+
+    // Effects: returns replaygain value
+    @Override
+    public float getReplayGain() {
+        return tags.getReplayGain();
+    }
+}
@@ -0,0 +1,186 @@
+package audio.filetypes.decoders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Sample tables (stts, stsz, stsc and stco/co64) of the first audio track in an MP4 file
+// Flattened once into arrays so finding the sample holding any point in time is a binary search
+class Mp4SampleTable {
+    private static final int MOOV = 0x6D6F6F76;
+    private static final int TRAK = 0x7472616B;
+    private static final int MDIA = 0x6D646961;
+    private static final int MINF = 0x6D696E66;
+    private static final int STBL = 0x7374626C;
+    private static final int HDLR = 0x68646C72;
+    private static final int SOUN = 0x736F756E;
+    private static final int STTS = 0x73747473;
+    private static final int STSZ = 0x7374737A;
+    private static final int STSC = 0x73747363;
+    private static final int STCO = 0x7374636F;
+    private static final int CO64 = 0x636F3634;
+
+    private long[] offsets; // File offset of every sample
+    private long[] starts; // First audio frame of every sample
+    private long totalFrames;
+
+    // Effects: reads the sample tables of the first audio track in filename
+    //          throws IOException if the file has no usable track
+    Mp4SampleTable(String filename) throws IOException {
+        ByteBuffer moov;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            moov = readMoov(channel);
+        }
+        ByteBuffer stbl = null;
+        for (ByteBuffer trak = findBox(moov, TRAK); trak != null && stbl == null; trak = findBox(moov, TRAK)) {
+            ByteBuffer mdia = findBox(trak, MDIA);
+            ByteBuffer hdlr = mdia == null ? null : findBox(mdia.duplicate(), HDLR);
+            if (hdlr != null && hdlr.getInt(8) == SOUN) {
+                ByteBuffer minf = findBox(mdia, MINF);
+                stbl = minf == null ? null : findBox(minf, STBL);
+            }
+        }
+        if (stbl == null) {
+            throw new IOException("No audio track found");
+        }
+        flatten(stbl);
+    }
+
+    // Effects: returns the number of samples (compressed packets) in the track
+    int getSampleCount() {
+        return offsets.length;
+    }
+
+    // Effects: returns the number of audio frames in the track
+    long getTotalFrames() {
+        return totalFrames;
+    }
+
+    // Effects: returns the index of the sample holding frame, or getSampleCount() if it is past the end
+    int sampleAt(long frame) {
+        if (frame >= totalFrames) {
+            return offsets.length;
+        }
+        int index = Arrays.binarySearch(starts, Math.max(frame, 0));
+        return index >= 0 ? index : -index - 2;
+    }
+
+    // Effects: returns the file offset of sample
+    long getOffset(int sample) {
+        return offsets[sample];
+    }
+
+    // Effects: returns the first audio frame of sample
+    long getFirstFrame(int sample) {
+        return sample == offsets.length ? totalFrames : starts[sample];
+    }
+
+    // Modifies: this
+    // Effects:  combines the tables in stbl into one offset and start frame per sample
+    private void flatten(ByteBuffer stbl) throws IOException {
+        ByteBuffer stts = findBox(stbl.duplicate(), STTS);
+        ByteBuffer stsz = findBox(stbl.duplicate(), STSZ);
+        ByteBuffer stsc = findBox(stbl.duplicate(), STSC);
+        ByteBuffer stco = findBox(stbl.duplicate(), STCO);
+        boolean wide = stco == null;
+        if (wide) {
+            stco = findBox(stbl.duplicate(), CO64);
+        }
+        if (stts == null || stsz == null || stsc == null || stco == null) {
+            throw new IOException("Incomplete sample table");
+        }
+        int fixedSize = stsz.getInt(4);
+        int count = stsz.getInt(8);
+        offsets = new long[count];
+        starts = new long[count];
+        int sample = 0;
+        int chunks = stco.getInt(4);
+        int runs = stsc.getInt(4);
+        for (int run = 0; run < runs && sample < count; run++) {
+            int firstChunk = stsc.getInt(8 + run * 12) - 1;
+            int lastChunk = run + 1 < runs ? stsc.getInt(8 + (run + 1) * 12) - 1 : chunks;
+            int perChunk = stsc.getInt(12 + run * 12);
+            for (int chunk = firstChunk; chunk < Math.min(lastChunk, chunks) && sample < count; chunk++) {
+                long offset = wide ? stco.getLong(8 + chunk * 8) : stco.getInt(8 + chunk * 4) & 0xFFFFFFFFL;
+                for (int i = 0; i < perChunk && sample < count; i++, sample++) {
+                    offsets[sample] = offset;
+                    offset += fixedSize != 0 ? fixedSize : stsz.getInt(12 + sample * 4) & 0xFFFFFFFFL;
+                }
+            }
+        }
+        long frame = 0;
+        int filled = 0;
+        int entries = stts.getInt(4);
+        for (int entry = 0; entry < entries && filled < count; entry++) {
+            int samples = stts.getInt(8 + entry * 8);
+            long delta = stts.getInt(12 + entry * 8) & 0xFFFFFFFFL;
+            for (int i = 0; i < samples && filled < count; i++, filled++) {
+                starts[filled] = frame;
+                frame += delta;
+            }
+        }
+        Arrays.fill(starts, filled, count, frame);
+        totalFrames = frame;
+    }
+
+    // Modifies: parent (moves its position past the box found)
+    // Effects:  returns contents of the next child box of type in parent (after its header), or null
+    private static ByteBuffer findBox(ByteBuffer parent, int type) {
+        while (parent.remaining() >= 8) {
+            int start = parent.position();
+            long size = parent.getInt() & 0xFFFFFFFFL;
+            int boxType = parent.getInt();
+            int header = 8;
+            if (size == 1) {
+                size = parent.getLong();
+                header = 16;
+            } else if (size == 0) {
+                size = parent.limit() - start;
+            }
+            if (size < header || start + size > parent.limit()) {
+                return null;
+            }
+            parent.position((int) (start + size));
+            if (boxType == type) {
+                ByteBuffer box = parent.duplicate();
+                box.position(start + header).limit((int) (start + size));
+                return box.slice();
+            }
+        }
+        return null;
+    }
+
+    // Effects: returns contents of the top level moov box, skipping over everything else (mdat included)
+    private static ByteBuffer readMoov(FileChannel channel) throws IOException {
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(16);
+        while (position + 8 <= channel.size()) {
+            header.clear();
+            channel.read(header, position);
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            int headerSize = 8;
+            if (size == 1) {
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = channel.size() - position;
+            }
+            if (size < headerSize) {
+                break;
+            }
+            if (header.getInt(4) == MOOV) {
+                ByteBuffer moov = ByteBuffer.allocate((int) (size - headerSize));
+                while (moov.hasRemaining() && channel.read(moov, position + headerSize + moov.position()) > 0) {
+                    // Keep reading
+                }
+                moov.flip();
+                return moov;
+            }
+            position += size;
+        }
+        throw new IOException("No moov box found");
+    }
+}
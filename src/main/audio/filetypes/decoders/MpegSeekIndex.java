@@ -0,0 +1,312 @@
+package audio.filetypes.decoders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static audio.filetypes.decoders.DecoderUtilities.read;
+import static audio.filetypes.decoders.DecoderUtilities.skipID3v2;
+
+// Finds where MPEG audio (layer I, II and III) frames start in the file, so seeking can jump straight there
+// Uses the Xing or VBRI table of contents if the encoder wrote one
+// Otherwise scans the frame headers once, skipping from header to header without decoding anything
+class MpegSeekIndex {
+    private static final int SCAN_CHUNK = 1 << 16;
+    private static final int[][] BITRATES = {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448}, // MPEG-1 layer I
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384}, // MPEG-1 layer II
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}, // MPEG-1 layer III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256}, // MPEG-2(.5) layer I
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160} // MPEG-2(.5) layers II and III
+    };
+    private static final int[] SAMPLE_RATES = {44100, 48000, 32000};
+
+    private final String filename;
+    private final long fileLength;
+    private long firstFrame; // First frame the decoder turns into audio
+    private int header; // Header of the first audio frame, later frames must match it
+    private int sampleRate;
+    private int samplesPerFrame;
+    private long tagFrames = -1; // Frame count from the Xing or VBRI tag
+    private int[] xingToc; // 100 entries, position in 1/256ths of tagBytes at each percent of the song
+    private long tagBytes;
+    private boolean constantBitrate = false; // LAME writes "Info" instead of "Xing" for CBR files
+    private long[] vbriToc; // File offset at the start of each VBRI table entry
+    private int vbriFramesPerEntry;
+    private long[] offsets; // Offset of every frame, only filled in by a scan
+
+    // Effects: reads the first frame of filename and its Xing or VBRI tag if there is one
+    //          throws IOException if no MPEG audio frame can be found
+    MpegSeekIndex(String filename) throws IOException {
+        this.filename = filename;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            fileLength = channel.size();
+            firstFrame = findFrame(channel, skipID3v2(channel), 0);
+            if (firstFrame < 0) {
+                throw new IOException("No MPEG audio frames found");
+            }
+            header = read(channel, firstFrame, 4).getInt();
+            sampleRate = sampleRate(header);
+            samplesPerFrame = samplesPerFrame(header);
+            readTag(channel);
+        }
+    }
+
+    // Effects: returns the sample rate of the file
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    // Effects: returns the number of samples (per channel) in every frame
+    int getSamplesPerFrame() {
+        return samplesPerFrame;
+    }
+
+    // Effects: returns true if seeking uses a table of contents written by the encoder
+    boolean hasTableOfContents() {
+        return xingToc != null || vbriToc != null;
+    }
+
+    // Modifies: this
+    // Effects:  returns the number of audio frames in the file, scanning it if the encoder didn't say
+    long getFrameCount() throws IOException {
+        if (tagFrames >= 0) {
+            return tagFrames;
+        }
+        scan();
+        return offsets.length;
+    }
+
+    // Modifies: this
+    // Effects:  returns the duration of the audio in seconds, exact to the frame
+    double getDuration() throws IOException {
+        return (double) getFrameCount() * samplesPerFrame / sampleRate;
+    }
+
+    // Modifies: this
+    // Effects:  returns {file offset, frame number} of a frame at or close to time
+    //           frame number counts audio frames only, starting at 0
+    //           a Xing table of contents is only accurate to a few frames, for VBR files the number is estimated
+    long[] locate(double time) throws IOException {
+        long frame = Math.max(0, (long) (time * sampleRate / samplesPerFrame));
+        if (vbriToc != null) {
+            int entry = (int) Math.min(frame / vbriFramesPerEntry, vbriToc.length - 1);
+            return new long[] {vbriToc[entry], (long) entry * vbriFramesPerEntry};
+        }
+        if (xingToc != null && tagFrames > 0) {
+            frame = Math.min(frame, tagFrames - 1);
+            double percent = Math.min(99.999, 100.0 * frame / tagFrames);
+            int lower = (int) percent;
+            double below = xingToc[lower];
+            double above = lower == 99 ? 256 : xingToc[lower + 1];
+            long guess = firstFrame + (long) ((below + (above - below) * (percent - lower)) / 256 * tagBytes);
+            try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+                long offset = findFrame(channel, guess, header);
+                if (offset >= 0 && constantBitrate) {
+                    // Padding keeps every frame start within a byte of where the average frame length puts it
+                    return new long[] {offset, Math.round((offset - firstFrame) / averageFrameLength())};
+                } else if (offset >= 0) {
+                    return new long[] {offset, frame};
+                }
+            }
+        }
+        scan();
+        if (offsets.length == 0) {
+            return new long[] {firstFrame, 0};
+        }
+        frame = Math.min(frame, offsets.length - 1);
+        return new long[] {offsets[(int) frame], frame};
+    }
+
+    // Effects: returns how many frames the decoder drops when it starts fresh at the frame at offset
+    //          layer III frames borrowing bits from the frame before can't be decoded on their own
+    int framesDroppedAt(long offset) throws IOException {
+        if (((header >> 17) & 3) != 1) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer frame = read(channel, offset, 8);
+            int sideInfo = (frame.get(1) & 1) == 0 ? 6 : 4; // Skip the CRC if there is one
+            int mainDataBegin = ((header >> 19) & 3) == 3
+                    ? (frame.get(sideInfo) & 0xFF) << 1 | (frame.get(sideInfo + 1) & 0xFF) >> 7
+                    : frame.get(sideInfo) & 0xFF;
+            return mainDataBegin > 0 ? 1 : 0;
+        }
+    }
+
+    // Modifies: this
+    // Effects:  records the offset of every frame, from the first audio frame until the headers stop matching
+    private void scan() throws IOException {
+        if (offsets != null) {
+            return;
+        }
+        long[] found = new long[1024];
+        int count = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_CHUNK);
+        long bufferStart = -1;
+        int bufferLength = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long position = firstFrame;
+            while (position + 4 <= fileLength) {
+                if (bufferStart < 0 || position + 4 > bufferStart + bufferLength) {
+                    buffer.clear();
+                    bufferStart = position;
+                    bufferLength = Math.max(channel.read(buffer, position), 0);
+                    if (bufferLength < 4) {
+                        break;
+                    }
+                }
+                int frameHeader = buffer.getInt((int) (position - bufferStart));
+                int length = frameLength(frameHeader);
+                if (length <= 0 || !sameStream(frameHeader) || position + length > fileLength) {
+                    break; // End of the audio, anything after is tags or junk
+                }
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = position;
+                position += length;
+            }
+        }
+        offsets = Arrays.copyOf(found, count);
+    }
+
+    // Effects: returns offset of the first frame at or after position, confirmed by the header after it
+    //          header must match it unless it is 0, returns -1 if there isn't one
+    private long findFrame(FileChannel channel, long position, int match) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_CHUNK);
+        for (; position + 4 <= fileLength; position += SCAN_CHUNK - 3) {
+            buffer.clear();
+            int length = Math.max(channel.read(buffer, position), 0);
+            for (int i = 0; i + 4 <= length; i++) {
+                if (buffer.get(i) != (byte) 0xFF) {
+                    continue;
+                }
+                int candidate = buffer.getInt(i);
+                int frameLength = frameLength(candidate);
+                if (frameLength <= 0 || (match != 0 && !sameStream(candidate))) {
+                    continue;
+                }
+                long next = position + i + frameLength;
+                if (next + 4 > fileLength) {
+                    return position + i; // Last frame of the file, nothing to confirm it with
+                }
+                int nextHeader = read(channel, next, 4).getInt();
+                if (frameLength(nextHeader) > 0 && (nextHeader & 0xFFFE0C00) == (candidate & 0xFFFE0C00)) {
+                    return position + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Modifies: this
+    // Effects:  reads the Xing or VBRI tag in the first frame, if there is one
+    //           the decoder never outputs a frame holding a tag, so audio starts at the next one
+    private void readTag(FileChannel channel) throws IOException {
+        int length = frameLength(header);
+        ByteBuffer frame = read(channel, firstFrame, (int) Math.min(length, fileLength - firstFrame));
+        boolean mpeg1 = ((header >> 19) & 3) == 3;
+        boolean mono = ((header >> 6) & 3) == 3;
+        int xing = 4 + (mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17));
+        if (frame.limit() >= xing + 8 && (frame.getInt(xing) == 0x58696E67 || frame.getInt(xing) == 0x496E666F)) {
+            constantBitrate = frame.getInt(xing) == 0x496E666F;
+            int flags = frame.getInt(xing + 4);
+            int position = xing + 8;
+            if ((flags & 1) != 0 && frame.limit() >= position + 4) {
+                tagFrames = frame.getInt(position) & 0xFFFFFFFFL;
+                position += 4;
+            }
+            if ((flags & 2) != 0 && frame.limit() >= position + 4) {
+                tagBytes = frame.getInt(position) & 0xFFFFFFFFL;
+                position += 4;
+            }
+            if ((flags & 4) != 0 && frame.limit() >= position + 100 && tagBytes > 0) {
+                xingToc = new int[100];
+                for (int i = 0; i < 100; i++) {
+                    xingToc[i] = frame.get(position + i) & 0xFF;
+                }
+            }
+            firstFrame += length;
+        } else if (frame.limit() >= 62 && frame.getInt(36) == 0x56425249) { // "VBRI"
+            tagFrames = frame.getInt(50) & 0xFFFFFFFFL;
+            int entries = frame.getShort(54) & 0xFFFF;
+            int scale = frame.getShort(56) & 0xFFFF;
+            int entrySize = frame.getShort(58) & 0xFFFF;
+            vbriFramesPerEntry = frame.getShort(60) & 0xFFFF;
+            firstFrame += length;
+            if (entries > 0 && entrySize > 0 && entrySize <= 4 && vbriFramesPerEntry > 0) {
+                ByteBuffer table = read(channel, firstFrame - length + 62, entries * entrySize);
+                vbriToc = new long[entries];
+                long offset = firstFrame;
+                for (int i = 0; i < entries; i++) {
+                    vbriToc[i] = offset;
+                    long size = 0;
+                    for (int j = 0; j < entrySize; j++) {
+                        size = (size << 8) | (table.get() & 0xFF);
+                    }
+                    offset += size * scale;
+                }
+            }
+        }
+    }
+
+    // Effects: returns the average length of a frame in bytes, the encoder pads frames to keep up with it
+    private double averageFrameLength() {
+        return (double) samplesPerFrame / 8 * bitrate(header) / sampleRate;
+    }
+
+    // Effects: returns true if frameHeader has the same version, layer and sample rate as the first frame
+    private boolean sameStream(int frameHeader) {
+        return (frameHeader & 0xFFFE0C00) == (header & 0xFFFE0C00);
+    }
+
+    // Effects: returns length of the frame in bytes including its header, or -1 if frameHeader isn't valid
+    //          free format frames count as invalid, their length can't be known from the header
+    static int frameLength(int frameHeader) {
+        if ((frameHeader & 0xFFE00000) != 0xFFE00000) {
+            return -1;
+        }
+        int version = (frameHeader >> 19) & 3;
+        int layer = (frameHeader >> 17) & 3;
+        int bitrateIndex = (frameHeader >> 12) & 0x0F;
+        if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15
+                || ((frameHeader >> 10) & 3) == 3) {
+            return -1;
+        }
+        int rate = sampleRate(frameHeader);
+        int padding = (frameHeader >> 9) & 1;
+        int bitrate = bitrate(frameHeader);
+        if (layer == 3) {
+            return (12 * bitrate / rate + padding) * 4;
+        }
+        return (layer == 1 && version != 3 ? 72 : 144) * bitrate / rate + padding;
+    }
+
+    // Effects: returns bitrate of a valid frame header in bits per second
+    private static int bitrate(int frameHeader) {
+        int version = (frameHeader >> 19) & 3;
+        int layer = (frameHeader >> 17) & 3;
+        return BITRATES[version == 3 ? 3 - layer : (layer == 3 ? 3 : 4)][(frameHeader >> 12) & 0x0F] * 1000;
+    }
+
+    // Effects: returns sample rate of a valid frame header
+    private static int sampleRate(int frameHeader) {
+        int version = (frameHeader >> 19) & 3;
+        int rate = SAMPLE_RATES[(frameHeader >> 10) & 3];
+        return version == 3 ? rate : version == 2 ? rate / 2 : rate / 4;
+    }
+
+    // Effects: returns samples per channel in a valid frame header's frame
+    private static int samplesPerFrame(int frameHeader) {
+        int version = (frameHeader >> 19) & 3;
+        int layer = (frameHeader >> 17) & 3;
+        if (layer == 3) {
+            return 384;
+        }
+        return layer == 1 && version != 3 ? 576 : 1152;
+    }
+}
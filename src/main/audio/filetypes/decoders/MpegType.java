@@ -6,8 +6,12 @@ import model.Event;
 import model.EventLog;
 import model.ExceptionIgnore;
 import net.sourceforge.lame.lowlevel.LameDecoder;
+import net.sourceforge.lame.mp3.GetAudio;
+import net.sourceforge.lame.mp3.Lame;
+import net.sourceforge.lame.mpg.MPGLib;
 import org.jaudiotagger.audio.AudioFile;
 import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.mp3.MP3AudioHeader;
 import org.jaudiotagger.audio.mp3.MP3File;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
@@ -16,6 +20,9 @@ import org.jaudiotagger.tag.images.Artwork;
 
 import javax.sound.sampled.AudioFormat;
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.Date;
@@ -23,9 +30,11 @@ import java.util.Map;
 
 import static audio.filetypes.TagConversion.id3v2keyConv;
 import static audio.filetypes.TagConversion.keyConv;
+import static audio.filetypes.decoders.DecoderUtilities.field;
 import static java.io.File.separatorChar;
 
 public class MpegType implements AudioDecoder {
+    private static final int WARMUP_FRAMES = 3; // Layer III frames can borrow bits from earlier ones
     private String filename;
     private boolean ready = false;
     private LameDecoder decoder;
@@ -35,6 +44,9 @@ public class MpegType implements AudioDecoder {
     private long samplesPlayed;
     private boolean skipping = false;
     private int decodedSize;
+    private boolean probed = false;
+    private AudioFormat probedFormat;
+    private MpegSeekIndex seekIndex;
 
     // Effects: returns true if audio can be decoded currently
     @Override
@@ -51,6 +63,14 @@ public class MpegType implements AudioDecoder {
     @Override
     public void prepareToPlayAudio() {
         try {
+            if (seekIndex == null) {
+                try {
+                    seekIndex = new MpegSeekIndex(filename);
+                    length = seekIndex.getDuration();
+                } catch (IOException e) {
+                    EventLog.getInstance().logEvent(new Event("No MPEG seek index for " + getFileName()));
+                }
+            }
             makeDecoder();
             if (length == -2) {
                 MP3File f = (MP3File) getAudioFile(filename);
@@ -69,6 +89,22 @@ public class MpegType implements AudioDecoder {
         }
     }
 
+    // Modifies: this
+    // Effects:  reads audio format from the first frame header without decoding any audio
+    @Override
+    public void probeAudio() {
+        MP3File f = (MP3File) getAudioFile(filename);
+        if (f == null || f.getMP3AudioHeader() == null) {
+            prepareToPlayAudio(); // Let the decoder figure it out
+            return;
+        }
+        MP3AudioHeader header = f.getMP3AudioHeader();
+        probedFormat = new AudioFormat(header.getSampleRateAsNumber(), 16,
+                header.getChannels().equals("Mono") ? 1 : 2, true, false);
+        length = header.getPreciseTrackLength();
+        probed = true;
+    }
+
     // Effects: shrinks byte buffer to fit (and loads audio)
     //          some files play at half speed at the default buffer size due excess bytes at the end
     private void makeDecoder() {
@@ -89,7 +125,9 @@ public class MpegType implements AudioDecoder {
             // It's all in the for statement
         }
         decodedSize = (int) (Math.floor(decodedSize / decoder.getChannels() / 2) * decoder.getChannels() * 2);
-        decoder = new LameDecoder(filename);
+        if (!rewind()) {
+            decoder = new LameDecoder(filename);
+        }
         EventLog.getInstance().logEvent(new Event("Got decoder output size: " + decodedSize));
     }
 
@@ -103,17 +141,17 @@ public class MpegType implements AudioDecoder {
     }
 
     // Requires: prepareToPlayAudio() called
-    // Effects:  decodes and returns the next audio sample
+    // Modifies: this, reuse
+    // Effects:  decodes the next audio sample into reuse, returns its length in bytes (0 if there isn't one)
+    //           reuse may point at an internal buffer, which gets overwritten by the next read
     @Override
-    public AudioSample getNextSample() {
-        if (skipping) {
-            return new AudioSample();
+    public int readSamples(AudioSample reuse) {
+        if (skipping || !moreSamples()) {
+            return reuse.clear();
         }
         hasSamples = decoder.decode(buffer);
-        byte[] samples = buffer.array();
-        AudioSample sample = new AudioSample(samples, decodedSize);
         samplesPlayed += decodedSize / 2;
-        return sample;
+        return reuse.set(buffer.array(), decodedSize);
     }
 
     // Requires: prepareToPlayAudio() called
@@ -123,7 +161,7 @@ public class MpegType implements AudioDecoder {
     @Override
     public void goToTime(double time) {
         skipping = true;
-        if (getCurrentTime() > time) {
+        if (!jumpNear(time) && getCurrentTime() > time) {
             prepareToPlayAudio();
         }
         while (hasSamples && getCurrentTime() < time) {
@@ -133,6 +171,62 @@ public class MpegType implements AudioDecoder {
         skipping = false;
     }
 
+    // Modifies: this
+    // Effects:  moves decoder a few frames before time using the seek index, returns false if it can't
+    //           leaves it where it is if time is only a few frames ahead
+    private boolean jumpNear(double time) {
+        if (seekIndex == null) {
+            return false;
+        }
+        double frameTime = (double) seekIndex.getSamplesPerFrame() / seekIndex.getSampleRate();
+        double current = getCurrentTime();
+        if (hasSamples && current <= time && time - current < frameTime * (WARMUP_FRAMES + 1)) {
+            return true;
+        }
+        try {
+            long[] frame = seekIndex.locate(Math.max(0, time - frameTime * WARMUP_FRAMES));
+            return jumpTo(frame[0], frame[1]);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Modifies: this
+    // Effects:  moves decoder back to the first frame without reopening it, returns false if it can't
+    private boolean rewind() {
+        try {
+            return seekIndex != null && jumpTo(seekIndex.locate(0)[0], 0);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Modifies: this
+    // Effects:  points the LAME decoder's file at offset with fresh decoder state, returns false if it can't
+    //           LameDecoder has no seek of its own, so this reaches into its internals
+    private boolean jumpTo(long offset, long frame) {
+        long samples;
+        try {
+            samples = (frame + seekIndex.framesDroppedAt(offset)) * seekIndex.getSamplesPerFrame();
+            GetAudio audio = ((Lame) field(LameDecoder.class, "lame").get(decoder)).getAudio();
+            MPGLib mpg = (MPGLib) field(GetAudio.class, "mpg").get(audio);
+            Field hip = field(GetAudio.class, "hip");
+            if (hip.get(audio) != null) {
+                mpg.hip_decode_exit((MPGLib.mpstr_tag) hip.get(audio));
+            }
+            hip.set(audio, mpg.hip_decode_init());
+            field(GetAudio.class, "num_samples_read").setInt(audio, (int) Math.min(samples, Integer.MAX_VALUE));
+            ((RandomAccessFile) field(GetAudio.class, "musicin").get(audio)).seek(offset);
+        } catch (ReflectiveOperationException | IOException | RuntimeException e) {
+            EventLog.getInstance().logEvent(new Event("MPEG decoder can't seek: " + e.getMessage()));
+            seekIndex = null;
+            return false;
+        }
+        samplesPlayed = samples * decoder.getChannels();
+        hasSamples = true;
+        return true;
+    }
+
     // Effects: returns the current time in the audio in seconds
     @Override
     public double getCurrentTime() {
@@ -149,6 +243,9 @@ public class MpegType implements AudioDecoder {
     // Effects:  returns the audio format of the file
     @Override
     public AudioFormat getAudioOutputFormat() {
+        if (decoder == null) {
+            return probedFormat;
+        }
         return new AudioFormat(decoder.getSampleRate(), 16, decoder.getChannels(), true, false);
     }
 
@@ -185,7 +282,7 @@ public class MpegType implements AudioDecoder {
     // Effects: returns decoded ID3 data
     @Override
     public ID3Container getID3() {
-        if (!ready) {
+        if (!ready && !probed) {
             return null;
         } // We readyn't
         ID3Container base = new ID3Container();
@@ -337,7 +434,6 @@ public class MpegType implements AudioDecoder {
     }
 
 
-
     // Effects: returns replaygain value
     //          defaults to -6
     @Override
@@ -0,0 +1,275 @@
+package audio.filetypes.decoders;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// The audio data of an uncompressed WAV (RIFF or RF64) or AIFF/AIFC file, read straight out of the file
+// PCM has no frames to decode, so seeking is just setting a position
+// The data gets memory mapped one window at a time, so reads can hand out views of the file itself
+// and files bigger than a single mapping still work
+class PcmDataChunk {
+    static final int WINDOW = 1 << 30; // Largest mapping, rounded down to whole frames
+    private static final int RIFF = 0x52494646;
+    private static final int RF64 = 0x52463634;
+    private static final int BW64 = 0x42573634;
+    private static final int WAVE = 0x57415645;
+    private static final int FMT = 0x666D7420;
+    private static final int DS64 = 0x64733634;
+    private static final int DATA = 0x64617461;
+    private static final int FORM = 0x464F524D;
+    private static final int AIFF = 0x41494646;
+    private static final int AIFC = 0x41494643;
+    private static final int COMM = 0x434F4D4D;
+    private static final int SSND = 0x53534E44;
+    private static final int WAVE_PCM = 1;
+    private static final int WAVE_FLOAT = 3;
+    private static final int WAVE_EXTENSIBLE = 0xFFFE;
+
+    private final FileChannel channel;
+    private final int windowSize;
+    private MappedByteBuffer window; // Null until something is read
+    private long windowStart;
+    private boolean aiff;
+    private AudioFormat format;
+    private long start;
+    private long length;
+    private long position = 0;
+
+    // Effects: finds the audio data in filename, throws IOException if it isn't an uncompressed
+    //          RIFF/RF64 WAVE or AIFF/AIFC file
+    PcmDataChunk(String filename) throws IOException {
+        this(filename, WINDOW);
+    }
+
+    // Requires: windowSize > 0
+    // Effects:  same as above, mapping at most windowSize bytes at a time
+    PcmDataChunk(String filename, int windowSize) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            locate();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        int frameSize = format.getFrameSize();
+        this.windowSize = Math.max(windowSize / frameSize, 1) * frameSize; // Frames never straddle windows
+    }
+
+    // Effects: returns the format of the audio data
+    AudioFormat getFormat() {
+        return format;
+    }
+
+    // Effects: returns true if the file is AIFF/AIFC, false if it's WAV
+    boolean isAiff() {
+        return aiff;
+    }
+
+    // Effects: returns the length of the audio data in bytes
+    long getLength() {
+        return length;
+    }
+
+    // Effects: returns the read position within the audio data in bytes
+    long getPosition() {
+        return position;
+    }
+
+    // Effects: returns true if all the audio data has been read
+    boolean atEnd() {
+        return position >= length;
+    }
+
+    // Modifies: this
+    // Effects:  moves the read position to offset bytes into the audio data, clamped to its length
+    void seek(long offset) {
+        position = Math.max(0, Math.min(offset, length));
+    }
+
+    // Modifies: this, out
+    // Effects:  copies up to out.length bytes of audio into out, returns number of bytes read or -1 at the end
+    int read(byte[] out) throws IOException {
+        int count = (int) Math.min(out.length, length - position);
+        if (count <= 0) {
+            return -1;
+        }
+        int copied = 0;
+        while (copied < count) {
+            MappedByteBuffer mapped = windowAt(position);
+            int offset = (int) (position - windowStart);
+            int part = Math.min(count - copied, mapped.limit() - offset);
+            mapped.position(offset);
+            mapped.get(out, copied, part);
+            copied += part;
+            position += part;
+        }
+        return count;
+    }
+
+    // Modifies: this
+    // Effects:  returns a read-only view of up to max bytes of audio without copying them
+    //           views stop at the end of a window, so they can be shorter than max before the end
+    //           the view is empty at the end
+    ByteBuffer slice(int max) throws IOException {
+        if (position >= length) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+        MappedByteBuffer mapped = windowAt(position);
+        int offset = (int) (position - windowStart);
+        int count = Math.min(max, mapped.limit() - offset);
+        ByteBuffer view = mapped.asReadOnlyBuffer();
+        view.position(offset).limit(offset + count);
+        position += count;
+        return view.slice();
+    }
+
+    // Modifies: this
+    // Effects:  closes the file, the mappings go away once nothing references them
+    void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    // Modifies: this
+    // Effects:  returns the mapped window holding offset, mapping a new one if needed
+    private MappedByteBuffer windowAt(long offset) throws IOException {
+        if (window == null || offset < windowStart || offset >= windowStart + window.limit()) {
+            windowStart = offset - offset % windowSize;
+            long size = Math.min(windowSize, length - windowStart);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start + windowStart, size);
+        }
+        return window;
+    }
+
+    // Modifies: this
+    // Effects:  reads the container header and finds the format and the audio data
+    private void locate() throws IOException {
+        ByteBuffer header = DecoderUtilities.read(channel, 0, 12);
+        int form = header.getInt(0);
+        int type = header.getInt(8);
+        if ((form == RIFF || form == RF64 || form == BW64) && type == WAVE) {
+            locateWave();
+        } else if (form == FORM && (type == AIFF || type == AIFC)) {
+            aiff = true;
+            locateAiff(type == AIFC);
+        } else {
+            throw new IOException("Not a WAV or AIFF file");
+        }
+        if (format == null || start == 0) {
+            throw new IOException("No audio data found");
+        }
+        if (format.getFrameSize() <= 0) {
+            throw new IOException("Broken audio format");
+        }
+        length = Math.max(0, Math.min(length, channel.size() - start)); // Cut off files still say the full size
+    }
+
+    // Modifies: this
+    // Effects:  walks the chunks of a RIFF/RF64 file, RF64 keeps the real data size in its ds64 chunk
+    private void locateWave() throws IOException {
+        long dataSize = -1;
+        long offset = 12;
+        while (offset + 8 <= channel.size() && start == 0) {
+            ByteBuffer chunk = DecoderUtilities.read(channel, offset, 8);
+            int id = chunk.getInt(0);
+            long size = chunk.order(ByteOrder.LITTLE_ENDIAN).getInt(4) & 0xFFFFFFFFL;
+            if (id == DS64) {
+                dataSize = DecoderUtilities.read(channel, offset + 8, 16).order(ByteOrder.LITTLE_ENDIAN).getLong(8);
+            } else if (id == FMT) {
+                readWaveFormat(DecoderUtilities.read(channel, offset + 8, (int) Math.min(size, 40))
+                        .order(ByteOrder.LITTLE_ENDIAN));
+            } else if (id == DATA) {
+                start = offset + 8;
+                length = size == 0xFFFFFFFFL && dataSize >= 0 ? dataSize : size;
+            }
+            offset += 8 + size + (size & 1); // Chunks are padded to an even length
+        }
+    }
+
+    // Modifies: this
+    // Effects:  reads a WAVE fmt chunk, throws IOException if it isn't integer or float PCM
+    private void readWaveFormat(ByteBuffer fmt) throws IOException {
+        int tag = fmt.getShort(0) & 0xFFFF;
+        if (tag == WAVE_EXTENSIBLE && fmt.limit() >= 26) {
+            tag = fmt.getShort(24) & 0xFFFF; // Start of the sub format GUID
+        }
+        int channels = fmt.getShort(2) & 0xFFFF;
+        float rate = fmt.getInt(4) & 0xFFFFFFFFL;
+        int frameSize = fmt.getShort(12) & 0xFFFF;
+        int bits = channels == 0 ? 0 : frameSize * 8 / channels; // Container size, 20 bit audio takes up 24
+        AudioFormat.Encoding encoding;
+        if (tag == WAVE_FLOAT) {
+            encoding = AudioFormat.Encoding.PCM_FLOAT;
+        } else if (tag == WAVE_PCM) {
+            encoding = bits <= 8 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED;
+        } else {
+            throw new IOException("Compressed WAV files aren't supported");
+        }
+        format = new AudioFormat(encoding, rate, bits, channels, frameSize, rate, false);
+    }
+
+    // Modifies: this
+    // Effects:  walks the chunks of an AIFF/AIFC file
+    private void locateAiff(boolean compressed) throws IOException {
+        long offset = 12;
+        while (offset + 8 <= channel.size() && (start == 0 || format == null)) {
+            ByteBuffer chunk = DecoderUtilities.read(channel, offset, 8);
+            int id = chunk.getInt(0);
+            long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            if (id == COMM) {
+                readAiffFormat(DecoderUtilities.read(channel, offset + 8, (int) Math.min(size, 22)), compressed);
+            } else if (id == SSND) {
+                long dataOffset = DecoderUtilities.read(channel, offset + 8, 4).getInt(0) & 0xFFFFFFFFL;
+                start = offset + 16 + dataOffset;
+                length = size - 8 - dataOffset;
+            }
+            offset += 8 + size + (size & 1);
+        }
+    }
+
+    // Modifies: this
+    // Effects:  reads an AIFF COMM chunk, throws IOException if the AIFC compression isn't plain PCM
+    private void readAiffFormat(ByteBuffer comm, boolean compressed) throws IOException {
+        int channels = comm.getShort(0) & 0xFFFF;
+        int bits = ((comm.getShort(6) & 0xFFFF) + 7) / 8 * 8; // Samples are padded to whole bytes
+        float rate = (float) extended(comm, 8);
+        AudioFormat.Encoding encoding = AudioFormat.Encoding.PCM_SIGNED;
+        boolean bigEndian = true;
+        if (compressed && comm.limit() >= 22) {
+            switch (comm.getInt(18)) {
+                case 0x4E4F4E45: // NONE
+                case 0x74776F73: // twos
+                    break;
+                case 0x736F7774: // sowt
+                    bigEndian = false;
+                    break;
+                case 0x666C3332: // fl32
+                case 0x464C3332: // FL32
+                case 0x666C3634: // fl64
+                case 0x464C3634: // FL64
+                    encoding = AudioFormat.Encoding.PCM_FLOAT;
+                    break;
+                case 0x72617720: // raw
+                    encoding = AudioFormat.Encoding.PCM_UNSIGNED;
+                    break;
+                default:
+                    throw new IOException("Compressed AIFC files aren't supported");
+            }
+        }
+        format = new AudioFormat(encoding, rate, bits, channels, channels * bits / 8, rate, bigEndian);
+    }
+
+    // Effects: returns the 80 bit extended precision float at index, which AIFF uses for its sample rate
+    private static double extended(ByteBuffer buffer, int index) {
+        int exponent = (buffer.getShort(index) & 0x7FFF) - 16383 - 63;
+        long mantissa = buffer.getLong(index + 2);
+        double value = (mantissa >>> 1) * 2.0 + (mantissa & 1); // Mantissa is unsigned
+        return Math.scalb(buffer.getShort(index) < 0 ? -value : value, exponent);
+    }
+}
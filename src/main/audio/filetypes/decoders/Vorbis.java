@@ -7,6 +7,7 @@ import model.EventLog;
 import model.ExceptionIgnore;
 import org.jaudiotagger.audio.AudioFile;
 import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.audio.AudioHeader;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
 import org.jaudiotagger.tag.images.Artwork;
@@ -32,9 +33,11 @@ public class Vorbis implements AudioDecoder {
     private String filename;
     private boolean ready = false;
     private int numberBytesRead = 0;
+    private final byte[] data = new byte[4096];
     private LogicalOggStream oggStream;
     private boolean skipping = false;
     private IdentificationHeader header;
+    private AudioFormat probedFormat;
 
     public Vorbis(String filename) {
         this.filename = filename;
@@ -79,6 +82,20 @@ public class Vorbis implements AudioDecoder {
         }
     }
 
+    // Modifies: this
+    // Effects:  reads audio format from the Vorbis headers without scanning the whole Ogg stream
+    @Override
+    public void probeAudio() {
+        try {
+            AudioHeader tagHeader = AudioFileIO.readAs(new File(filename), "ogg").getAudioHeader();
+            int channels = Integer.parseInt(tagHeader.getChannels());
+            probedFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, tagHeader.getSampleRateAsNumber(), 16,
+                    channels, channels * 2, tagHeader.getSampleRateAsNumber(), true);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // Requires: prepareToPlayAudio() called
     // Modifies: this
     // Effects:  unloads audio file, to save memory
@@ -93,22 +110,23 @@ public class Vorbis implements AudioDecoder {
     }
 
     // Requires: prepareToPlayAudio() called
-    // Effects:  decodes and returns the next audio sample
+    // Modifies: this, reuse
+    // Effects:  decodes the next audio sample into reuse, returns its length in bytes (0 if there isn't one)
+    //           reuse may point at an internal buffer, which gets overwritten by the next read
     @Override
-    public AudioSample getNextSample() {
+    public int readSamples(AudioSample reuse) {
         if (skipping) {
-            return new AudioSample();
+            return reuse.clear();
         }
-        byte[] data = new byte[4096];
         while (moreSamples()) {
             try {
                 numberBytesRead = decoded.readPcm(data, 0, data.length);
-                return new AudioSample(data, numberBytesRead);
+                return reuse.set(data, Math.max(numberBytesRead, 0));
             } catch (IOException e) {
                 // Move along
             }
         }
-        return new AudioSample();
+        return reuse.clear();
     }
 
     // Requires: prepareToPlayAudio() called
@@ -148,6 +166,9 @@ public class Vorbis implements AudioDecoder {
     // Effects:  returns the audio format of the file
     @Override
     public AudioFormat getAudioOutputFormat() {
+        if (header == null) {
+            return probedFormat;
+        }
         return new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, header.getSampleRate(), 16,
                 header.getChannels(), header.getChannels() * 2, header.getSampleRate(), true);
     }
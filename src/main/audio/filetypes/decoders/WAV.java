@@ -54,7 +54,12 @@ public class WAV implements AudioDecoder {
             long audioFileLength = file.length();
             int frameSize = format.getFrameSize();
             bytesPerSecond = frameSize * audioFrameRate;
+            if (in.getFrameLength() != AudioSystem.NOT_SPECIFIED) { // Data chunk length, without other chunks
+                audioFileLength = in.getFrameLength() * frameSize;
+            }
             duration = audioFileLength / (frameSize * audioFrameRate);
+            numberBytesRead = 0;
+            bytesPlayed = 0;
             EventLog.getInstance().logEvent(new Event("WAV/PCM decoder ready!"));
             ready = true;
         } catch (Exception e) {
@@ -62,6 +67,18 @@ public class WAV implements AudioDecoder {
         }
     }
 
+    // Modifies: this
+    // Effects:  reads audio format without decoding any audio
+    @Override
+    public void probeAudio() {
+        try {
+            file = new File(filename);
+            format = AudioSystem.getAudioFileFormat(file).getFormat();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // Requires: prepareToPlayAudio() called
     // Modifies: this
     // Effects:  unloads audio file, to save memory
@@ -73,9 +90,11 @@ public class WAV implements AudioDecoder {
     }
 
     // Requires: prepareToPlayAudio() called
-    // Effects:  decodes and returns the next audio sample
+    // Modifies: this, reuse
+    // Effects:  decodes the next audio sample into reuse, returns its length in bytes (0 if there isn't one)
+    //           reuse may point at an internal buffer, which gets overwritten by the next read
     @Override
-    public AudioSample getNextSample() {
+    public int readSamples(AudioSample reuse) {
         numberBytesRead = -2;
         while (moreSamples()) {
             ExceptionIgnore.ignoreExc(() -> numberBytesRead = in.read(data, 0, data.length));
@@ -83,9 +102,9 @@ public class WAV implements AudioDecoder {
                 continue;
             } // Yes I have to do this to track time
             bytesPlayed += numberBytesRead;
-            return new AudioSample(data, numberBytesRead);
+            return reuse.set(data, numberBytesRead);
         }
-        return new AudioSample();
+        return reuse.clear();
     }
 
     // Effects: returns true if goToTime() is running
@@ -122,6 +141,9 @@ public class WAV implements AudioDecoder {
                     return;
                 }
             }
+            if (time >= duration) { // Skipped exactly to the end of the data chunk
+                numberBytesRead = -1;
+            }
         });
         skipping = false;
     }
@@ -51,8 +51,9 @@ public class Aiff implements AudioEncoder {
             TDataOutputStream file = new TSeekableDataOutputStream(new File(to));
             AiffAudioOutputStream out = new AiffAudioOutputStream(decoder.getAudioOutputFormat(),
                     AudioFileFormat.Type.AIFF, size, file);
+            AudioSample sample = new AudioSample();
             while (decoder.moreSamples()) {
-                AudioSample sample = decoder.getNextSample();
+                decoder.readSamples(sample);
                 out.write(sample.getData(), 0, sample.getLength());
             }
             out.close();
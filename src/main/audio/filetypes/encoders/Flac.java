@@ -3,6 +3,7 @@ package audio.filetypes.encoders;
 import audio.AudioDecoder;
 import audio.AudioEncoder;
 import audio.AudioSample;
+import audio.PcmConversion;
 import audio.ID3Container;
 import javaFlacEncoder.*;
 import org.tritonus.sampled.convert.PCM2PCMConversionProvider;
@@ -12,16 +13,25 @@ import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
 // FLAC file encoder class
+// FLAC blocks don't depend on each other, so with Threads above 1 blocks get encoded on worker threads
+// and javaFlacEncoder writes them out in order as they finish
 public class Flac implements AudioEncoder {
+    private static final String[] BLOCK_SIZES = {"1152", "2304", "4096", "4608"};
+    private static final String[] COMPRESSION_LEVELS = {"Fastest", "Fast", "Default", "Best"};
     AudioDecoder decoder;
     private boolean done = false;
     private boolean encoded = false;
     private int unencodedSamples = 0;
     private int sampleRate = 1;
+    private int blockSize = StreamConfiguration.DEFAULT_MAX_BLOCK_SIZE;
+    private String compression = "Default";
+    private int threads = 1; // ConversionScheduler already runs a conversion per core, more is opt-in
     
     // Effects: Tells the audio encoder where we're encoding from
     @Override
@@ -33,14 +43,57 @@ public class Flac implements AudioEncoder {
     //          e.g: compression ratio
     @Override
     public HashMap<String, List<String>> getEncoderSpecificSelectors() {
-        return null;
+        HashMap<String, List<String>> options = new HashMap<>();
+        options.put("Block Size", Arrays.asList(BLOCK_SIZES));
+        options.put("Compression", Arrays.asList(COMPRESSION_LEVELS));
+        List<String> valid = new ArrayList<>();
+        for (int i = 1; i <= Runtime.getRuntime().availableProcessors(); i++) {
+            valid.add(Integer.toString(i));
+        }
+        options.put("Threads", valid);
+        return options;
     }
     
     // Modifies: this
     // Effects:  sets the target audio format for encoder
     @Override
     public void setAudioFormat(AudioFormat format, HashMap<String, String> encoderSpecificValues) {
-        System.out.println("FLAC does not have any configurable settings.");
+        blockSize = parseSetting(encoderSpecificValues.get("Block Size"), blockSize);
+        threads = Math.max(1, parseSetting(encoderSpecificValues.get("Threads"), threads));
+        if (encoderSpecificValues.get("Compression") != null) {
+            compression = encoderSpecificValues.get("Compression");
+        }
+    }
+    
+    // Effects: returns value as an int, or fallback if it isn't set or isn't a number
+    private static int parseSetting(String value, int fallback) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+    
+    // Effects: returns encoding settings for the compression level
+    //          Default is javaFlacEncoder's default, tries every subframe type and picks the channel layout
+    private EncodingConfiguration getEncodingConfiguration() {
+        EncodingConfiguration configuration = new EncodingConfiguration();
+        switch (compression) {
+            case "Fastest":
+                configuration.setSubframeType(EncodingConfiguration.SubframeType.FIXED);
+                configuration.setChannelConfig(EncodingConfiguration.ChannelConfig.INDEPENDENT);
+                break;
+            case "Fast":
+                configuration.setSubframeType(EncodingConfiguration.SubframeType.FIXED);
+                break;
+            case "Best":
+                configuration.setChannelConfig(EncodingConfiguration.ChannelConfig.EXHAUSTIVE);
+                configuration.setMaxLPCOrder(EncodingConfiguration.MAX_LPC_ORDER);
+                break;
+            default:
+                break;
+        }
+        return configuration;
     }
     
     // Modifies: filesystem
@@ -61,42 +114,38 @@ public class Flac implements AudioEncoder {
             streamConfiguration.setSampleRate(sampleRate);
             streamConfiguration.setBitsPerSample(sampleSize);
             streamConfiguration.setChannelCount(channels);
-            EncodingConfiguration encodingConfiguration = new EncodingConfiguration();
+            streamConfiguration.setMinBlockSize(blockSize);
+            streamConfiguration.setMaxBlockSize(blockSize);
             FLACEncoder flac = new FLACEncoder();
             if (!flac.setStreamConfiguration(streamConfiguration) ||
-                    !flac.setEncodingConfiguration(encodingConfiguration)) {
+                    !flac.setEncodingConfiguration(getEncodingConfiguration()) ||
+                    (threads > 1 && !flac.setThreadCount(threads))) {
                 System.err.println("failed to set codec config");
                 return false; // Error
             }
+            done = false;
+            unencodedSamples = 0;
             FLACFileOutputStream outputStream = new FLACFileOutputStream(outFile);
             flac.setOutputStream(outputStream);
-            AudioSample sample;
+            AudioSample sample = new AudioSample();
             int[] integerSampleRepresentation = new int[format.getFrameSize()];
-            int framesRead, recodedSample; // Memory optimization
-            byte[] sampleData;
+            int framesRead; // Memory optimization
             flac.openFLACStream();
             while (decoder.moreSamples()) {
-                sample = decoder.getNextSample();
+                decoder.readSamples(sample);
                 framesRead = sample.getLength() / bytesPerSample;
-                sampleData = sample.getData();
                 if (integerSampleRepresentation.length < framesRead) integerSampleRepresentation = new int[framesRead];
-                for (int i = 0, j = 0; i < sample.getLength(); i += bytesPerSample, j++) {
-                    recodedSample = 0;
-                    if (bigEndian) {
-                        for (int a = 0; a < bytesPerSample; a++) recodedSample |= (sampleData[i + a] & 0xff) << (bytesPerSample - a - 1) * 8;
-                    } else {
-                        for (int a = 0; a < bytesPerSample; a++) recodedSample |= (sampleData[i + a] & 0xff) << a * 8;
-                    }
-                    if (!isSigned) {
-                        recodedSample -= 1 << bytesPerSample * 8 - 1;
-                    }
-                    integerSampleRepresentation[j] = recodedSample;
-                }
+                PcmConversion.toInt(sample.getData(), 0, sample.getLength(), integerSampleRepresentation, 0,
+                        bytesPerSample, bigEndian, isSigned);
                 flac.addSamples(integerSampleRepresentation, framesRead / channels);
                 unencodedSamples += framesRead / channels;
-                unencodedSamples -= flac.encodeSamples(unencodedSamples, false);
+                unencodedSamples -= encodeBlocks(flac, unencodedSamples);
+            }
+            if (threads > 1) { // Wait for the workers, javaFlacEncoder numbers a threaded last block wrong
+                unencodedSamples -= flac.t_encodeSamples(flac.fullBlockSamplesAvailableToEncode(), false, 0);
             }
             flac.encodeSamples(unencodedSamples, true);
+            outputStream.close();
             return updateID3(to);
         } catch (Exception e) {
             e.printStackTrace();
@@ -104,6 +153,17 @@ public class Flac implements AudioEncoder {
         }
     }
     
+    // Modifies: flac
+    // Effects:  encodes up to count samples in whole blocks, returns how many were encoded (or queued for a worker)
+    //           only a few blocks per worker get queued, so this waits instead of buffering the whole file
+    //           with one thread the calling thread does the encoding and the workers sit idle
+    private int encodeBlocks(FLACEncoder flac, int count) throws IOException {
+        if (threads > 1) {
+            return flac.t_encodeSamples(count, false, threads * 2);
+        }
+        return flac.encodeSamples(count, false);
+    }
+    
     // Modifies: filesystem
     // Effects:  updates ID3 data in MP3 file (returns true on success)
     private boolean updateID3(String filename) {
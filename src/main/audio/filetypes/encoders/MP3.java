@@ -1,22 +1,34 @@
 package audio.filetypes.encoders;
 
 import audio.*;
-import audio.filetypes.decoders.MpegType;
+import audio.filetypes.TagConversion;
+import model.ExceptionIgnore;
 import net.sourceforge.lame.lowlevel.LameEncoder;
 import net.sourceforge.lame.mp3.Lame;
 import net.sourceforge.lame.mp3.MPEGMode;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.TagOptionSingleton;
+import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
+import org.jaudiotagger.tag.id3.ID3v22Tag;
+import org.jaudiotagger.tag.id3.ID3v23Tag;
+import org.jaudiotagger.tag.id3.ID3v24Tag;
+import org.jaudiotagger.tag.images.Artwork;
 
 import javax.sound.sampled.AudioFormat;
-import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
-import java.io.OutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 // MP3 file encoder class
 public class MP3 implements AudioEncoder {
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 18;
     private AudioDecoder decoder;
     private boolean done = false;
     private int bitrate = 320;
@@ -113,6 +125,7 @@ public class MP3 implements AudioEncoder {
 
     // Modifies: filesystem
     // Effects:  encodes audio to specific file
+    //           the tag goes in first, then frames are written out as LAME produces them
     @Override
     public boolean encodeAudio(String to) {
         try {
@@ -120,26 +133,53 @@ public class MP3 implements AudioEncoder {
             AudioFormat format = decoder.getAudioOutputFormat();
             LameEncoder encoder = new LameEncoder(format, bitrate * (stereo ? 2 : 1),
                     stereo ? MPEGMode.STEREO : MPEGMode.MONO, qualitySetting, useVBR);
-            AudioSample sample;
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            int written;
-            while (decoder.moreSamples()) {
-                sample = decoder.getNextSample();
-                byte[] byteBuffer = new byte[sample.getLength()];
-                written = encoder.encodeBuffer(sample.getData(), 0, sample.getLength(), byteBuffer);
-                stream.write(byteBuffer, 0, written);
+            try (FileChannel file = FileChannel.open(Paths.get(to), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                makeID3().write(file, 0);
+                AudioSample sample = new AudioSample();
+                ByteBuffer out = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+                byte[] frames = new byte[encoder.getMP3BufferSize()]; // Big enough for one PCM buffer's worth
+                int chunk = encoder.getPCMBufferSize();
+                while (decoder.moreSamples()) {
+                    decoder.readSamples(sample);
+                    for (int i = 0; i < sample.getLength(); i += chunk) {
+                        int written = encoder.encodeBuffer(sample.getData(), i,
+                                Math.min(chunk, sample.getLength() - i), frames);
+                        write(file, out, frames, written);
+                    }
+                }
+                write(file, out, frames, encoder.encodeFinish(frames)); // Whatever LAME was still holding on to
+                flush(file, out);
+            } finally {
+                encoder.close();
             }
-            encoder.close();
-            OutputStream file = new FileOutputStream(to);
-            file.write(stream.toByteArray());
-            file.close();
             decoder.closeAudioFile();
-            return updateID3(to);
+            done = true;
+            return true;
         } catch (Exception e) {
             return false;
         }
     }
 
+    // Modifies: file, out
+    // Effects:  queues length bytes of data to be written to file, writing out first if it's too full
+    private static void write(FileChannel file, ByteBuffer out, byte[] data, int length) throws IOException {
+        if (out.remaining() < length) {
+            flush(file, out);
+        }
+        out.put(data, 0, length);
+    }
+
+    // Modifies: file, out
+    // Effects:  writes everything queued in out to file
+    private static void flush(FileChannel file, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            file.write(out);
+        }
+        out.clear();
+    }
+
     // Effects: gets an approximate percent for how far along the encoding is
     //          output ranges from 0.0 to 1.0
     @Override
@@ -156,19 +196,33 @@ public class MP3 implements AudioEncoder {
         return decoder.getCurrentTime() / decoder.getFileDuration();
     }
 
-    // Modifies: filesystem
-    // Effects:  updates ID3 data in MP3 file (returns true on success)
-    private boolean updateID3(String filename) {
-        decoder.prepareToPlayAudio();
+    // Requires: prepareToPlayAudio() called on decoder
+    // Effects:  returns an ID3v2 tag holding the source's tags and artwork
+    //           uses the same ID3v2 version as tags saved everywhere else
+    private AbstractID3v2Tag makeID3() {
         ID3Container container = decoder.getID3();
-        MpegType id3Updater = new MpegType(filename);
-        id3Updater.prepareToPlayAudio();
         container.setID3Data("Encoder", "Audiodex");
-        id3Updater.setID3(container);
-        id3Updater.setArtwork(decoder.getArtwork());
-        id3Updater.closeAudioFile();
-        decoder.closeAudioFile();
-        done = true;
-        return true;
+        AbstractID3v2Tag tag;
+        switch (TagOptionSingleton.getInstance().getID3V2Version()) {
+            case ID3_V22:
+                tag = new ID3v22Tag();
+                break;
+            case ID3_V24:
+                tag = new ID3v24Tag();
+                break;
+            default:
+                tag = new ID3v23Tag(); // Most widely supported
+        }
+        for (Map.Entry<String, FieldKey> entry : TagConversion.valConv.entrySet()) {
+            Object data = container.getID3Data(entry.getKey());
+            if (data != null) {
+                ExceptionIgnore.ignoreExc(() -> tag.setField(entry.getValue(), data.toString()));
+            }
+        }
+        Artwork artwork = decoder.getArtwork();
+        if (artwork != null) {
+            ExceptionIgnore.ignoreExc(() -> tag.setField(artwork));
+        }
+        return tag;
     }
 }
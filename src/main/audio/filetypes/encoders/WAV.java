@@ -3,12 +3,9 @@ package audio.filetypes.encoders;
 import audio.AudioDecoder;
 import audio.AudioEncoder;
 import audio.AudioSample;
-import org.tritonus.sampled.file.WaveAudioOutputStream;
-import org.tritonus.share.sampled.file.TDataOutputStream;
-import org.tritonus.share.sampled.file.TNonSeekableDataOutputStream;
 
 import javax.sound.sampled.AudioFormat;
-import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 
@@ -41,22 +38,22 @@ public class WAV implements AudioEncoder {
     // Effects:  encodes audio to specific file
     @Override
     public boolean encodeAudio(String to) {
-        try {
-            AudioFormat format = decoder.getAudioOutputFormat();
-            long size = (long) ((format.getSampleSizeInBits() * format.getChannels()
-                    * format.getSampleRate()) * decoder.getFileDuration() / 8);
-            TDataOutputStream file = new TNonSeekableDataOutputStream(new FileOutputStream(to));
-            WaveAudioOutputStream out = new WaveAudioOutputStream(decoder.getAudioOutputFormat(), size, file);
+        try (WaveFileWriter out = new WaveFileWriter(to, decoder.getAudioOutputFormat())) {
+            AudioSample sample = new AudioSample();
             while (decoder.moreSamples()) {
-                AudioSample sample = decoder.getNextSample();
+                ByteBuffer view = decoder.readBuffer();
+                if (view != null) {
+                    out.write(view); // Mapped sources go straight from file to file
+                    continue;
+                }
+                decoder.readSamples(sample);
                 out.write(sample.getData(), 0, sample.getLength());
             }
-            out.close();
-            done = true;
-            return true;
         } catch (Exception e) {
             return false;
         }
+        done = true;
+        return true;
     }
 
     // Effects: gets an approximate percent for how far along the encoding is
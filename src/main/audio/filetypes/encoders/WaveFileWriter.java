@@ -0,0 +1,217 @@
+package audio.filetypes.encoders;
+
+import audio.PcmConversion;
+import javax.sound.sampled.AudioFormat;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Streams PCM audio into a WAV file without knowing how long it is up front
+// Sizes get patched into the header once everything is written; files too big for RIFF's 32 bit sizes
+// become RF64 (same layout as BW64), which is why a JUNK chunk holds space for the ds64 chunk
+class WaveFileWriter implements Closeable {
+    static final long RIFF_LIMIT = 0xFFFFFFFFL;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int SCRATCH_SIZE = 1 << 16;
+    private static final int DS64_SIZE = 28;
+    private static final int WAVE_PCM = 1;
+    private static final int WAVE_FLOAT = 3;
+    private static final int WAVE_EXTENSIBLE = 0xFFFE;
+    private static final byte[] SUBFORMAT_GUID = { // Follows the format tag in WAVE_FORMAT_EXTENSIBLE
+        0x00, 0x00, 0x00, 0x00, 0x10, 0x00, (byte) 0x80, 0x00, 0x00, (byte) 0xAA, 0x00, 0x38, (byte) 0x9B, 0x71
+    };
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final long riffLimit;
+    private final int frameSize;
+    private final int sampleBytes;
+    private final boolean swap; // Source is big endian
+    private final boolean flipSign; // Source is signed 8 bit, WAV wants unsigned
+    private final byte[] carry; // Part of a sample left over from the last write when converting
+    private final byte[] scratch = new byte[SCRATCH_SIZE]; // Samples being converted
+    private int carried = 0;
+    private long dataStart;
+    private long dataLength = 0;
+
+    // Effects: creates filename and writes a header for audio in format
+    //          throws IOException if the file can't be written
+    WaveFileWriter(String filename, AudioFormat format) throws IOException {
+        this(filename, format, RIFF_LIMIT);
+    }
+
+    // Requires: riffLimit <= RIFF_LIMIT
+    // Effects:  same as above, switching to RF64 once the RIFF size passes riffLimit
+    WaveFileWriter(String filename, AudioFormat format, long riffLimit) throws IOException {
+        this.riffLimit = riffLimit;
+        sampleBytes = (format.getSampleSizeInBits() + 7) / 8;
+        frameSize = sampleBytes * format.getChannels();
+        swap = format.isBigEndian() && sampleBytes > 1;
+        flipSign = sampleBytes == 1 && format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED);
+        carry = new byte[sampleBytes];
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            writeHeader(format);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Effects: returns the number of audio bytes written so far
+    long getDataLength() {
+        return dataLength + buffer.position();
+    }
+
+    // Modifies: this
+    // Effects:  writes len bytes of audio from data
+    void write(byte[] data, int off, int len) throws IOException {
+        write(ByteBuffer.wrap(data, off, len));
+    }
+
+    // Modifies: this, data
+    // Effects:  writes the remaining bytes of audio in data
+    //           big chunks that don't need converting go straight to the file, skipping the buffer
+    void write(ByteBuffer data) throws IOException {
+        if (swap || flipSign) {
+            convert(data);
+            return;
+        }
+        if (data.remaining() > buffer.remaining()) {
+            flush();
+        }
+        if (data.remaining() >= buffer.capacity()) {
+            dataLength += data.remaining();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } else {
+            buffer.put(data);
+        }
+    }
+
+    // Modifies: this
+    // Effects:  writes what's left in the buffer and patches the sizes into the header, then closes the file
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if ((dataLength & 1) == 1) {
+                channel.write(ByteBuffer.allocate(1), dataStart + dataLength); // Chunks are padded to an even length
+            }
+            patchHeader();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Modifies: this, data
+    // Effects:  writes data as little endian unsigned 8 bit or signed audio, converting whole samples in bulk
+    //           a sample split between writes is put back together in carry first
+    private void convert(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            if (carried > 0 || data.remaining() < sampleBytes) {
+                carry[carried++] = data.get();
+                if (carried == sampleBytes) {
+                    toWaveOrder(carry, sampleBytes);
+                    if (buffer.remaining() < sampleBytes) {
+                        flush();
+                    }
+                    buffer.put(carry);
+                    carried = 0;
+                }
+                continue;
+            }
+            if (buffer.remaining() < sampleBytes) {
+                flush();
+            }
+            int count = Math.min(Math.min(data.remaining(), buffer.remaining()), scratch.length)
+                    / sampleBytes * sampleBytes;
+            data.get(scratch, 0, count);
+            toWaveOrder(scratch, count);
+            buffer.put(scratch, 0, count);
+        }
+    }
+
+    // Modifies: samples
+    // Effects:  converts len bytes of whole samples to what WAV wants
+    private void toWaveOrder(byte[] samples, int len) {
+        if (flipSign) {
+            PcmConversion.flipSign(samples, 0, len, sampleBytes, false);
+        } else {
+            PcmConversion.swapByteOrder(samples, 0, len, sampleBytes);
+        }
+    }
+
+    // Modifies: this
+    // Effects:  writes the buffer to the file and empties it
+    private void flush() throws IOException {
+        buffer.flip();
+        dataLength += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Modifies: this
+    // Effects:  writes the RIFF, JUNK, fmt and data chunk headers with placeholder sizes
+    private void writeHeader(AudioFormat format) throws IOException {
+        boolean extensible = format.getChannels() > 2 || sampleBytes > 2;
+        int tag = format.getEncoding().equals(AudioFormat.Encoding.PCM_FLOAT) ? WAVE_FLOAT : WAVE_PCM;
+        int fmtSize = extensible ? 40 : 16;
+        ByteBuffer header = ByteBuffer.allocate(12 + 8 + DS64_SIZE + 8 + fmtSize + 8).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(ascii("RIFF")).putInt(0).put(ascii("WAVE"));
+        header.put(ascii("JUNK")).putInt(DS64_SIZE).position(header.position() + DS64_SIZE);
+        header.put(ascii("fmt ")).putInt(fmtSize).putShort((short) (extensible ? WAVE_EXTENSIBLE : tag));
+        header.putShort((short) format.getChannels()).putInt((int) format.getSampleRate());
+        header.putInt((int) (format.getSampleRate() * frameSize)).putShort((short) frameSize);
+        header.putShort((short) (sampleBytes * 8));
+        if (extensible) {
+            header.putShort((short) 22).putShort((short) format.getSampleSizeInBits()).putInt(0); // No speaker mask
+            header.putShort((short) tag).put(SUBFORMAT_GUID);
+        }
+        header.put(ascii("data")).putInt(0);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        dataStart = channel.position();
+    }
+
+    // Modifies: this
+    // Effects:  writes the final sizes, turning the file into RF64 if they don't fit
+    private void patchHeader() throws IOException {
+        long riffSize = dataStart - 8 + dataLength + (dataLength & 1);
+        if (riffSize <= riffLimit) {
+            writeInt(4, (int) riffSize);
+            writeInt(dataStart - 4, (int) dataLength);
+            return;
+        }
+        ByteBuffer ds64 = ByteBuffer.allocate(8 + DS64_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ds64.put(ascii("ds64")).putInt(DS64_SIZE).putLong(riffSize).putLong(dataLength)
+                .putLong(dataLength / frameSize).putInt(0); // No table, data is the only big chunk
+        ds64.flip();
+        channel.write(ds64, 12);
+        channel.write(ByteBuffer.wrap(ascii("RF64")), 0);
+        writeInt(4, -1); // Real sizes are in ds64
+        writeInt(dataStart - 4, -1);
+    }
+
+    // Modifies: this
+    // Effects:  writes a little endian int at position in the file
+    private void writeInt(long position, int value) throws IOException {
+        channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value), position);
+    }
+
+    // Effects: returns the ASCII bytes of a chunk id
+    private static byte[] ascii(String id) {
+        return id.getBytes(StandardCharsets.US_ASCII);
+    }
+}
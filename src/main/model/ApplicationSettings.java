@@ -9,12 +9,14 @@ public class ApplicationSettings {
     private boolean soundCheck; // ReplayGain alias
     private boolean saveOnClose;
     private boolean saveOnImport;
+    private boolean binaryDatabase;
 
     // Effects: initializes default settings
     ApplicationSettings() {
         soundCheck = false;
         saveOnClose = true;
         saveOnImport = true;
+        binaryDatabase = false;
     }
 
     // Effects: loads settings from JSONObject
@@ -25,6 +27,8 @@ public class ApplicationSettings {
         else saveOnClose = true;
         if (obj.has("saveOnImport")) saveOnImport = (boolean) obj.get("saveOnImport");
         else saveOnImport = true;
+        if (obj.has("binaryDatabase")) binaryDatabase = (boolean) obj.get("binaryDatabase");
+        else binaryDatabase = false;
     }
 
     // Effects: getSoundCheck();
@@ -60,6 +64,17 @@ public class ApplicationSettings {
         saveOnImport = !saveOnImport;
     }
 
+    // Effects: getBinaryDatabase();
+    public boolean doBinaryDatabase() {
+        return binaryDatabase;
+    }
+
+    // Modifies: this
+    // Effects:  toggles saving the database in the compact binary format
+    public void toggleBinaryDatabase() {
+        binaryDatabase = !binaryDatabase;
+    }
+
     // Effects: returns JSONObject, which can be
     // loaded by ApplicationSettings(JSONObject);
     public JSONObject encode() {
@@ -67,12 +82,13 @@ public class ApplicationSettings {
         out.put("soundCheck", soundCheck);
         out.put("saveOnClose", saveOnClose);
         out.put("saveOnImport", saveOnImport);
+        out.put("binaryDatabase", binaryDatabase);
         return out;
     }
 
     // Effects: generates a hash code using all settings
     @Override
     public int hashCode() {
-        return (soundCheck ? 1 : 0) + (saveOnClose ? 2 : 0) + (saveOnImport ? 4 : 0);
+        return (soundCheck ? 1 : 0) + (saveOnClose ? 2 : 0) + (saveOnImport ? 4 : 0) + (binaryDatabase ? 8 : 0);
     }
 }
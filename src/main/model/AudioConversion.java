@@ -5,8 +5,12 @@ import audio.filetypes.encoders.*;
 import ui.App;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static audio.AudioFileLoader.getAudioFiletype;
 
@@ -18,46 +22,24 @@ public class AudioConversion {
     // Defines this audio converter's thread
     private class AudioConverterThread extends Thread {
 
-        // No other class needs to know this
-        // This quite literally just offloads the task of telling
-        // the main thread that this thread is done
-        private class FinishedEncodeThread extends Thread {
-            @Override
-            public void run() {
-                do {
-                    // Wait for decoder thread to finish, in case we've got a music queue
-                    ExceptionIgnore.ignoreExc(() -> sleep(0, 1));
-                } while (converterThread != null);
-                App.finishedEncode();
-            }
-        }
-
-        // Effects: join() but no try-catch
-        public void safeJoin() {
-            ExceptionIgnore.ignoreExc(() -> join());
-        }
-
         // Effects: plays audio in file loadedFile
         @Override
         public void run() {
-            if (isFinished()) {
-                return;
-            }
             // This is lower priority than the main thread
             Thread.currentThread().setPriority(MIN_PRIORITY);
-            error = !helper.encodeAudio(targetFile);
-            done = true;
-            source.closeAudioFile();
-            source = null;
-            new FinishedEncodeThread().start();
-            converterThread = null;
+            finish(attempt());
         }
     }
 
     private volatile boolean done = false;
     private volatile boolean error = false;
+    private volatile boolean cancelled = false;
+    private boolean running = false;
+    private int attempts = 0;
+    private volatile double duration = 0;
+    private final CompletableFuture<Boolean> finished = new CompletableFuture<>();
     private AudioConverterThread converterThread;
-    private AudioDecoder source;
+    private volatile AudioDecoder source;
     private AudioEncoder helper;
     private final String targetFile;
 
@@ -68,6 +50,7 @@ public class AudioConversion {
             error = true;
             done = true;
             this.targetFile = "";
+            finished.complete(false);
             return;
         }
         this.targetFile = new File(targetFile).getAbsolutePath();
@@ -75,9 +58,10 @@ public class AudioConversion {
         if (helper == null) {
             error = true;
             done = true;
+            finished.complete(false);
             return;
         }
-        helper.setSource(source);
+        helper.setSource(new CancellableDecoder(source, this)); // Stops the encoder once cancelled
         logger.logEvent(new Event("Prepared audio converter: " + sourceFile.getFilename()
                 + " -> " + targetFile));
     }
@@ -131,12 +115,116 @@ public class AudioConversion {
 
     // Modifies: this
     // Effects:  starts the audio encoding thread
+    //           use ConversionScheduler instead when there may be many conversions at once
     public void start() {
+        queued();
+        if (isFinished()) {
+            return;
+        }
         converterThread = new AudioConverterThread();
-        source.prepareToPlayAudio();
-        converterThread.start();
         logger.logEvent(new Event("Started converter: " + source.getFileName()
-                + " -> " + targetFile));
+                + " -> " + targetFile)); // Before starting, the thread drops source when it's done
+        converterThread.start();
+    }
+
+    // Modifies: this
+    // Effects:  tells the UI about this conversion, call once before it runs
+    void queued() {
+        finished.thenRunAsync(App::finishedEncode); // Off the converter thread, it's done
+        App.activityChanged();
+    }
+
+    // Modifies: this, filesystem
+    // Effects:  encodes the audio on the calling thread, returns true if it succeeded
+    //           doesn't finish the conversion, so it can be attempted again if it fails
+    boolean attempt() {
+        AudioDecoder decoding;
+        synchronized (this) {
+            if (done || cancelled) {
+                return false;
+            }
+            running = true;
+            attempts++;
+            decoding = source;
+        }
+        boolean success;
+        try {
+            // Some encoders write over files without truncating them, so start from nothing
+            Files.deleteIfExists(Paths.get(getPartialTarget()));
+            decoding.prepareToPlayAudio();
+            duration = decoding.getFileDuration();
+            success = helper.encodeAudio(getPartialTarget());
+        } catch (IOException | RuntimeException e) {
+            ExceptionIgnore.logException(e);
+            success = false;
+        }
+        ExceptionIgnore.ignoreExc(() -> decoding.closeAudioFile());
+        return success && !cancelled && FileManager.replaceWith(Paths.get(getPartialTarget()), Paths.get(targetFile));
+    }
+
+    // Effects: returns the file the encoder writes to, which only replaces the target once it's complete
+    //          a failed, cancelled or interrupted conversion never leaves a partial target behind
+    private String getPartialTarget() {
+        return targetFile + ".tmp";
+    }
+
+    // Modifies: this, filesystem
+    // Effects:  marks the conversion as done, deleting any partial output if it didn't succeed
+    //           does nothing if it's already done
+    void finish(boolean success) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            error = !success;
+            done = true;
+        }
+        if (!success && running) {
+            ExceptionIgnore.ignoreExc(() -> Files.deleteIfExists(Paths.get(getPartialTarget())));
+        }
+        source = null;
+        converterThread = null;
+        logger.logEvent(new Event((success ? "Finished" : cancelled ? "Cancelled" : "Failed")
+                + " converter: " + targetFile));
+        finished.complete(success);
+    }
+
+    // Modifies: this, filesystem
+    // Effects:  stops the conversion, a running one stops at the encoder's next read and its output is deleted
+    //           the conversion finishes with an error
+    public void cancel() {
+        boolean started;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            cancelled = true;
+            started = running;
+        }
+        if (!started) {
+            finish(false); // Never going to run
+        }
+    }
+
+    // Effects: returns true if cancel() was called
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Effects: returns number of times the encoder has been run
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    // Effects: returns duration of the source audio in seconds, 0 until the conversion starts running
+    public double getDuration() {
+        return duration;
+    }
+
+    // Effects: returns a future completed when the conversion is done, with true if it succeeded
+    //          use this instead of polling isFinished()
+    public CompletableFuture<Boolean> whenFinished() {
+        return finished;
     }
 
     public boolean isFinished() {
@@ -148,9 +236,9 @@ public class AudioConversion {
         return error && done;
     }
 
-    // Effects: waits for encoder to finish (joins the the encoding thread)
+    // Effects: waits for encoder to finish, whichever thread it's running on
     public void waitForEncoderFinish() {
-        ExceptionIgnore.ignoreExc(() -> converterThread.safeJoin());
+        ExceptionIgnore.ignoreExc(() -> finished.join());
     }
 
     // getter but null-safe
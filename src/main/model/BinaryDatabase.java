@@ -0,0 +1,290 @@
+package model;
+
+import audio.AudioDataStructure;
+import audio.AudioFileType;
+import audio.ID3Container;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// Static class
+// Reads and writes compact *.audiodex.bin database files
+// Every string (filenames, tag keys, artists, albums, ...) is stored once in a string table
+// and referenced by index, numbers are stored as varints
+//
+// Layout, version 1:
+//   "ADXB", version byte
+//   string count, then each string as UTF-8 byte length + bytes
+//   settings JSON (string ref), entry count
+//   per entry: filename (ref), file type (ref), bitrate, sample size, file size, modification time,
+//              tag count, then per tag: key (ref), value type byte, value (ref or number)
+// All counts and refs are unsigned varints, all numbers are zigzag-encoded signed varints
+public class BinaryDatabase {
+    private static final byte[] MAGIC = {'A', 'D', 'X', 'B'};
+    private static final int VERSION = 1;
+    private static final int TAG_STRING = 0;
+    private static final int TAG_LONG = 1;
+
+    // Effects: reads database file by mapping it into memory, passing every entry to handler in order
+    //          returns stored settings, throws IOException if the file is unreadable or corrupt
+    public static ApplicationSettings read(String filename, JsonDatabase.EntryHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), handler);
+        }
+    }
+
+    // Modifies: buffer
+    // Effects:  reads database from buffer, passing every entry to handler in order
+    //           returns stored settings, throws IOException if the data is corrupt
+    public static ApplicationSettings read(ByteBuffer buffer, JsonDatabase.EntryHandler handler)
+            throws IOException {
+        try {
+            for (byte b : MAGIC) {
+                if (buffer.get() != b) {
+                    throw new IOException("Not an Audiodex database");
+                }
+            }
+            int version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported database version " + version);
+            }
+            String[] strings = readStringTable(buffer);
+            ApplicationSettings settings = new ApplicationSettings(new JSONObject(readRef(buffer, strings)));
+            int count = readCount(buffer);
+            for (int i = 0; i < count; i++) {
+                handler.handle(readEntry(buffer, strings));
+            }
+            return settings;
+        } catch (BufferUnderflowException | IllegalArgumentException | JSONException e) {
+            throw new IOException("Corrupt database", e);
+        }
+    }
+
+    // Effects: reads the shared string table
+    private static String[] readStringTable(ByteBuffer buffer) throws IOException {
+        String[] strings = new String[readCount(buffer)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readCount(buffer)];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    // Effects: reads a single database entry
+    private static AudioDataStructure readEntry(ByteBuffer buffer, String[] strings) throws IOException {
+        String filename = readRef(buffer, strings);
+        AudioFileType fileType = AudioFileType.valueOf(readRef(buffer, strings));
+        long bitrate = readLong(buffer);
+        long sampleSize = readLong(buffer);
+        long fileSize = readLong(buffer);
+        long lastModified = readLong(buffer);
+        ID3Container id3 = new ID3Container();
+        int tags = readCount(buffer);
+        for (int i = 0; i < tags; i++) {
+            String key = readRef(buffer, strings);
+            int type = buffer.get();
+            if (type == TAG_LONG) {
+                id3.setID3Data(key, readLong(buffer));
+            } else if (type == TAG_STRING) {
+                id3.setID3Data(key, readRef(buffer, strings));
+            } else {
+                throw new IOException("Unknown tag type " + type);
+            }
+        }
+        return new AudioDataStructure(filename, fileSize, lastModified, bitrate, sampleSize, fileType, id3);
+    }
+
+    // Modifies: file at filename
+    // Effects:  writes settings and entries to file, atomically replacing previous contents
+    //           returns CRC32 of the written file, or -1 on failure
+    public static long write(String filename, ApplicationSettings settings,
+                             Iterable<AudioDataStructure> entries) {
+        return FileManager.writeAtomically(filename, out -> write(out, settings, entries));
+    }
+
+    // Modifies: out
+    // Effects:  writes settings and entries to out
+    //           entries is iterated twice, once to build the string table and once to write
+    public static void write(OutputStream out, ApplicationSettings settings,
+                             Iterable<AudioDataStructure> entries) throws IOException {
+        Map<String, Integer> table = new LinkedHashMap<>();
+        String settingsJson = settings.encode().toString();
+        intern(table, settingsJson);
+        int count = 0;
+        for (AudioDataStructure data : entries) {
+            count++;
+            intern(table, data.getFilename());
+            intern(table, data.getAudioFileType().toString());
+            ID3Container id3 = data.getId3Data();
+            for (String key : getTagKeys(id3)) {
+                intern(table, key);
+                Object value = id3.getID3Data(key);
+                if (!isLong(value)) {
+                    intern(table, value.toString());
+                }
+            }
+        }
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeVarLong(out, table.size());
+        for (String string : table.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+        writeVarLong(out, table.get(settingsJson));
+        writeVarLong(out, count);
+        for (AudioDataStructure data : entries) {
+            writeEntry(out, table, data);
+        }
+    }
+
+    // Modifies: out
+    // Effects:  writes a single database entry
+    private static void writeEntry(OutputStream out, Map<String, Integer> table, AudioDataStructure data)
+            throws IOException {
+        writeVarLong(out, table.get(data.getFilename()));
+        writeVarLong(out, table.get(data.getAudioFileType().toString()));
+        writeLong(out, data.getBitrate());
+        writeLong(out, data.getSamplesize());
+        writeLong(out, data.getFilesize());
+        writeLong(out, data.getLastModified());
+        ID3Container id3 = data.getId3Data();
+        List<String> keys = getTagKeys(id3);
+        writeVarLong(out, keys.size());
+        for (String key : keys) {
+            writeVarLong(out, table.get(key));
+            Object value = id3.getID3Data(key);
+            if (isLong(value)) {
+                out.write(TAG_LONG);
+                writeLong(out, ((Number) value).longValue());
+            } else {
+                out.write(TAG_STRING);
+                writeVarLong(out, table.get(value.toString()));
+            }
+        }
+    }
+
+    // Effects: returns keys of all non-null tags, in a stable order
+    private static List<String> getTagKeys(ID3Container id3) {
+        List<String> keys = new ArrayList<>();
+        if (id3 != null) {
+            for (String key : id3.getKeys()) {
+                if (id3.getID3Data(key) != null) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    // Effects: returns true if value is stored as a number
+    //          anything else (including decimals) is stored as its string form
+    private static boolean isLong(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    // Modifies: table
+    // Effects:  adds string to table if it isn't there already
+    private static void intern(Map<String, Integer> table, String string) {
+        table.putIfAbsent(string, table.size());
+    }
+
+    // Modifies: out
+    // Effects:  writes unsigned LEB128 varint
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    // Modifies: out
+    // Effects:  writes zigzag-encoded signed varint, so small negative numbers stay small
+    private static void writeLong(OutputStream out, long value) throws IOException {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    // Modifies: buffer
+    // Effects:  reads unsigned LEB128 varint
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long out = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            out |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return out;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // Modifies: buffer
+    // Effects:  reads zigzag-encoded signed varint
+    private static long readLong(ByteBuffer buffer) throws IOException {
+        long value = readVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Modifies: buffer
+    // Effects:  reads a count, every counted thing takes at least a byte so it can't exceed what's left
+    private static int readCount(ByteBuffer buffer) throws IOException {
+        long count = readVarLong(buffer);
+        if (count > buffer.remaining()) {
+            throw new IOException("Count past end of database");
+        }
+        return (int) count;
+    }
+
+    // Modifies: buffer
+    // Effects:  reads a string table reference
+    private static String readRef(ByteBuffer buffer, String[] strings) throws IOException {
+        long ref = readVarLong(buffer);
+        if (ref >= strings.length) {
+            throw new IOException("String reference out of range");
+        }
+        return strings[(int) ref];
+    }
+
+    // Modifies: file at binaryFile
+    // Effects:  converts JSON database to binary database, returns true on success
+    public static boolean convertFromJson(String jsonFile, String binaryFile) {
+        List<AudioDataStructure> entries = new ArrayList<>();
+        ApplicationSettings settings;
+        try {
+            settings = JsonDatabase.read(jsonFile, entries::add);
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+        return write(binaryFile, settings == null ? new ApplicationSettings() : settings, entries) != -1;
+    }
+
+    // Modifies: file at jsonFile
+    // Effects:  converts binary database to JSON database, returns true on success
+    public static boolean convertToJson(String binaryFile, String jsonFile) {
+        List<AudioDataStructure> entries = new ArrayList<>();
+        ApplicationSettings settings;
+        try {
+            settings = read(binaryFile, entries::add);
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+        return JsonDatabase.write(jsonFile, settings, entries) != -1;
+    }
+}
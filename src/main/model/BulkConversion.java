@@ -0,0 +1,185 @@
+package model;
+
+import audio.AudioDataStructure;
+import audio.AudioFileType;
+import audio.ID3Container;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Converts every database file matching a filter into a mirror library
+// Output paths come from a template of tag fields, e.g. {Artist}/{Album}/{Track} {Title}
+// Files that were already converted and haven't changed since are skipped, so mirroring again only
+// converts what's new
+public class BulkConversion {
+    private static EventLog logger = EventLog.getInstance();
+    public static final String DEFAULT_TEMPLATE = "{Artist}/{Album}/{Filename}";
+    public static final int PRIORITY = ConversionScheduler.DEFAULT_PRIORITY - 1; // Single files go first
+    private static final Pattern FIELD = Pattern.compile("\\{([A-Za-z]+)}");
+    private static final Pattern UNSAFE = Pattern.compile("[\\\\/:*?\"<>|\\p{Cntrl}]");
+
+    private final String outputDir;
+    private final String template;
+    private final String extension;
+    private String album;
+    private String artist;
+    private AudioFileType fileType;
+    private HashMap<String, String> settings;
+    private int skipped;
+
+    // Requires: extension is one an encoder exists for (no dot)
+    // Effects:  creates a bulk conversion into outputDir, with files named by template
+    //           template's directories are separated with /, and the extension is added to the end
+    public BulkConversion(String outputDir, String template, String extension) {
+        this.outputDir = new File(outputDir).getAbsolutePath();
+        this.template = template;
+        this.extension = extension;
+    }
+
+    // Modifies: this
+    // Effects:  only converts files from album (ignoring case), null converts every album
+    public void setAlbumFilter(String album) {
+        this.album = album;
+    }
+
+    // Modifies: this
+    // Effects:  only converts files by artist (ignoring case), null converts every artist
+    public void setArtistFilter(String artist) {
+        this.artist = artist;
+    }
+
+    // Modifies: this
+    // Effects:  only converts files of fileType, null converts every type
+    public void setFileTypeFilter(AudioFileType fileType) {
+        this.fileType = fileType;
+    }
+
+    // Modifies: this
+    // Effects:  sets encoder settings used for every conversion, null uses the encoder's defaults
+    public void setAudioSettings(HashMap<String, String> settings) {
+        this.settings = settings;
+    }
+
+    // Effects: returns number of files skipped during the last plan because their output was up to date
+    public int getSkipped() {
+        return skipped;
+    }
+
+    // Effects: returns true if source passes the filters
+    public boolean matches(AudioDataStructure source) {
+        if (source == null || source.isEmpty()) {
+            return false;
+        }
+        if (fileType != null && source.getAudioFileType() != fileType) {
+            return false;
+        }
+        return fieldMatches(source, "Album", album) && fieldMatches(source, "Artist", artist);
+    }
+
+    // Effects: returns the output filename for source
+    public String getTarget(AudioDataStructure source) {
+        Matcher matcher = FIELD.matcher(template);
+        StringBuilder path = new StringBuilder();
+        int last = 0;
+        while (matcher.find()) {
+            path.append(template, last, matcher.start());
+            path.append(sanitize(getField(source, matcher.group(1))));
+            last = matcher.end();
+        }
+        path.append(template.substring(last)).append('.').append(extension);
+        return new File(outputDir, path.toString().replace('/', File.separatorChar)).getAbsolutePath();
+    }
+
+    // Effects: returns true if target exists and is newer than source's file
+    public static boolean upToDate(AudioDataStructure source, String target) {
+        File output = new File(target);
+        return output.isFile() && output.lastModified() >= new File(source.getFilename()).lastModified();
+    }
+
+    // Modifies: this
+    // Effects:  returns matching files in database that need converting, with their output filenames
+    //           if several files would write the same output, only the first one gets converted
+    public LinkedHashMap<AudioDataStructure, String> plan(DataManager database) {
+        LinkedHashMap<AudioDataStructure, String> planned = new LinkedHashMap<>();
+        Set<String> targets = new HashSet<>();
+        skipped = 0;
+        for (int i = 0; i < database.audioListSize(); i++) {
+            AudioDataStructure source = database.getAudioFile(i);
+            if (!matches(source)) {
+                continue;
+            }
+            String target = getTarget(source);
+            if (!targets.add(target)) {
+                logger.logEvent(new Event("Skipping " + source.getFilename() + ", " + target
+                        + " is already used."));
+            } else if (upToDate(source, target)) {
+                skipped++;
+            } else {
+                planned.put(source, target);
+            }
+        }
+        return planned;
+    }
+
+    // Modifies: this, filesystem
+    // Effects:  creates conversions for everything that needs converting, making their output directories
+    //           conversions still need to be submitted to a ConversionScheduler
+    public List<AudioConversion> createConversions(DataManager database) {
+        List<AudioConversion> conversions = new ArrayList<>();
+        for (Map.Entry<AudioDataStructure, String> entry : plan(database).entrySet()) {
+            new File(entry.getValue()).getParentFile().mkdirs();
+            AudioConversion conversion = new AudioConversion(entry.getKey(), entry.getValue());
+            if (!conversion.isFinished() && settings != null && conversion.getOptions() != null) {
+                conversion.setAudioSettings(settings);
+            }
+            conversions.add(conversion);
+        }
+        logger.logEvent(new Event("Bulk conversion to " + outputDir + ": " + conversions.size()
+                + " files to convert, " + skipped + " up to date."));
+        return conversions;
+    }
+
+    // Effects: returns true if filter is null or source's field equals it, ignoring case
+    private static boolean fieldMatches(AudioDataStructure source, String key, String filter) {
+        if (filter == null) {
+            return true;
+        }
+        ID3Container id3 = source.getId3Data();
+        Object value = id3 == null ? null : id3.getID3Data(key);
+        return value != null && value.toString().trim().equalsIgnoreCase(filter.trim());
+    }
+
+    // Effects: returns the value of a template field for source
+    //          Filename is the source's name without its extension, track numbers get two digits
+    private static String getField(AudioDataStructure source, String key) {
+        if (key.equals("Filename")) {
+            String name = new File(source.getFilename()).getName();
+            int dot = name.lastIndexOf('.');
+            return dot > 0 ? name.substring(0, dot) : name;
+        }
+        ID3Container id3 = source.getId3Data();
+        Object value = id3 == null ? null : id3.getID3Data(key);
+        if (value == null || value.toString().trim().isEmpty()) {
+            return "Unknown " + key;
+        }
+        if (key.equals("Track") && value instanceof Number) {
+            return String.format("%02d", ((Number) value).longValue());
+        }
+        return value.toString().trim();
+    }
+
+    // Effects: returns value with characters that aren't allowed in filenames replaced
+    //          leading and trailing dots are dropped so values can't become . or ..
+    private static String sanitize(String value) {
+        String safe = UNSAFE.matcher(value).replaceAll("_").replaceAll("^\\.+|\\.+$", "").trim();
+        return safe.isEmpty() ? "_" : safe;
+    }
+}
@@ -0,0 +1,125 @@
+package model;
+
+import audio.AudioDecoder;
+import audio.AudioFileType;
+import audio.AudioSample;
+import audio.ID3Container;
+import org.jaudiotagger.tag.images.Artwork;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+
+// Decoder handed to a conversion's encoder, so the conversion can be cancelled from any thread
+// Once its conversion is cancelled it claims to be out of audio, and the encoder's loop stops on its own
+// thread at the next read; the source decoder itself is only ever touched by the encoding thread
+class CancellableDecoder implements AudioDecoder {
+    private final AudioDecoder source;
+    private final AudioConversion conversion;
+
+    // Effects: wraps source, which runs out of audio once conversion is cancelled
+    CancellableDecoder(AudioDecoder source, AudioConversion conversion) {
+        this.source = source;
+        this.conversion = conversion;
+    }
+
+    // Effects: returns true if there are more samples and the conversion hasn't been cancelled
+    @Override
+    public boolean moreSamples() {
+        return !conversion.isCancelled() && source.moreSamples();
+    }
+
+    @Override
+    public AudioFileType getFileType() {
+        return source.getFileType();
+    }
+
+    @Override
+    public String getFileName() {
+        return source.getFileName();
+    }
+
+    @Override
+    public boolean isReady() {
+        return source.isReady();
+    }
+
+    @Override
+    public void prepareToPlayAudio() {
+        source.prepareToPlayAudio();
+    }
+
+    @Override
+    public void probeAudio() {
+        source.probeAudio();
+    }
+
+    @Override
+    public void closeAudioFile() {
+        source.closeAudioFile();
+    }
+
+    @Override
+    public int readSamples(AudioSample reuse) {
+        return source.readSamples(reuse);
+    }
+
+    @Override
+    public ByteBuffer readBuffer() {
+        return source.readBuffer();
+    }
+
+    @Override
+    public void goToTime(double time) {
+        source.goToTime(time);
+    }
+
+    @Override
+    public double getCurrentTime() {
+        return source.getCurrentTime();
+    }
+
+    @Override
+    public double getFileDuration() {
+        return source.getFileDuration();
+    }
+
+    @Override
+    public AudioFormat getAudioOutputFormat() {
+        return source.getAudioOutputFormat();
+    }
+
+    @Override
+    public ID3Container getID3() {
+        return source.getID3();
+    }
+
+    @Override
+    public void setID3(ID3Container container) {
+        source.setID3(container);
+    }
+
+    @Override
+    public Artwork getArtwork() {
+        return source.getArtwork();
+    }
+
+    @Override
+    public void setArtwork(Artwork image) {
+        source.setArtwork(image);
+    }
+
+    @Override
+    public void removeArtwork() {
+        source.removeArtwork();
+    }
+
+    @Override
+    public boolean skipInProgress() {
+        return source.skipInProgress();
+    }
+
+    @Override
+    public float getReplayGain() {
+        return source.getReplayGain();
+    }
+}
@@ -0,0 +1,214 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs audio conversions on a fixed number of worker threads instead of a thread per conversion
+// Waiting conversions are kept in a priority queue (first come first served within a priority),
+// and failed ones get retried a few times before they're reported as errors
+// Throughput is measured over the current batch, which starts when work arrives at an idle scheduler
+public class ConversionScheduler {
+    private static EventLog logger = EventLog.getInstance();
+    public static final int DEFAULT_PRIORITY = 0;
+    public static final int DEFAULT_RETRIES = 1;
+    private static final long IDLE_SECONDS = 30; // Workers go away after sitting idle this long
+
+    private final ThreadPoolExecutor pool;
+    private final int retries;
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<AudioConversion> running = new CopyOnWriteArrayList<>();
+    private int pending = 0; // Queued or running
+    private long batchStart;
+    private int completed;
+    private int failed;
+    private double secondsEncoded;
+
+    // A conversion waiting in (or taken from) the queue
+    private class Job implements Runnable, Comparable<Job> {
+        private final AudioConversion conversion;
+        private final int priority;
+        private long order;
+
+        // Effects: creates a job at the back of its priority
+        Job(AudioConversion conversion, int priority) {
+            this.conversion = conversion;
+            this.priority = priority;
+            order = sequence.getAndIncrement();
+        }
+
+        // Modifies: this, conversion
+        // Effects:  runs the conversion, putting it back in the queue if it failed and has retries left
+        @Override
+        public void run() {
+            running.add(conversion);
+            boolean success = conversion.attempt();
+            running.remove(conversion);
+            if (!success && !conversion.isFinished() && !conversion.isCancelled()
+                    && conversion.getAttempts() <= retries && !pool.isShutdown()) {
+                logger.logEvent(new Event("Retrying converter: " + conversion.getTarget()));
+                order = sequence.getAndIncrement(); // Other files at this priority get a go first
+                pool.execute(this);
+                return;
+            }
+            finished(conversion, success);
+            conversion.finish(success);
+        }
+
+        // Effects: higher priorities first, then whichever was queued first
+        @Override
+        public int compareTo(Job other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    // Effects: creates a scheduler with one worker per core
+    public ConversionScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_RETRIES);
+    }
+
+    // Requires: threads > 0, retries >= 0
+    // Effects:  creates a scheduler with the specified number of workers
+    //           failed conversions are run up to retries more times
+    public ConversionScheduler(int threads, int retries) {
+        this.retries = retries;
+        pool = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), run -> {
+                    Thread thread = new Thread(run, "Audio Converter");
+                    thread.setPriority(Thread.MIN_PRIORITY); // Lower priority than the main thread
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true); // No threads hanging around when nothing is converting
+    }
+
+    // Modifies: this, conversion
+    // Effects:  queues conversion at the default priority
+    public void submit(AudioConversion conversion) {
+        submit(conversion, DEFAULT_PRIORITY);
+    }
+
+    // Modifies: this, conversion
+    // Effects:  queues conversion, higher priorities start first
+    //           conversions that already failed (bad source or target) finish right away
+    public void submit(AudioConversion conversion, int priority) {
+        conversion.queued();
+        if (conversion.isFinished()) {
+            return;
+        }
+        synchronized (this) {
+            if (pending == 0) {
+                batchStart = System.nanoTime();
+                completed = 0;
+                failed = 0;
+                secondsEncoded = 0;
+            }
+            pending++;
+        }
+        logger.logEvent(new Event("Queued converter: " + conversion.getTarget()));
+        pool.execute(new Job(conversion, priority));
+    }
+
+    // Modifies: this, conversion
+    // Effects:  cancels conversion, whether it's queued or running
+    public void cancel(AudioConversion conversion) {
+        if (pool.getQueue().removeIf(job -> ((Job) job).conversion == conversion)) {
+            finished(conversion, false);
+        }
+        conversion.cancel();
+    }
+
+    // Modifies: this
+    // Effects:  cancels every queued and running conversion
+    public void cancelAll() {
+        List<Runnable> queued = new ArrayList<>();
+        pool.getQueue().drainTo(queued);
+        for (Runnable job : queued) {
+            finished(((Job) job).conversion, false);
+            ((Job) job).conversion.cancel();
+        }
+        for (AudioConversion conversion : running) {
+            conversion.cancel();
+        }
+    }
+
+    // Modifies: this
+    // Effects:  cancels everything and stops the workers
+    public void shutdown() {
+        cancelAll();
+        pool.shutdown();
+    }
+
+    // Effects: returns number of conversions waiting for a worker
+    public int getQueued() {
+        return pool.getQueue().size();
+    }
+
+    // Effects: returns number of conversions being encoded right now
+    public int getRunning() {
+        return running.size();
+    }
+
+    // Effects: returns number of workers
+    public int getThreads() {
+        return pool.getMaximumPoolSize();
+    }
+
+    // Effects: returns number of conversions finished successfully in the current batch
+    public synchronized int getCompleted() {
+        return completed;
+    }
+
+    // Effects: returns number of conversions that failed or were cancelled in the current batch
+    public synchronized int getFailed() {
+        return failed;
+    }
+
+    // Effects: returns seconds of audio encoded per second in the current batch, counting running conversions
+    public double getRealtimeFactor() {
+        double encoded;
+        synchronized (this) {
+            encoded = secondsEncoded;
+        }
+        for (AudioConversion conversion : running) {
+            encoded += conversion.getComplete() * conversion.getDuration();
+        }
+        double seconds = getElapsedSeconds();
+        return seconds <= 0 ? 0 : encoded / seconds;
+    }
+
+    // Effects: returns conversions finished per minute in the current batch
+    public double getFilesPerMinute() {
+        double minutes = getElapsedSeconds() / 60;
+        return minutes <= 0 ? 0 : getCompleted() / minutes;
+    }
+
+    // Effects: returns a one line summary of the scheduler's progress
+    public String getStatusString() {
+        return String.format("%d running, %d queued - %.1fx realtime, %.1f files/min",
+                getRunning(), getQueued(), getRealtimeFactor(), getFilesPerMinute());
+    }
+
+    // Effects: returns seconds since the current batch started
+    private synchronized double getElapsedSeconds() {
+        return batchStart == 0 ? 0 : (System.nanoTime() - batchStart) / 1e9;
+    }
+
+    // Modifies: this
+    // Effects:  counts a conversion that's done for good
+    private synchronized void finished(AudioConversion conversion, boolean success) {
+        pending--;
+        if (success) {
+            completed++;
+            secondsEncoded += conversion.getDuration();
+        } else {
+            failed++;
+        }
+    }
+}
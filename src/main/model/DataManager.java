@@ -1,15 +1,22 @@
 package model;
 
 import audio.AudioDataStructure;
-import audio.ID3Container;
-import org.json.*;
+import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.nio.file.Files.delete;
 import static model.FileManager.readFile;
@@ -18,19 +25,28 @@ import static java.io.File.separatorChar;
 // Instantiable class to handle the file list
 public class DataManager {
     private final List<AudioDataStructure> songFilelist;
-    private final LinkedList<Integer> knownHashes;
+    private final SongSorter sorter;
+    private final Map<String, Integer> filenameIndex; // Canonical path -> number of entries with that path
+    private final Set<AudioDataStructure> dirty; // Entries added or changed since the last save, by identity
+    private final Set<String> removed; // Filenames removed since the last save
+    private DatabaseJournal journal; // Changes since the current snapshot, null if there's no snapshot
     private ApplicationSettings settings;
     private long dbIndex;
     private String userDir;
     private int settingsHash;
-    private boolean modified = false;
     private static EventLog logger = EventLog.getInstance();
+    private static final String JSON_EXTENSION = ".audiodex.json";
+    private static final String BINARY_EXTENSION = ".audiodex.bin";
+    private static final String JOURNAL_EXTENSION = ".audiodex.journal";
 
     // Modifies: this
     // Effects:  fileList is empty, loads database from (user home directory)/audiodex
     public DataManager() {
         songFilelist = new ArrayList<>();
-        knownHashes = new LinkedList<>();
+        sorter = new SongSorter();
+        filenameIndex = new HashMap<>();
+        dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed = new HashSet<>();
         settings = new ApplicationSettings();
         userDir = System.getProperty("user.home") + separatorChar + "audiodex" + separatorChar;
     }
@@ -67,215 +83,391 @@ public class DataManager {
             return;
         }
         logger.logEvent(new Event("Sorting database by " + type + "..."));
-        bubble(sortBy, songFilelist.size());
+        sorter.sort(songFilelist, sortBy);
         logger.logEvent(new Event("Sorted database by " + type + "."));
     }
 
     // Modifies: this
-    // Effects:  sorts music list (uses the bubble sort algorithm)
-    private void bubble(SortingTypes sortBy, int end) {
-        for (int i = end - 1; i > 0; i--) {
-            for (int j = 0; j < i; j++) {
-                if (outOfOrder(sortBy, songFilelist.get(j), songFilelist.get(j + 1))) {
-                    swap(j, j + 1);
-                }
+    // Effects:  removes all null values and duplicates from database
+    //           the last copy of a duplicated file is kept
+    public void sanitizeAudioDatabase() {
+        logger.logEvent(new Event("Sanitizing Database..."));
+        Set<String> seen = new HashSet<>();
+        List<AudioDataStructure> kept = new ArrayList<>(songFilelist.size());
+        for (int i = songFilelist.size() - 1; i >= 0; i--) {
+            AudioDataStructure data = songFilelist.get(i);
+            if (data != null && !data.isEmpty() && seen.add(data.getFilename())) {
+                kept.add(data);
             }
         }
+        Collections.reverse(kept);
+        if (kept.size() != songFilelist.size()) {
+            replaceEntries(kept);
+        }
+        logger.logEvent(new Event("Sanitized Database!"));
+    }
+
+    // Effects: returns true if database contains file, false otherwise
+    private boolean songDbContainsFile(String filename) {
+        return filenameIndex.containsKey(filename);
     }
 
     // Modifies: this
-    // Effects:  swaps two elements in file list
-    private void swap(int first, int second) {
-        AudioDataStructure firstValue = songFilelist.get(first);
-        songFilelist.set(first, songFilelist.get(second));
-        songFilelist.set(second, firstValue);
-    }
-    
-    // Effects: parses long without exception
-    private static long parseLong(String str) {
-        try {
-            return Long.parseLong(str);
-        } catch (NumberFormatException e) {
-            return 0;
-        }
-    }
-
-    // Effects: returns true if audio files are out of order
-    //          I can't believe this is 25 lines
-    private static boolean outOfOrder(SortingTypes sortBy, AudioDataStructure a, AudioDataStructure b) {
-        switch (sortBy) {
-            case Default:
-            case Album:
-                int albumSort = getSortingValue("Album", a).compareTo(getSortingValue("Album", b));
-                if (albumSort == 0) {
-                    long discDif = parseLong(getSortingValue("Disc", a)) - parseLong(getSortingValue("Disc", b));
-                    return discDif == 0 ? parseLong(getSortingValue("Track", a))
-                            > parseLong(getSortingValue("Track", b)) : discDif > 0;
-                }
-                return albumSort > 0;
-            case AlbumArtist:
-            case Artist:
-            case Title:
-                int dif = getSortingValue(sortBy.toString(), a).compareTo(getSortingValue(sortBy.toString(), b));
-                return dif == 0 ? outOfOrder(SortingTypes.Default, a, b) : dif > 0;
-            case Filesize:
-                return a.getFilesize() > b.getFilesize();
-        }
-        return false;
+    // Effects:  adds entry to the end of the file list
+    private void addEntry(AudioDataStructure data) {
+        songFilelist.add(data);
+        indexEntry(data);
+        trackEntry(data);
+        sorter.invalidate();
     }
 
-    // Effects: gets album value for sorting
-    private static String getSortingValue(String type, AudioDataStructure file) {
-        ID3Container id3 = file.getId3Data();
-        Object s = id3.getID3Data(type + "-Sort");
-        if (s == null || s.toString().equals("null") || s.toString().isEmpty()) {
-            s = id3.getID3Data(type);
-            if (s == null || s.toString().equals("null") || s.toString().isEmpty()) {
-                s = "";
+    // Modifies: this
+    // Effects:  removes entry at index i from the file list
+    private void removeEntry(int i) {
+        AudioDataStructure old = songFilelist.remove(i);
+        unindexEntry(old);
+        untrackEntry(old);
+        sorter.invalidate();
+    }
+
+    // Modifies: this
+    // Effects:  replaces entry at index i in the file list
+    //           an entry for the same file is updated in place, it isn't journaled as a remove
+    private void setEntry(int i, AudioDataStructure data) {
+        AudioDataStructure old = songFilelist.set(i, data);
+        indexEntry(data); // Before untracking, so old's file still counts as being in the list
+        unindexEntry(old);
+        untrackEntry(old);
+        trackEntry(data);
+        sorter.invalidate();
+    }
+
+    // Modifies: this
+    // Effects:  replaces the whole file list, rebuilding the filename index
+    //           only entries that weren't in the list before count as changed
+    private void replaceEntries(List<AudioDataStructure> entries) {
+        Set<AudioDataStructure> before = Collections.newSetFromMap(new IdentityHashMap<>());
+        before.addAll(songFilelist);
+        Set<AudioDataStructure> after = Collections.newSetFromMap(new IdentityHashMap<>());
+        after.addAll(entries);
+        songFilelist.clear();
+        songFilelist.addAll(entries);
+        filenameIndex.clear();
+        for (AudioDataStructure data : songFilelist) {
+            indexEntry(data);
+        }
+        for (AudioDataStructure data : before) {
+            if (!after.contains(data)) {
+                untrackEntry(data);
+            }
+        }
+        for (AudioDataStructure data : after) {
+            if (!before.contains(data)) {
+                trackEntry(data);
             }
         }
-        return s.toString().toLowerCase();
+        sorter.invalidate();
     }
 
-    // Modifies: this
-    // Effects:  removes all null values from database
-    public void sanitizeAudioDatabase() {
-        logger.logEvent(new Event("Sanitizing Database..."));
-        for (int i = 0; i < songFilelist.size(); i++) {
-            if (songFilelist.get(i) == null || songFilelist.get(i).isEmpty()
-                    || songDbContainsDuplicate(songFilelist.get(i).getFilename())) {
-                songFilelist.remove(i);
-                i--;
+    // Modifies: this, data
+    // Effects:  marks entry as changed and listens for later changes to it
+    private void trackEntry(AudioDataStructure data) {
+        if (data != null) {
+            data.setChangeListener(dirty::add);
+            dirty.add(data);
+        }
+    }
+
+    // Modifies: this, data
+    // Effects:  stops listening for changes to entry, marking its file as removed if it's no longer indexed
+    //           call after updating the filename index
+    private void untrackEntry(AudioDataStructure data) {
+        if (data != null) {
+            data.setChangeListener(null);
+            dirty.remove(data);
+            if (!filenameIndex.containsKey(data.getFilename())) {
+                removed.add(data.getFilename());
             }
         }
-        logger.logEvent(new Event("Sanitized Database!"));
     }
 
-    // Effects: returns true if database contains file, false otherwise
-    private boolean songDbContainsFile(String filename) {
-        return songFilelist.stream().anyMatch(data -> data.getFilename().equals(filename));
+    // Modifies: this
+    // Effects:  adds entry to filename index
+    private void indexEntry(AudioDataStructure data) {
+        if (data != null) {
+            filenameIndex.merge(data.getFilename(), 1, Integer::sum);
+        }
     }
 
-    // Effects: returns true if database contains two of this file, false otherwise
-    private boolean songDbContainsDuplicate(String filename) {
-        int i = (int) songFilelist.stream().filter(data -> data.getFilename().equals(filename)).count();
-        return i >= 2;
+    // Modifies: this
+    // Effects:  removes entry from filename index, other entries with the same filename stay indexed
+    private void unindexEntry(AudioDataStructure data) {
+        if (data != null) {
+            filenameIndex.computeIfPresent(data.getFilename(), (key, count) -> count == 1 ? null : count - 1);
+        }
     }
 
     // Modifies: this
     // Effects:  adds specified file to database
     public void addFileToSongDatabase(String filename) {
+        AudioDataStructure data = probeNewFile(filename, filenameIndex.keySet());
+        if (data != null) {
+            mergeNewFile(data);
+        }
+    }
+
+    // Effects: returns a data structure for filename if it's a supported file that isn't in known
+    //          returns null otherwise, safe to call from any thread as long as known isn't modified
+    private static AudioDataStructure probeNewFile(String filename, Set<String> known) {
         if (new File(filename).getName().startsWith("._") && new File(new File(filename).getParent()
                 + separatorChar + new File(filename).getName().substring(2)).exists()) {
             logger.logEvent(new Event(String.format("File %s is a macOS resource fork, skipping.", filename)));
-            return;
+            return null;
         }
         logger.logEvent(new Event("Adding file " + filename + "..."));
         try {
-            if (songDbContainsFile(new File(filename).getCanonicalPath())) {
+            if (known.contains(new File(filename).getCanonicalPath())) {
                 logger.logEvent(new Event("File already in database, skipping."));
-                return;
+                return null;
             }
         } catch (IOException e) {
             logger.logEvent(new Event("Error while trying to get absolute path of file."));
-            return;
+            return null;
         }
         AudioDataStructure data = new AudioDataStructure(filename);
         if (data.isEmpty()) {
             logger.logEvent(new Event("Unknown file type, ignored file."));
+            return null;
+        }
+        return data;
+    }
+
+    // Modifies: this
+    // Effects:  adds probed file to database, unless an earlier probe already added it
+    private void mergeNewFile(AudioDataStructure data) {
+        if (songDbContainsFile(data.getFilename())) {
+            logger.logEvent(new Event("File already in database, skipping."));
             return;
         }
-        modified = true;
-        songFilelist.add(data);
-        logger.logEvent(new Event("Added file " + filename + "!"));
+        addEntry(data);
+        logger.logEvent(new Event("Added file " + data.getFilename() + "!"));
     }
 
     // Modifies: this
     // Effects:  adds all files in specified directory to database
     public void addDirToSongDatabase(String dirname) {
+        addDirToSongDatabase(dirname, null);
+    }
+
+    // Modifies: this
+    // Effects:  adds all files in specified directory to database, probing files in parallel
+    //           listener is told about scan progress, pass null to ignore progress
+    public void addDirToSongDatabase(String dirname, LibraryScanner.ProgressListener listener) {
         logger.logEvent(new Event("Adding directory " + dirname + "..."));
-        File dir = new File(dirname);
-        if (dir.isDirectory()) {
-            File[] fileList = dir.listFiles();
-            if (fileList == null || fileList.length == 0) {
-                return;
+        Set<String> known = new HashSet<>(filenameIndex.keySet()); // Workers can't read the live index
+        LibraryScanner scanner = new LibraryScanner();
+        scanner.setProgressListener(listener);
+        scanner.scan(dirname, filename -> probeNewFile(filename, known), this::mergeNewFile);
+        logger.logEvent(new Event("Added directory " + dirname + "!"));
+    }
+
+    // Modifies: this
+    // Effects:  brings database up to date with the files on disk
+    //           adds new files in specified directory, removes files that no longer exist anywhere
+    //           and re-reads files whose size or modification time changed
+    //           unchanged files are only stat-ed, not opened
+    public void rescanSongDatabase(String dirname, LibraryScanner.ProgressListener listener) {
+        logger.logEvent(new Event("Rescanning directory " + dirname + "..."));
+        Map<String, AudioDataStructure> known = new HashMap<>(); // Workers can't read the live list
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < songFilelist.size(); i++) {
+            known.put(songFilelist.get(i).getFilename(), songFilelist.get(i));
+            positions.put(songFilelist.get(i).getFilename(), i);
+        }
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        int[] counts = new int[3]; // Added, updated, removed
+        int sizeBefore = songFilelist.size();
+        LibraryScanner scanner = new LibraryScanner();
+        scanner.setProgressListener(listener);
+        scanner.scan(dirname, filename -> {
+            String canonical = new File(filename).getCanonicalPath();
+            AudioDataStructure old = known.get(canonical);
+            if (old == null) {
+                return probeNewFile(filename, known.keySet());
             }
-            for (File file : fileList) { // Database uses absolute file paths, otherwise it would fail to load audio
-                if (file.isFile()) {
-                    ExceptionIgnore.ignoreExc(() -> addFileToSongDatabase(file.getAbsolutePath()));
-                } else if (file.isDirectory()) {
-                    addDirToSongDatabase(file.getAbsolutePath());
-                }
+            seen.add(canonical);
+            return old.isStale() ? probeChangedFile(canonical) : null;
+        }, data -> {
+            Integer i = positions.get(data.getFilename());
+            if (i == null) {
+                mergeNewFile(data);
+            } else {
+                setEntry(i, data);
+                counts[1]++;
+            }
+        });
+        counts[0] = songFilelist.size() - sizeBefore;
+        // Anything the walk didn't reach is outside the directory or gone
+        List<AudioDataStructure> kept = new ArrayList<>(songFilelist.size());
+        for (AudioDataStructure data : songFilelist) {
+            if (seen.contains(data.getFilename()) || !data.isStale()) {
+                kept.add(data);
+            } else if (new File(data.getFilename()).exists()) {
+                AudioDataStructure nu = probeChangedFile(data.getFilename());
+                kept.add(nu == null ? data : nu);
+                counts[1] += nu == null ? 0 : 1;
+            } else {
+                logger.logEvent(new Event("File " + data.getFilename() + " no longer exists, removed."));
+                counts[2]++;
             }
         }
-        logger.logEvent(new Event("Added directory " + dirname + "!"));
+        if (counts[1] + counts[2] != 0) {
+            replaceEntries(kept);
+        }
+        logger.logEvent(new Event(String.format("Rescanned directory %s! %d added, %d updated, %d removed.",
+                dirname, counts[0], counts[1], counts[2])));
+    }
+
+    // Effects: returns a fresh data structure for a known file that changed on disk
+    //          returns null if it can't be read anymore, safe to call from any thread
+    private static AudioDataStructure probeChangedFile(String filename) {
+        logger.logEvent(new Event("File " + filename + " changed, updating..."));
+        AudioDataStructure data = new AudioDataStructure(filename);
+        if (data.isEmpty()) {
+            logger.logEvent(new Event("File is no longer readable, keeping old data."));
+            return null;
+        }
+        return data;
     }
 
     // Modifies: this
     // Effects:  loads database index from (userDir)/audiodex.dbindex and reloads database
+    //           falls back to older snapshots if the current one doesn't match its checksum
     public void loadDatabase() {
         String filename = userDir + "index.audiodex.db";
         logger.logEvent(new Event("Loading database index from " + filename + "..."));
-        songFilelist.clear();
+        replaceEntries(Collections.emptyList());
+        journal = null;
+        long checksum;
         try {
-            dbIndex = Long.parseLong(readFile(filename), 36);
+            String[] index = readFile(filename).trim().split("\\s+");
+            dbIndex = Long.parseLong(index[0], 36);
+            checksum = index.length > 1 ? Long.parseLong(index[1], 16) : -1; // Older indexes only have the index
         } catch (Exception e) {
             dbIndex = 0;
+            dirty.clear();
+            removed.clear();
             logger.logEvent(new Event("New database."));
             return;
         }
         logger.logEvent(new Event("Successfully loaded database index: " + dbIndex));
+        if (checksum != -1 && FileManager.checksum(findDatabaseFilename(dbIndex)) != checksum) {
+            logger.logEvent(new Event("Database file is corrupt, falling back to previous version..."));
+            long corruptIndex = dbIndex;
+            do {
+                dbIndex--;
+            } while (dbIndex > 0 && !new File(findDatabaseFilename(dbIndex)).exists());
+            if (dbIndex <= 0) {
+                logger.logEvent(new Event("Could not find previous version of database..."));
+                dbIndex = corruptIndex; // Next save must not reuse an older index
+                return;
+            }
+            saveDatabaseIndex(FileManager.checksum(findDatabaseFilename(dbIndex)));
+        }
         loadDatabaseFile();
     }
 
     // Effects: returns if database has been modified since last save
     public boolean beenModified() {
-        if (modified) return true; // Optimization
-        if (settingsHash != settings.hashCode()) modified = true;
-        if (songFilelist.stream().anyMatch(structure -> !knownHashes.contains(structure.getId3Data().hashCode())))
-            modified = true;
-        return modified;
+        return !dirty.isEmpty() || !removed.isEmpty() || settingsHash != settings.hashCode();
     }
 
     // Requires: file exists
     // Modifies: this
-    // Effects:  replaces file list with described data file
+    // Effects:  replaces file list with described data file, then replays its journal on top
+    //           entries are decoded as they're read, the file is never fully in memory
     public void loadDatabaseFile() {
-        String filename = userDir + Long.toString(dbIndex, 36) + ".audiodex.json";
+        String filename = findDatabaseFilename(dbIndex);
         logger.logEvent(new Event("Attempting to load database..."));
-        JSONArray array;
-        String file = readFile(filename);
+        List<AudioDataStructure> loaded = new ArrayList<>();
         try {
-            JSONObject decoded = new JSONObject(file);
-            settings = new ApplicationSettings((JSONObject) decoded.get("settings"));
-            array = (JSONArray) decoded.get("files");
-        } catch (JSONException e) {
-            try {
-                array = new JSONArray(file);
+            ApplicationSettings loadedSettings = filename.endsWith(BINARY_EXTENSION)
+                    ? BinaryDatabase.read(filename, loaded::add) : JsonDatabase.read(filename, loaded::add);
+            if (loadedSettings == null) {
                 logger.logEvent(new Event("Legacy-style database."));
-            } catch (JSONException e2) {
-                logger.logEvent(new Event("Error while decoding database."));
-                return;
+            } else {
+                settings = loadedSettings;
             }
+        } catch (IOException | RuntimeException e) { // Malformed entries throw all sorts of things
+            logger.logEvent(new Event("Error while decoding database."));
+            return;
         }
-        for (Object object : array) {
-            songFilelist.add(AudioDataStructure.decode((JSONObject) object));
-        }
+        replayJournal(loaded);
+        replaceEntries(loaded);
         logger.logEvent(new Event("Loaded database!"));
-        modified = false;
-        settingsHash = settings.hashCode();
-        knownHashes.clear();
-        for (AudioDataStructure structure : songFilelist) knownHashes.addLast(structure.getId3Data().hashCode());
+        markSaved();
         logger.logEvent(new Event("Updated cached data."));
     }
 
+    // Modifies: this, loaded
+    // Effects:  applies every committed journal batch for the current snapshot to loaded
+    //           a torn batch at the end (crash mid-save) is dropped
+    private void replayJournal(List<AudioDataStructure> loaded) {
+        journal = new DatabaseJournal(getJournalFilename(dbIndex));
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < loaded.size(); i++) {
+            positions.put(loaded.get(i).getFilename(), i);
+        }
+        try {
+            int batches = journal.replay(record -> {
+                switch (record.getString("op")) {
+                    case "put": {
+                        AudioDataStructure data = AudioDataStructure.decode(record.getJSONObject("data"));
+                        Integer i = positions.putIfAbsent(data.getFilename(), loaded.size());
+                        if (i == null) {
+                            loaded.add(data);
+                        } else {
+                            loaded.set(i, data);
+                        }
+                        break;
+                    }
+                    case "remove": {
+                        Integer i = positions.remove(record.getString("filename"));
+                        if (i != null) {
+                            loaded.set(i, null);
+                        }
+                        break;
+                    }
+                    case "settings":
+                        settings = new ApplicationSettings(record.getJSONObject("data"));
+                        break;
+                }
+            });
+            if (batches != 0) {
+                logger.logEvent(new Event("Replayed " + batches + " journaled saves."));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.logEvent(new Event("Error while replaying journal, some changes may be missing."));
+        }
+        loaded.removeIf(Objects::isNull);
+    }
+
+    // Modifies: this
+    // Effects:  remembers current state as saved, so the next save only writes what changed since
+    private void markSaved() {
+        settingsHash = settings.hashCode();
+        dirty.clear();
+        removed.clear();
+    }
+
     // Effects: returns the ApplicationSettings struct
     public ApplicationSettings getSettings() {
         return settings;
     }
 
-    // Modifies: this
-    // Effects:  replaces file list with described data file
+    // Modifies: this, database files
+    // Effects:  saves changes since the last save
+    //           small changes are appended to the journal, otherwise a new snapshot is written
     //           returns true on success, false on failure
     public boolean saveDatabaseFile() {
         logger.logEvent(new Event("Saving database file..."));
@@ -283,44 +475,75 @@ public class DataManager {
             logger.logEvent(new Event("Database file already up to date! No need to save."));
             return true;
         }
-        settingsHash = settings.hashCode();
-        knownHashes.clear();
-        for (AudioDataStructure structure : songFilelist) knownHashes.addLast(structure.getId3Data().hashCode());
         File userDirFile = new File(userDir);
         if (!userDirFile.exists()) {
             if (!userDirFile.mkdirs()) {
                 throw new RuntimeException(new IOException("Failed to create user directory"));
             }
         }
+        if (saveJournal()) {
+            markSaved();
+            return true;
+        }
         dbIndex++;
-        String filename = userDir + Long.toString(dbIndex, 36) + ".audiodex.json";
-        String toSave = getDatasave().toString();
-        FileManager.writeToFile(filename, toSave);
+        long checksum = settings.doBinaryDatabase()
+                ? BinaryDatabase.write(getDatabaseFilename(dbIndex, true), settings, songFilelist)
+                : JsonDatabase.write(getDatabaseFilename(dbIndex, false), settings, songFilelist);
+        if (checksum == -1) {
+            logger.logEvent(new Event("Error saving database file."));
+            dbIndex--;
+            return false;
+        }
+        // A journal left over from before a revert belongs to the old snapshot
+        ExceptionIgnore.ignoreExc(() -> Files.deleteIfExists(Paths.get(getJournalFilename(dbIndex))));
+        journal = new DatabaseJournal(getJournalFilename(dbIndex));
+        markSaved();
         logger.logEvent(new Event("Saved database file!"));
-        if (saveDatabaseIndex()) {
-            modified = false;
+        if (saveDatabaseIndex(checksum)) {
             return true;
         }
         return false;
     }
 
-    // Effects: returns a JSONObject to be saved
-    private JSONObject getDatasave() {
-        JSONObject object = new JSONObject();
-        object.put("settings", settings.encode());
-        JSONArray array = new JSONArray();
-        for (AudioDataStructure structure : songFilelist) {
-            array.put(structure.encode());
+    // Modifies: this, database files
+    // Effects:  appends changes since the last save to the journal
+    //           returns false if a new snapshot should be written instead
+    private boolean saveJournal() {
+        String snapshot = findDatabaseFilename(dbIndex);
+        if (journal == null || !new File(snapshot).exists()
+                || snapshot.endsWith(BINARY_EXTENSION) != settings.doBinaryDatabase()) {
+            return false;
+        }
+        if (journal.getEnd() > new File(snapshot).length() / 2) {
+            logger.logEvent(new Event("Journal is getting large, compacting..."));
+            return false;
+        }
+        List<JSONObject> records = new ArrayList<>();
+        for (String filename : removed) { // Removes go first, a file can be removed and re-added
+            records.add(DatabaseJournal.removeRecord(filename));
+        }
+        for (AudioDataStructure structure : dirty) {
+            records.add(DatabaseJournal.putRecord(structure));
+        }
+        if (settingsHash != settings.hashCode()) {
+            records.add(DatabaseJournal.settingsRecord(settings));
+        }
+        try {
+            journal.append(records);
+        } catch (IOException e) {
+            logger.logEvent(new Event("Error writing journal."));
+            return false;
         }
-        object.put("files", array);
-        return object;
+        logger.logEvent(new Event("Journaled " + records.size() + " changes!"));
+        return true;
     }
 
     // Modifies: database files, specifically audiodex.dbindex
-    // Effects:  saves current database pointer
-    private boolean saveDatabaseIndex() {
+    // Effects:  saves current database pointer and the checksum of its snapshot, -1 if unknown
+    private boolean saveDatabaseIndex(long checksum) {
         logger.logEvent(new Event("Updating database index..."));
-        if (FileManager.writeToFile(userDir + "index.audiodex.db", Long.toString(dbIndex, 36))) {
+        String index = Long.toString(dbIndex, 36) + (checksum == -1 ? "" : "\n" + Long.toString(checksum, 16));
+        if (FileManager.writeToFile(userDir + "index.audiodex.db", index)) {
             logger.logEvent(new Event("Updated database index!"));
             return true;
         }
@@ -331,19 +554,29 @@ public class DataManager {
     // Modifies: database files
     // Effects:  reverts to previous database, if avaliable
     public void revertDb() {
-        if (modified) {
+        if (beenModified()) {
             logger.logEvent(new Event("Reverting unsaved changes..."));
             loadDatabase();
-            modified = false;
             return;
         }
         logger.logEvent(new Event("Reverting database..."));
+        if (journal != null && journal.getBatchCount() != 0) {
+            try {
+                journal.dropLastBatch();
+            } catch (IOException e) {
+                logger.logEvent(new Event("Could not truncate journal..."));
+                return;
+            }
+            replaceEntries(Collections.emptyList());
+            loadDatabaseFile();
+            logger.logEvent(new Event("Successfully reverted database!"));
+            return;
+        }
         dbIndex--;
-        String filename = userDir + Long.toString(dbIndex, 36) + ".audiodex.json";
-        if (new File(filename).exists()) {
-            songFilelist.clear();
+        if (new File(findDatabaseFilename(dbIndex)).exists()) {
+            replaceEntries(Collections.emptyList());
             loadDatabaseFile();
-            saveDatabaseIndex();
+            saveDatabaseIndex(FileManager.checksum(findDatabaseFilename(dbIndex)));
             logger.logEvent(new Event("Successfully reverted database!"));
         } else {
             logger.logEvent(new Event("Could not find previous version of database..."));
@@ -366,7 +599,34 @@ public class DataManager {
     // Modifies: database files
     // Effects:  cleans (deletes all files for) database for index
     public void cleanDb(long index) {
-        cleanDb(userDir + Long.toString(index, 36) + ".audiodex.json");
+        boolean cleaned = false;
+        for (String filename : new String[]{getDatabaseFilename(index, false), getDatabaseFilename(index, true),
+                getJournalFilename(index)}) {
+            if (new File(filename).exists()) {
+                cleanDb(filename);
+                cleaned = true;
+            }
+        }
+        if (!cleaned) {
+            logger.logEvent(new Event("No database to clean!"));
+        }
+    }
+
+    // Effects: returns filename of the journal for the snapshot at index
+    private String getJournalFilename(long index) {
+        return userDir + Long.toString(index, 36) + JOURNAL_EXTENSION;
+    }
+
+    // Effects: returns filename of database file for index in the specified format
+    private String getDatabaseFilename(long index, boolean binary) {
+        return userDir + Long.toString(index, 36) + (binary ? BINARY_EXTENSION : JSON_EXTENSION);
+    }
+
+    // Effects: returns filename of existing database file for index, whichever format it was saved in
+    //          returns the JSON filename if there's no file
+    private String findDatabaseFilename(long index) {
+        String binary = getDatabaseFilename(index, true);
+        return new File(binary).exists() ? binary : getDatabaseFilename(index, false);
     }
 
     // Modifies: database files
@@ -385,6 +645,7 @@ public class DataManager {
     public void cleanDbFldr() {
         logger.logEvent(new Event("Cleaning database folder..."));
         dbIndex = 0;
+        journal = null;
         File[] fileList = new File(userDir).listFiles();
         if (fileList == null) {
             logger.logEvent(new Event("Folder empty."));
@@ -427,20 +688,22 @@ public class DataManager {
     // Modifies: this
     // Effects:  removes file index from database
     public void removeSongIndex(int i) {
-        songFilelist.remove(i);
+        removeEntry(i);
         logger.logEvent(new Event("Removed song at index " + i));
     }
 
     // Modifies: this
     // Effects:  removes unlocatable files
     public void removeEmptyAudioFiles() {
-        File f; // Remove back-to-front to save decrementing the pointer
-        for (int i = songFilelist.size() - 1; i >= 0; i--) {
-            f = new File(songFilelist.get(i).getFilename());
-            if (!f.exists()) {
-                songFilelist.remove(i);
+        List<AudioDataStructure> kept = new ArrayList<>(songFilelist.size());
+        for (AudioDataStructure data : songFilelist) {
+            if (new File(data.getFilename()).exists()) {
+                kept.add(data);
             }
         }
+        if (kept.size() != songFilelist.size()) {
+            replaceEntries(kept);
+        }
     }
 
     // Modifies: this
@@ -461,13 +724,13 @@ public class DataManager {
             logger.logEvent(new Event("Unknown file type, cannot use file."));
             return;
         }
-        songFilelist.set(i, data);
+        setEntry(i, data);
         logger.logEvent(new Event("Updated file for index " + i + "!"));
     }
 
     // Modifies: this
     // Effects:  updates file pointer for index
     public void updateAudioFile(int i, AudioDataStructure data) {
-        songFilelist.set(i, data);
+        setEntry(i, data);
     }
 }
@@ -0,0 +1,147 @@
+package model;
+
+import audio.AudioDataStructure;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Append-only log of database changes since the last snapshot
+// One JSON record per line, every save appends a batch of records followed by a commit record
+// Batches without a commit (the process died mid-write) are ignored and cut off on the next replay
+class DatabaseJournal {
+    private final String filename;
+    private final List<Long> batchEnds = new ArrayList<>(); // File offset just past each commit record
+
+    // Make a lambda for this
+    interface Replayer {
+        void replay(JSONObject record);
+    }
+
+    // Effects: creates a journal backed by filename, nothing is read until replay()
+    DatabaseJournal(String filename) {
+        this.filename = filename;
+    }
+
+    // Effects: returns record that adds or replaces an entry
+    static JSONObject putRecord(AudioDataStructure data) {
+        JSONObject out = new JSONObject();
+        out.put("op", "put");
+        out.put("data", data.encode());
+        return out;
+    }
+
+    // Effects: returns record that removes all entries for filename
+    static JSONObject removeRecord(String filename) {
+        JSONObject out = new JSONObject();
+        out.put("op", "remove");
+        out.put("filename", filename);
+        return out;
+    }
+
+    // Effects: returns record that replaces settings
+    static JSONObject settingsRecord(ApplicationSettings settings) {
+        JSONObject out = new JSONObject();
+        out.put("op", "settings");
+        out.put("data", settings.encode());
+        return out;
+    }
+
+    // Modifies: this, journal file
+    // Effects:  passes every record of every committed batch to replayer, in order
+    //           cuts off anything after the last commit so later batches don't follow garbage
+    //           returns number of committed batches, a missing journal has none
+    int replay(Replayer replayer) throws IOException {
+        batchEnds.clear();
+        if (!new File(filename).exists()) {
+            return 0;
+        }
+        List<JSONObject> batch = new ArrayList<>();
+        long offset = 0;
+        long fileSize = new File(filename).length();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                JSONObject record;
+                try {
+                    record = new JSONObject(line);
+                } catch (JSONException e) {
+                    break; // Torn write
+                }
+                if (record.optString("op").equals("commit")) {
+                    batch.forEach(replayer::replay);
+                    batch.clear();
+                    batchEnds.add(Math.min(offset, fileSize));
+                } else {
+                    batch.add(record);
+                }
+            }
+        }
+        long end = getEnd();
+        if (end < fileSize) {
+            truncate(end);
+        }
+        return batchEnds.size();
+    }
+
+    // Modifies: this, journal file
+    // Effects:  appends records as one committed batch and flushes them to disk
+    void append(List<JSONObject> records) throws IOException {
+        StringBuilder out = new StringBuilder();
+        for (JSONObject record : records) {
+            out.append(record).append('\n');
+        }
+        out.append("{\"op\":\"commit\"}\n");
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.toString().getBytes(StandardCharsets.UTF_8));
+            channel.position(getEnd());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            batchEnds.add(channel.position());
+        }
+    }
+
+    // Modifies: this, journal file
+    // Effects:  drops the last committed batch, returns false if there isn't one
+    boolean dropLastBatch() throws IOException {
+        if (batchEnds.isEmpty()) {
+            return false;
+        }
+        batchEnds.remove(batchEnds.size() - 1);
+        truncate(getEnd());
+        return true;
+    }
+
+    // Effects: returns number of committed batches seen by replay() and append()
+    int getBatchCount() {
+        return batchEnds.size();
+    }
+
+    // Effects: returns size of the committed part of the journal in bytes
+    long getEnd() {
+        return batchEnds.isEmpty() ? 0 : batchEnds.get(batchEnds.size() - 1);
+    }
+
+    // Modifies: journal file
+    // Effects:  cuts journal file down to length bytes
+    private void truncate(long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+            channel.force(false);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package model;
 
 import org.fusesource.jansi.AnsiConsole;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -31,7 +32,7 @@ public class EventLog implements Iterable<Event> {
      * (Singleton Design Pattern)
      * @return  instance of EventLog
      */
-    public static EventLog getInstance() {
+    public static synchronized EventLog getInstance() {
         if (theLog == null) {
             theLog = new EventLog();
         }
@@ -40,9 +41,10 @@ public class EventLog implements Iterable<Event> {
     
     /**
      * Adds an event to the event log.
+     * Safe to call from worker threads.
      * @param e the event to be added
      */
-    public void logEvent(Event e) {
+    public synchronized void logEvent(Event e) {
         events.add(e);
         // Keep size under control
         if (events.size() > 4096) {
@@ -58,13 +60,17 @@ public class EventLog implements Iterable<Event> {
     /**
      * Clears the event log and logs the event.
      */
-    public void clear() {
+    public synchronized void clear() {
         events.clear();
         logEvent(new Event("Event log cleared."));
     }
     
+    /**
+     * Iterates over a copy of the events, so other threads can keep
+     * logging while the caller walks it.
+     */
     @Override
-    public Iterator<Event> iterator() {
-        return events.iterator();
+    public synchronized Iterator<Event> iterator() {
+        return new ArrayList<>(events).iterator();
     }
 }
\ No newline at end of file
@@ -3,41 +3,107 @@ package model;
 import oshi.SystemInfo;
 import oshi.software.os.OSFileStore;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
 
 // Static class
 public class FileManager {
+    // Make a lambda for this
+    public interface StreamWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
     // Modifies: file at filename
     // Effects:  writes string to file, overwriting previous contents
+    //           the file is replaced atomically, see writeAtomically()
     public static boolean writeToFile(String filename, String data) {
+        return writeAtomically(filename, out -> out.write(data.getBytes(StandardCharsets.UTF_8))) != -1;
+    }
+
+    // Modifies: file at filename
+    // Effects:  writes to a temporary file next to filename, flushes it to disk and then moves it over filename
+    //           a crash at any point leaves either the old or the new file, never a partial one
+    //           returns CRC32 of the written data, or -1 on failure
+    public static long writeAtomically(String filename, StreamWriter writer) {
+        Path target;
+        Path temp;
+        try {
+            target = Paths.get(filename).toAbsolutePath();
+            temp = target.resolveSibling(target.getFileName() + ".tmp");
+        } catch (InvalidPathException e) {
+            return -1;
+        }
+        CRC32 checksum = new CRC32();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                    1 << 16), checksum);
+            writer.write(out);
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            ExceptionIgnore.ignoreExc(() -> Files.deleteIfExists(temp));
+            return -1;
+        }
+        if (!replaceWith(temp, target)) {
+            return -1;
+        }
+        return checksum.getValue();
+    }
+
+    // Modifies: filesystem
+    // Effects:  moves temp over target, atomically if the filesystem supports it
+    //           temp is deleted if it can't be moved, returns true on success
+    public static boolean replaceWith(Path temp, Path target) {
         try {
-            FileWriter writer = new FileWriter(filename, StandardCharsets.UTF_8, false);
-            writer.write(data);
-            writer.close();
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
+            ExceptionIgnore.ignoreExc(() -> Files.deleteIfExists(temp));
             return false;
         }
         return true;
     }
 
+    // Effects: returns CRC32 of file contents, or -1 if it can't be read
+    public static long checksum(String filename) {
+        CRC32 checksum = new CRC32();
+        try (InputStream in = new CheckedInputStream(Files.newInputStream(Paths.get(filename)), checksum)) {
+            byte[] buffer = new byte[1 << 16];
+            while (in.read(buffer) != -1) {
+                // CheckedInputStream does the work
+            }
+        } catch (IOException | InvalidPathException e) {
+            return -1;
+        }
+        return checksum.getValue();
+    }
+
     // Effects: reads string from file
     public static String readFile(String filename) {
         try {
-            FileReader reader = new FileReader(filename, StandardCharsets.UTF_8);
-            char[] fileContents = new char[Math.toIntExact(new File(filename).length())];
-            int len = reader.read(fileContents);
-            StringBuilder out = new StringBuilder();
-            for (int i = 0; i < len; i++) {
-                out.append(fileContents[i]);
-            }
-            out.trimToSize();
-            return out.toString();
-        } catch (IOException e) {
+            return Files.readString(Paths.get(filename), StandardCharsets.UTF_8);
+        } catch (IOException | IllegalArgumentException e) { // Invalid path or not UTF-8
             return "";
         }
     }
@@ -0,0 +1,131 @@
+package model;
+
+import audio.AudioDataStructure;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.json.JSONWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// Static class
+// Streams *.audiodex.json database files one entry at a time
+// Only a single entry's JSON tree is ever in memory, no matter how large the database is
+public class JsonDatabase {
+
+    // Make a lambda for this
+    public interface EntryHandler {
+        void handle(AudioDataStructure data);
+    }
+
+    // Effects: reads database file, passing every entry to handler in order
+    //          returns stored settings, or null if the file doesn't have any (legacy-style database)
+    //          throws JSONException if the file is malformed, handler may have seen some entries by then
+    public static ApplicationSettings read(String filename, EntryHandler handler) throws IOException {
+        try (Reader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+            return read(reader, handler);
+        }
+    }
+
+    // Effects: reads database from reader, passing every entry to handler in order
+    //          returns stored settings, or null if there aren't any (legacy-style database)
+    //          throws JSONException if the data is malformed, handler may have seen some entries by then
+    public static ApplicationSettings read(Reader reader, EntryHandler handler) {
+        JSONTokener tokener = new JSONTokener(reader instanceof BufferedReader ? reader
+                : new BufferedReader(reader));
+        char c = tokener.nextClean();
+        if (c == '[') { // Legacy-style database, just the file list
+            readEntries(tokener, handler);
+            return null;
+        }
+        if (c != '{') {
+            throw tokener.syntaxError("Database must start with '{' or '['");
+        }
+        ApplicationSettings settings = null;
+        if (tokener.nextClean() == '}') {
+            return null;
+        }
+        tokener.back();
+        do {
+            if (tokener.nextClean() != '"') {
+                throw tokener.syntaxError("Expected a key");
+            }
+            String key = tokener.nextString('"');
+            if (tokener.nextClean() != ':') {
+                throw tokener.syntaxError("Expected ':' after " + key);
+            }
+            if (key.equals("files")) {
+                if (tokener.nextClean() != '[') {
+                    throw tokener.syntaxError("File list must be an array");
+                }
+                readEntries(tokener, handler);
+            } else {
+                Object value = tokener.nextValue();
+                if (key.equals("settings")) {
+                    settings = new ApplicationSettings(asObject(tokener, value));
+                } // Unknown keys are skipped
+            }
+            c = tokener.nextClean();
+        } while (c == ',');
+        if (c != '}') {
+            throw tokener.syntaxError("Expected ',' or '}'");
+        }
+        return settings;
+    }
+
+    // Requires: tokener is just past the opening '['
+    // Effects:  decodes entries one by one until the closing ']'
+    private static void readEntries(JSONTokener tokener, EntryHandler handler) {
+        if (tokener.nextClean() == ']') {
+            return;
+        }
+        tokener.back();
+        char c;
+        do {
+            handler.handle(AudioDataStructure.decode(asObject(tokener, tokener.nextValue())));
+            c = tokener.nextClean();
+        } while (c == ',');
+        if (c != ']') {
+            throw tokener.syntaxError("Expected ',' or ']'");
+        }
+    }
+
+    // Effects: returns value as a JSONObject, throws JSONException if it isn't one
+    private static JSONObject asObject(JSONTokener tokener, Object value) {
+        if (value instanceof JSONObject) {
+            return (JSONObject) value;
+        }
+        throw tokener.syntaxError("Expected an object");
+    }
+
+    // Modifies: file at filename
+    // Effects:  writes settings and entries to file, atomically replacing previous contents
+    //           returns CRC32 of the written file, or -1 on failure
+    public static long write(String filename, ApplicationSettings settings,
+                             Iterable<AudioDataStructure> entries) {
+        return FileManager.writeAtomically(filename, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            write(writer, settings, entries);
+            writer.flush();
+        });
+    }
+
+    // Modifies: writer
+    // Effects:  writes settings and entries to writer, one entry at a time
+    public static void write(Writer writer, ApplicationSettings settings, Iterable<AudioDataStructure> entries) {
+        JSONWriter json = new JSONWriter(writer);
+        json.object().key("settings").value(settings.encode());
+        json.key("files").array();
+        for (AudioDataStructure structure : entries) {
+            json.value(structure.encode());
+        }
+        json.endArray().endObject();
+    }
+}
@@ -0,0 +1,158 @@
+package model;
+
+import audio.AudioDataStructure;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Walks a directory tree and probes every file found on a bounded worker pool
+// Probe results are handed back on the calling thread, in the order the files were found
+public class LibraryScanner {
+    private static EventLog logger = EventLog.getInstance();
+
+    // Make a lambda for this
+    // Runs on a worker thread, returns null if the file should be skipped
+    public interface Prober {
+        AudioDataStructure probe(String filename) throws Exception;
+    }
+
+    // Make a lambda for this
+    // Runs on the scanning thread
+    public interface Merger {
+        void merge(AudioDataStructure data);
+    }
+
+    // Make a lambda for this
+    public interface ProgressListener {
+        void update(int filesScanned, int filesFound, double filesPerSecond);
+    }
+
+    private final int threads;
+    private final int window;
+    private ProgressListener listener;
+    private int filesFound;
+    private int filesScanned;
+    private long startTime;
+    private long endTime;
+
+    // Effects: creates a scanner with one worker per core
+    public LibraryScanner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    // Requires: threads > 0
+    // Effects:  creates a scanner with the specified number of workers
+    //           at most a few files per worker are in flight at once
+    public LibraryScanner(int threads) {
+        this.threads = threads;
+        window = threads * 4;
+    }
+
+    // Modifies: this
+    // Effects:  sets progress listener, null disables progress reports
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    // Effects: returns number of files probed during the last scan
+    public int getFilesScanned() {
+        return filesScanned;
+    }
+
+    // Effects: returns files probed per second during the last scan, or so far if it's still running
+    public double getFilesPerSecond() {
+        long end = endTime == 0 ? System.nanoTime() : endTime;
+        double seconds = (end - startTime) / 1e9;
+        return seconds <= 0 ? 0 : filesScanned / seconds;
+    }
+
+    // Modifies: this
+    // Effects:  probes every regular file under dirname and passes all non-null results to merger
+    //           does nothing if dirname isn't a directory
+    public void scan(String dirname, Prober prober, Merger merger) {
+        filesFound = 0;
+        filesScanned = 0;
+        startTime = System.nanoTime();
+        endTime = 0;
+        Path root = Paths.get(dirname);
+        if (!Files.isDirectory(root)) {
+            endTime = startTime;
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, run -> {
+            Thread thread = new Thread(run, "Library Scanner");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        Deque<Future<AudioDataStructure>> pending = new ArrayDeque<>();
+        try {
+            try {
+                Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                        new SimpleFileVisitor<>() {
+                            @Override
+                            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                                if (attrs.isRegularFile()) {
+                                    // Database uses absolute file paths, otherwise it would fail to load audio
+                                    String filename = file.toAbsolutePath().toString();
+                                    pending.addLast(pool.submit(() -> prober.probe(filename)));
+                                    filesFound++;
+                                    while (pending.size() >= window) {
+                                        mergeNext(pending, merger);
+                                    }
+                                }
+                                return FileVisitResult.CONTINUE;
+                            }
+
+                            @Override
+                            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                                logger.logEvent(new Event("Could not read " + file + ", skipping."));
+                                return FileVisitResult.CONTINUE;
+                            }
+                        });
+            } catch (IOException e) {
+                ExceptionIgnore.logException(e);
+            }
+            while (!pending.isEmpty()) {
+                mergeNext(pending, merger);
+            }
+        } finally {
+            pool.shutdown(); // Workers are daemons, but don't leave them around if merging failed
+            endTime = System.nanoTime();
+        }
+        logger.logEvent(new Event(String.format("Scanned %d files in %s (%.1f files/sec).",
+                filesScanned, root, getFilesPerSecond())));
+    }
+
+    // Modifies: this
+    // Effects:  waits for the oldest pending probe and merges it
+    private void mergeNext(Deque<Future<AudioDataStructure>> pending, Merger merger) {
+        try {
+            AudioDataStructure data = pending.removeFirst().get();
+            if (data != null) {
+                merger.merge(data);
+            }
+        } catch (ExecutionException e) {
+            ExceptionIgnore.logException(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        filesScanned++;
+        if (listener != null) {
+            listener.update(filesScanned, filesFound, getFilesPerSecond());
+        }
+    }
+}
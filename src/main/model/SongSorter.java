@@ -0,0 +1,144 @@
+package model;
+
+import audio.AudioDataStructure;
+import audio.ID3Container;
+import model.DataManager.SortingTypes;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Sorting engine for the song list
+// Collation keys are computed once per file, sorted orders are cached per sorting type
+class SongSorter {
+    // Precomputed collation keys for a single file
+    private static class SortKey {
+        private final AudioDataStructure file;
+        private final long version; // Keys are stale once the file changes
+        private final String album;
+        private final String artist;
+        private final String albumArtist;
+        private final String title;
+        private final long disc;
+        private final long track;
+        private final long filesize;
+
+        // Effects: computes all collation keys for file
+        SortKey(AudioDataStructure file) {
+            this.file = file;
+            version = file.getVersion();
+            ID3Container id3 = file.getId3Data();
+            album = getSortingValue("Album", id3);
+            artist = getSortingValue("Artist", id3);
+            albumArtist = getSortingValue("AlbumArtist", id3);
+            title = getSortingValue("Title", id3);
+            disc = parseLong(getSortingValue("Disc", id3));
+            track = parseLong(getSortingValue("Track", id3));
+            filesize = file.getFilesize();
+        }
+
+        // Effects: returns true if keys still describe file
+        boolean upToDate() {
+            return file.getVersion() == version;
+        }
+    }
+
+    private static final Comparator<SortKey> ALBUM_ORDER = Comparator.<SortKey, String>comparing(key -> key.album)
+            .thenComparingLong(key -> key.disc).thenComparingLong(key -> key.track);
+    private static final Map<SortingTypes, Comparator<SortKey>> ORDERS = new EnumMap<>(SortingTypes.class);
+
+    static {
+        ORDERS.put(SortingTypes.Default, ALBUM_ORDER);
+        ORDERS.put(SortingTypes.Album, ALBUM_ORDER);
+        ORDERS.put(SortingTypes.Artist,
+                Comparator.<SortKey, String>comparing(key -> key.artist).thenComparing(ALBUM_ORDER));
+        ORDERS.put(SortingTypes.AlbumArtist,
+                Comparator.<SortKey, String>comparing(key -> key.albumArtist).thenComparing(ALBUM_ORDER));
+        ORDERS.put(SortingTypes.Title,
+                Comparator.<SortKey, String>comparing(key -> key.title).thenComparing(ALBUM_ORDER));
+        ORDERS.put(SortingTypes.Filesize, Comparator.comparingLong(key -> key.filesize));
+    }
+
+    private Map<AudioDataStructure, SortKey> keys = new IdentityHashMap<>();
+    private final Map<SortingTypes, SortKey[]> sortedOrders = new EnumMap<>(SortingTypes.class);
+
+    // Modifies: this
+    // Effects:  forgets all sorted orders, must be called whenever files are added or removed
+    //           collation keys are kept, they're still valid for files that stay in the list
+    void invalidate() {
+        sortedOrders.clear();
+    }
+
+    // Modifies: this, list
+    // Effects:  sorts list by sortBy (stable), reusing a cached order if the list hasn't changed since
+    void sort(List<AudioDataStructure> list, SortingTypes sortBy) {
+        SortKey[] order = sortedOrders.get(sortBy);
+        if (order == null || !isValid(order, list.size())) {
+            order = buildKeys(list);
+            Arrays.sort(order, ORDERS.get(sortBy));
+            sortedOrders.put(sortBy, order);
+        }
+        for (int i = 0; i < order.length; i++) {
+            list.set(i, order[i].file);
+        }
+    }
+
+    // Effects: returns true if cached order can still be used
+    private boolean isValid(SortKey[] order, int size) {
+        if (order.length != size) {
+            return false;
+        }
+        for (SortKey key : order) {
+            if (!key.upToDate()) {
+                sortedOrders.clear(); // Every order with this key is stale
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Modifies: this
+    // Effects:  returns collation keys for every file in list, only recomputing missing or stale keys
+    private SortKey[] buildKeys(List<AudioDataStructure> list) {
+        Map<AudioDataStructure, SortKey> nuKeys = new IdentityHashMap<>(list.size());
+        SortKey[] out = new SortKey[list.size()];
+        for (int i = 0; i < out.length; i++) {
+            AudioDataStructure file = list.get(i);
+            SortKey key = keys.get(file);
+            if (key == null || !key.upToDate()) {
+                key = new SortKey(file);
+            }
+            nuKeys.put(file, key);
+            out[i] = key;
+        }
+        keys = nuKeys; // Drops keys for removed files
+        return out;
+    }
+
+    // Effects: parses long without exception
+    private static long parseLong(String str) {
+        try {
+            return Long.parseLong(str);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Effects: gets value for sorting
+    private static String getSortingValue(String type, ID3Container id3) {
+        if (id3 == null) {
+            return "";
+        }
+        Object s = id3.getID3Data(type + "-Sort");
+        if (s == null || s.toString().equals("null") || s.toString().isEmpty()) {
+            s = id3.getID3Data(type);
+            if (s == null || s.toString().equals("null") || s.toString().isEmpty()) {
+                s = "";
+            }
+        }
+        return s.toString().toLowerCase();
+    }
+}
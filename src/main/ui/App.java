@@ -13,9 +13,11 @@ import java.net.URI;
 import java.util.*;
 import java.util.List;
 import java.util.logging.LogManager;
+import java.util.stream.Collectors;
 
 import audio.AudioDecoder;
 import audio.AudioFileLoader;
+import audio.AudioFileType;
 import audio.ID3Container;
 import com.formdev.flatlaf.FlatDarculaLaf;
 import com.formdev.flatlaf.FlatIntelliJLaf;
@@ -68,9 +70,11 @@ public class App {
     private static String filename = "";
     private static DataManager database;
     private static List<AudioConversion> audioConverterList;
+    private static ConversionScheduler conversionScheduler;
     private static LinkedList<AudioDataStructure> played;
     private static AudioDataStructure nowPlaying;
     private static boolean loop = false;
+    private static final Object activity = new Object(); // Progress threads wait on this while idle
 
     public static Image getAppImage() {
         return Gui.mainWindow.getIconImage();
@@ -91,9 +95,22 @@ public class App {
         return i;
     }
 
+    // Modifies: this
+    // Effects:  adds an audio conversion to the list and queues it to run once a worker is free
+    private static void queueConversion(AudioConversion converter) {
+        queueConversion(converter, ConversionScheduler.DEFAULT_PRIORITY);
+    }
+
+    // Modifies: this
+    // Effects:  same as above, higher priorities start first
+    private static void queueConversion(AudioConversion converter, int priority) {
+        audioConverterList.add(converter);
+        conversionScheduler.submit(converter, priority);
+    }
+
     // Effects: Counts failed audio file conversions
     private static int deadAudioConversions() {
-        int i = (int) audioConverterList.stream().filter(converter -> !converter.isFinished())
+        int i = (int) audioConverterList.stream().filter(AudioConversion::isFinished)
                 .filter(AudioConversion::errorOccurred).count();
         return i;
     }
@@ -114,6 +131,7 @@ public class App {
     // Effects:  Is run when song is finished and redraws screen if necessary
     //           also adds previously playing song to previously played list
     public static void finishedSong() {
+        activityChanged();
         if (end || notMain) {
             return;
         }
@@ -127,6 +145,18 @@ public class App {
         }
     }
 
+    // Effects: returns the song that plays once the current one finishes, or null if playback stops there
+    //          lets the playback backend open it early and start it without a gap
+    private static AudioDataStructure peekNextSong() {
+        if (end || nowPlaying == null) {
+            return null;
+        }
+        if (USE_CLI) {
+            return loop ? nowPlaying : songQueue.peekFirst();
+        }
+        return Gui.peekNextSong();
+    }
+
     // Modifies: this
     // Effects:  Keeps previously played list to a reasonable size
     public static void maxBoundPlayedList() {
@@ -138,11 +168,13 @@ public class App {
     // Modifies: this
     // Effects:  Is run when encode is finished and redraws screen if necessary.
     public static void finishedEncode() {
+        activityChanged();
         if (end || notMain) {
             return;
         }
         for (int i = audioConverterList.size() - 1; i >= 0; i--) {
-            if (audioConverterList.get(i).isFinished() && !audioConverterList.get(i).errorOccurred()) {
+            AudioConversion converter = audioConverterList.get(i);
+            if (converter.isFinished() && (!converter.errorOccurred() || converter.isCancelled())) {
                 audioConverterList.remove(i); // No need to update index, we're decrementing
             }
         }
@@ -169,8 +201,39 @@ public class App {
     }
 
 
+    // Effects: wakes up threads waiting for playback or conversions to start
+    public static void activityChanged() {
+        synchronized (activity) {
+            activity.notifyAll();
+        }
+    }
+
+    // Effects: returns true if audio is playing, or if conversions count and one is running
+    private static boolean active(boolean conversions) {
+        if (playbackManager != null && playbackManager.audioIsLoaded() && !playbackManager.paused()) {
+            return true;
+        }
+        return conversions && audioConverterList != null
+                && audioConverterList.stream().anyMatch(converter -> !converter.isFinished());
+    }
+
+    // Effects: blocks until active(conversions) is true, or the thread is interrupted
+    //          lets progress threads sleep without polling when nothing's going on
+    private static void awaitActivity(boolean conversions) {
+        synchronized (activity) {
+            while (!active(conversions)) {
+                try {
+                    activity.wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
     // Effects: updates playback status in current UI
     public static void updatePlaybackStatus() {
+        activityChanged();
         if (notMain) {
             return;
         }
@@ -211,6 +274,7 @@ public class App {
     // Prepares and loads data
     public static void startApp(String[] args) {
         audioConverterList = new ArrayList<>();
+        conversionScheduler = new ConversionScheduler();
         if (strArrContains(args, "--cli")) {
             USE_CLI = true;
         } else {
@@ -226,6 +290,7 @@ public class App {
         database.sortSongList("Default");
         playbackManager = new AudioFilePlaybackBackend();
         playbackManager.setReplayGain(database.getSettings().doSoundCheck());
+        playbackManager.setNextSongSupplier(App::peekNextSong);
         if (USE_CLI) {
             Cli.cli(args);
         } else {
@@ -621,6 +686,16 @@ public class App {
             activeConversionsTable.getColumnModel().getColumn(1).setMaxWidth(192);
             activeConversionsTable.getColumnModel().getColumn(1).setMinWidth(192);
             activeConversionsTable.getColumnModel().getColumn(1).setCellRenderer(new ProgressCellRender());
+            activeConversionsTable.addMouseListener(new java.awt.event.MouseAdapter() {
+                @Override
+                public void mouseClicked(java.awt.event.MouseEvent evt) {
+                    int row = activeConversionsTable.rowAtPoint(evt.getPoint());
+                    if (row >= 0 && evt.getButton() == 3) {
+                        RightClickConversionMenu menu = new RightClickConversionMenu(row);
+                        menu.show(evt.getComponent(), evt.getX(), evt.getY());
+                    }
+                }
+            });
         }
 
         private static String artworkUrl = null;
@@ -631,6 +706,7 @@ public class App {
                 activeConversionsView.setVisible(false);
             } else {
                 SwingUtilities.invokeLater(() -> {
+                    activeConversionsView.setTitle("Active Conversions - " + conversionScheduler.getStatusString());
                     activeConversionsTable.updateUI();
                     activeConversionsView.pack();
                     if (!activeConversionsView.isVisible()) {
@@ -649,6 +725,32 @@ public class App {
         private static LoopType loop = LoopType.NO;
         private static boolean shuffle = false;
 
+        // Active conversion right click menu
+        private static class RightClickConversionMenu extends JPopupMenu {
+            JMenuItem item;
+
+            // Effects: adds option to cancel the conversion
+            private void addCanceller(int row) {
+                AudioConversion converter = audioConverterList.get(row);
+                item = new JMenuItem("Cancel conversion");
+                item.addActionListener(e -> conversionScheduler.cancel(converter));
+                this.add(item);
+            }
+
+            // Effects: adds option to cancel every conversion
+            private void addCancelAll() {
+                item = new JMenuItem("Cancel all conversions");
+                item.addActionListener(e -> conversionScheduler.cancelAll());
+                this.add(item);
+            }
+
+            // Effects: Does the thing
+            RightClickConversionMenu(int row) {
+                addCanceller(row);
+                addCancelAll();
+            }
+        }
+
         // Song right click menu
         private static class RightClickSongMenu extends JPopupMenu {
             JMenuItem item;
@@ -673,8 +775,7 @@ public class App {
                 item = new JMenuItem("Re-encode song");
                 item.addActionListener(e ->
                         new ConversionPopupFrame(database.getAudioFile(row), popup -> {
-                            audioConverterList.add((AudioConversion) popup.getValue());
-                            ((AudioConversion) popup.getValue()).start();
+                            queueConversion((AudioConversion) popup.getValue());
                         }));
                 this.add(item);
             }
@@ -997,6 +1098,7 @@ public class App {
                         waitForFirstEncoder();
                     }
                 }
+                conversionScheduler.shutdown();
                 mainWindow.dispose();
                 EventLog.getInstance().iterator().forEachRemaining(event ->
                         AnsiConsole.out().println(String.format("%s: %s",
@@ -1130,6 +1232,20 @@ public class App {
             skipButton.setEnabled(!songQueue.isEmpty());
         }
 
+        // Effects: returns the song songFinishedPlaying() would play, or null if it would stop
+        private static AudioDataStructure peekNextSong() {
+            if (loop == LoopType.ONE) {
+                return nowPlaying;
+            }
+            if (songQueue.isEmpty()) {
+                if (loop == LoopType.ALL && database.audioListSize() > 0) {
+                    return database.getAudioFile(0);
+                }
+                return null;
+            }
+            return songQueue.getFirst();
+        }
+
         // Modifies: this
         // Effects:  handle when a song just finished playing
         public static void songFinishedPlaying() {
@@ -1200,8 +1316,7 @@ public class App {
                         AudioDataStructure structure = new AudioDataStructure((String) popup.getValue());
                         if (!structure.isEmpty()) {
                             new ConversionPopupFrame(structure, converter -> {
-                                audioConverterList.add((AudioConversion) converter.getValue());
-                                ((AudioConversion) converter.getValue()).start();
+                                queueConversion((AudioConversion) converter.getValue());
                             });
                         } else {
                             new PopupManager.ErrorPopupFrame("File is corrupt or in an<br>unsupported format."
@@ -1751,12 +1866,13 @@ public class App {
         // class for the thread which handles the playback indicator
         // in CLI mode
         private static class PlaybackThread extends Thread {
-            private boolean run = true;
+            private volatile boolean run = true;
 
             // Modifies: this
             // Effects:  ends thread
             public void killThread() {
                 run = false;
+                interrupt(); // In case it's waiting for something to happen
                 safeJoin();
             }
 
@@ -1779,7 +1895,11 @@ public class App {
             @Override
             public void run() {
                 while (run) {
+                    awaitActivity(true);
                     Cli.wait(20);
+                    if (!run) {
+                        return;
+                    }
                     if (playbackManager == null) {
                         continue;
                     }
@@ -1807,12 +1927,13 @@ public class App {
         // class for the thread which handles the playback indicator
         // in CLI mode
         private static class PlaybackThread extends Thread {
-            private boolean run = true;
+            private volatile boolean run = true;
 
             // Modifies: this
             // Effects:  ends thread
             public void killThread() {
                 run = false;
+                interrupt(); // In case it's waiting for something to happen
                 safeJoin();
             }
 
@@ -1838,8 +1959,9 @@ public class App {
                     return;
                 }
                 while (run) {
+                    awaitActivity(false);
                     Cli.wait(20);
-                    if (playbackManager == null) {
+                    if (!run || playbackManager == null) {
                         return;
                     }
                     doPlaybackStatusWrite();
@@ -1866,6 +1988,7 @@ public class App {
                 if (end) {
                     state = MenuState.CLI_OTHER;
                     waitForEncoders();
+                    conversionScheduler.shutdown();
                     AnsiConsole.out().println("Goodbye!");
                     return;
                 }
@@ -1982,6 +2105,9 @@ public class App {
                 case "6":
                     startEncoder(inputScanner);
                     break;
+                case "7":
+                    bulkConvert(inputScanner);
+                    break;
                 case "c":
                     playbackManager.playAudio();
                     break;
@@ -2018,6 +2144,12 @@ public class App {
                 case "z":
                     updateMetadata();
                     break;
+                case "x":
+                    cancelConversion(inputScanner);
+                    break;
+                case "a":
+                    conversionScheduler.cancelAll();
+                    break;
                 /*case "}": {
                     debug(inputScanner);
                     return;
@@ -2091,8 +2223,7 @@ public class App {
                     AnsiConsole.out().println("An error has occurred.");
                     return;
                 }
-                audioConverterList.add(converter);
-                converter.start();
+                queueConversion(converter);
             } else {
                 AnsiConsole.out().println("File doesn't exist, is a directory, or is inaccessible.");
             }
@@ -2111,8 +2242,7 @@ public class App {
                     AnsiConsole.out().println("An error has occurred.");
                     return;
                 }
-                audioConverterList.add(converter);
-                converter.start();
+                queueConversion(converter);
             } else {
                 AnsiConsole.out().println("File no longer exists, or is currently inaccessible.");
                 Cli.wait(1000);
@@ -2123,23 +2253,89 @@ public class App {
         private static AudioConversion makeAudioConverter(AudioDataStructure source, Scanner scanner) {
             AnsiConsole.out().println("Please enter the target filename:");
             AudioConversion base = new AudioConversion(source, scanner.nextLine().trim());
-            HashMap<String, List<String>> options = base.getOptions();
+            HashMap<String, String> selectedOptions = selectAudioSettings(base.getOptions(), scanner);
+            if (selectedOptions != null) {
+                base.setAudioSettings(selectedOptions);
+            }
+            return base;
+        }
+
+        // Effects: returns user-selected encoder settings, null if the encoder doesn't have any
+        private static HashMap<String, String> selectAudioSettings(HashMap<String, List<String>> options,
+                                                                   Scanner scanner) {
             if (options == null) {
                 AnsiConsole.out().println("Encoder does not have any selectable options.");
-            } else {
-                HashMap<String, String> selectedOptions = new HashMap<>();
-                for (Map.Entry<String, List<String>> option : options.entrySet()) {
-                    AnsiConsole.out().println("Options for " + option.getKey() + ":");
-                    for (int i = 0; i < option.getValue().size(); i++) {
-                        AnsiConsole.out().println(i + ". " + option.getValue().get(i));
-                    }
-                    AnsiConsole.out().println("Please select an option.");
-                    selectedOptions.put(option.getKey(),
-                            option.getValue().get(getUserIntToValue(option.getValue().size(), scanner)));
+                return null;
+            }
+            HashMap<String, String> selectedOptions = new HashMap<>();
+            for (Map.Entry<String, List<String>> option : options.entrySet()) {
+                AnsiConsole.out().println("Options for " + option.getKey() + ":");
+                for (int i = 0; i < option.getValue().size(); i++) {
+                    AnsiConsole.out().println(i + ". " + option.getValue().get(i));
                 }
-                base.setAudioSettings(selectedOptions);
+                AnsiConsole.out().println("Please select an option.");
+                selectedOptions.put(option.getKey(),
+                        option.getValue().get(getUserIntToValue(option.getValue().size(), scanner)));
             }
-            return base;
+            return selectedOptions;
+        }
+
+        // Modifies: a lot:
+        //           - filesystem
+        //           - console
+        //           - audio converter list
+        // Effects:  converts every matching database file into a mirror library, skipping files already done
+        private static void bulkConvert(Scanner scanner) {
+            AnsiConsole.out().print(Ansi.ansi().eraseScreen());
+            AnsiConsole.out().print(Ansi.ansi().cursor(2, 1));
+            AnsiConsole.out().println("Please enter the output directory:");
+            doPlaybackStatusWrite();
+            String dir = scanner.nextLine().trim();
+            AnsiConsole.out().println("Please enter the output file template (blank for "
+                    + BulkConversion.DEFAULT_TEMPLATE + "):");
+            String template = blankToNull(scanner.nextLine());
+            AnsiConsole.out().println("Please enter the output file extension (e.g. mp3):");
+            String extension = scanner.nextLine().trim().replaceFirst("^\\.", "");
+            BulkConversion bulk = new BulkConversion(dir, template == null ? BulkConversion.DEFAULT_TEMPLATE
+                    : template, extension);
+            AnsiConsole.out().println("Only convert album (blank for all):");
+            bulk.setAlbumFilter(blankToNull(scanner.nextLine()));
+            AnsiConsole.out().println("Only convert artist (blank for all):");
+            bulk.setArtistFilter(blankToNull(scanner.nextLine()));
+            AnsiConsole.out().println("Only convert file type (blank for all, e.g. FLAC):");
+            String type = blankToNull(scanner.nextLine());
+            try {
+                bulk.setFileTypeFilter(type == null ? null : AudioFileType.valueOf(type.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                AnsiConsole.out().println("Unknown file type.");
+                Cli.wait(1000);
+                return;
+            }
+            Map.Entry<AudioDataStructure, String> first = bulk.plan(database).entrySet().stream()
+                    .findFirst().orElse(null);
+            if (first == null) {
+                AnsiConsole.out().println("Nothing to convert, " + bulk.getSkipped() + " files are up to date.");
+                Cli.wait(1000);
+                return;
+            }
+            AudioConversion sample = new AudioConversion(first.getKey(), first.getValue());
+            if (sample.errorOccurred()) {
+                AnsiConsole.out().println("Cannot convert to that format.");
+                Cli.wait(1000);
+                return;
+            }
+            bulk.setAudioSettings(selectAudioSettings(sample.getOptions(), scanner));
+            List<AudioConversion> conversions = bulk.createConversions(database);
+            conversions.forEach(converter -> queueConversion(converter, BulkConversion.PRIORITY));
+            AnsiConsole.out().println("Converting " + conversions.size() + " files, "
+                    + bulk.getSkipped() + " files are up to date.");
+            Cli.wait(1000);
+        }
+
+        // Effects: returns trimmed input, or null if it's blank
+        private static String blankToNull(String input) {
+            String trimmed = input.trim();
+            return trimmed.isEmpty() ? null : trimmed;
         }
 
         // Effects: returns a valid number between 0 and a specified value
@@ -2207,7 +2403,21 @@ public class App {
             // Check if file exists
             File f = new File(filename);
             if (f.isDirectory()) { // Database uses absolute file paths, otherwise it would fail to load audio
-                database.addDirToSongDatabase(f.getAbsolutePath());
+                database.addDirToSongDatabase(f.getAbsolutePath(), Cli::printScanProgress);
+                database.sanitizeAudioDatabase();
+                database.sortSongList("Default");
+            } else {
+                AnsiConsole.out().println("Directory doesn't exist, is a file, or is inaccessible.");
+                wait(1000);
+            }
+        }
+
+        // Modifies: this
+        // Effects:  brings database up to date with a library directory, only re-reading changed files
+        private static void rescanDatabaseDir(Scanner scanner) {
+            File f = new File(scanner.nextLine().trim());
+            if (f.isDirectory()) { // Database uses absolute file paths, otherwise it would fail to load audio
+                database.rescanSongDatabase(f.getAbsolutePath(), Cli::printScanProgress);
                 database.sanitizeAudioDatabase();
                 database.sortSongList("Default");
             } else {
@@ -2216,6 +2426,17 @@ public class App {
             }
         }
 
+        // Modifies: console
+        // Effects:  prints library scan progress, throttled to avoid flooding the console
+        private static void printScanProgress(int scanned, int found, double filesPerSecond) {
+            if (scanned % 64 != 0 && scanned != found) {
+                return;
+            }
+            AnsiConsole.out().print(Ansi.ansi().cursor(4, 1).eraseLine().toString()
+                    + String.format("Scanned %d of %d files (%.1f files/sec)", scanned, found, filesPerSecond));
+            AnsiConsole.out().flush();
+        }
+
         // Modifies: database
         // Effects:  updates all database metadata caches
         private static void updateMetadata() {
@@ -2378,6 +2599,7 @@ public class App {
             AnsiConsole.out().println("4. Browse database");
             AnsiConsole.out().println("5. Save database");
             AnsiConsole.out().println("6. Re-encode file");
+            AnsiConsole.out().println("7. Convert database to another format");
             AnsiConsole.out().println("9. List all files in database");
             AnsiConsole.out().println("R. Shuffle and play database");
             AnsiConsole.out().println("Z. Reload database metadata");
@@ -2404,11 +2626,35 @@ public class App {
             horizonalBar();
             AnsiConsole.out().println(Ansi.ansi().fgBrightYellow().toString() + "Converting "
                     + activeAudioConversions() + " audio files..." + Ansi.ansi().fgDefault().toString());
+            AnsiConsole.out().println(conversionScheduler.getStatusString());
             int dead = deadAudioConversions();
             if (dead != 0) {
                 AnsiConsole.out().println(Ansi.ansi().fgBrightRed().toString() + dead
                         + " audio conversions failed." + Ansi.ansi().fgDefault().toString());
             }
+            AnsiConsole.out().println("X. Cancel a conversion");
+            AnsiConsole.out().println("A. Cancel all conversions");
+        }
+
+        // Modifies: this
+        // Effects:  lists the unfinished conversions and cancels the one picked, 0 cancels nothing
+        private static void cancelConversion(Scanner scanner) {
+            List<AudioConversion> active = audioConverterList.stream().filter(converter -> !converter.isFinished())
+                    .collect(Collectors.toList());
+            if (active.isEmpty()) {
+                return;
+            }
+            AnsiConsole.out().print(Ansi.ansi().eraseScreen());
+            AnsiConsole.out().print(Ansi.ansi().cursor(2, 1));
+            AnsiConsole.out().println("Which conversion would you like to cancel? (0 to go back)");
+            for (int i = 0; i < active.size(); i++) {
+                AnsiConsole.out().println((i + 1) + ". " + new File(active.get(i).getTarget()).getName());
+            }
+            doPlaybackStatusWrite();
+            int picked = getUserIntToValue(active.size(), scanner);
+            if (picked > 0) {
+                conversionScheduler.cancel(active.get(picked - 1));
+            }
         }
 
         private static int songID = 0;
@@ -2549,6 +2795,9 @@ public class App {
                 case "3":
                     database.cleanOldDb();
                     break;
+                case "4":
+                    rescanDatabaseDir(inputScanner);
+                    break;
                 case "r":
                     database.cleanDbFldr();
                     break;
@@ -2567,6 +2816,7 @@ public class App {
             AnsiConsole.out().println("1. Revert to previous database version");
             AnsiConsole.out().println("2. Clean database files (enter *.audiodex.basedb file on next line)");
             AnsiConsole.out().println("3. Clean all old database files");
+            AnsiConsole.out().println("4. Rescan library directory (enter directory on next line)");
             AnsiConsole.out().println("R. Refresh database folder");
             AnsiConsole.out().println("To return to main menu, enter any other character");
         }
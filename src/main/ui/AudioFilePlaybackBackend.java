@@ -1,50 +1,140 @@
 package ui;
 
 import audio.*;
+import model.Event;
+import model.EventLog;
 import model.ExceptionIgnore;
 import org.mpris.MediaPlayer2.MediaPlayer2;
 import org.mpris.MediaPlayer2.Player;
 
 import javax.sound.sampled.*;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 
 // Backend for allowing interactions between the UI and filesystem
 // Specific to decoding audio
 // This class is incapable of automated testing: multithreading over several
 public class AudioFilePlaybackBackend {
+    public static final int DEFAULT_BUFFER_MILLIS = 500;
+    private static final int OUTPUT_CHUNK_MILLIS = 20;
+    private static final double PRELOAD_SECONDS = 5;
     private boolean done = false;
     private int bytesPerSampleRead = 2;
     private int bytesPerSampleWrite = 2;
-    
+    private int bufferMillis = DEFAULT_BUFFER_MILLIS;
+    private PcmRingBuffer ringBuffer;
+    private AudioFormat sourceFormat; // Format the decoder outputs, before any bit depth reduction
+    private NextSongSupplier nextSongSupplier;
+    private volatile NextSongLoader preopened;
+    private volatile String gaplessFilename; // Song that started without a gap, waiting for loadAudio()
+
+    // Make a lambda for this
+    public interface NextSongSupplier {
+        AudioDataStructure next();
+    }
+
     // No other class needs to know this
-    // This is the audio decoding thread
-    private class DecodingThread extends Thread {
+    // Opens and prepares the next song in the background while the current one is still playing
+    private static class NextSongLoader extends Thread {
+        private final String filename;
+        private AudioDecoder decoder;
+
+        public NextSongLoader(String filename) {
+            this.filename = filename;
+        }
+
+        // Effects: opens the song
+        @Override
+        public void run() {
+            decoder = AudioFileLoader.loadFile(filename);
+            if (decoder != null) {
+                decoder.prepareToPlayAudio();
+            }
+        }
+
+        // Effects: returns full path of the song
+        public String getFilename() {
+            return filename;
+        }
+
+        // Effects: waits for the song to be opened, returns its decoder or null if it couldn't be
+        public AudioDecoder getDecoder() {
+            ExceptionIgnore.ignoreExc(() -> join());
+            if (decoder == null || !decoder.isReady()) {
+                return null;
+            }
+            return decoder;
+        }
+
+        // Effects: closes the song if it was opened
+        public void discard() {
+            AudioDecoder opened = getDecoder();
+            if (opened != null) {
+                opened.closeAudioFile();
+            }
+        }
+    }
+
+    // No other class needs to know this
+    // Drains the ring buffer into the output line, so decoder hiccups don't become gaps
+    private class OutputThread extends Thread {
+        private final DecodingThread owner;
+
+        public OutputThread(DecodingThread owner) {
+            this.owner = owner;
+        }
 
-        // No other class needs to know this
-        // This quite literally just offloads the task of telling
-        // the main thread that this thread is done so I can kill this thread
-        private class FinishedSongThread extends Thread {
-            @Override
-            public void run() {
-                while (decoderThread != null) {
-                    // Wait for decoder thread to finish, in case we've got a music queue
-                    ExceptionIgnore.ignoreExc(() -> sleep(0, 1));
+        // Effects: writes decoded audio to the line until the decoder is done
+        @Override
+        public void run() {
+            Thread.currentThread().setPriority(MAX_PRIORITY);
+            int frameSize = audioFormat.getFrameSize();
+            byte[] chunk = new byte[Math.max(bytesFor(OUTPUT_CHUNK_MILLIS), frameSize)];
+            int read;
+            while (!owner.kill) {
+                owner.awaitUnpaused();
+                read = owner.buffer.read(chunk, 0, chunk.length, frameSize);
+                if (read < 0) {
+                    break;
+                }
+                line.write(chunk, 0, read);
+                long boundary = owner.boundary;
+                if (boundary >= 0 && owner.buffer.getReadPosition() >= boundary) {
+                    owner.crossBoundary();
                 }
-                App.finishedSong();
+            }
+            if (!owner.kill) {
+                line.drain();
             }
         }
+    }
+
+    // No other class needs to know this
+    // This is the audio decoding thread, it decodes ahead into the ring buffer
+    private class DecodingThread extends Thread {
+        private final PcmRingBuffer buffer = ringBuffer; // Kept even if another song gets loaded
 
         private volatile boolean run = true;
         private volatile boolean kill = false;
+        private final Object pauseLock = new Object(); // Output thread waits on this while paused
+        private volatile NextSongLoader next; // Song the decoder moved on to, but the output hasn't yet
+        private volatile long boundary = -1; // Ring buffer position where next starts
+        private NextSongLoader loader;
 
         // Modifies: this
         // Effects:  ends thread
         public void killThread() {
             kill = true;
             run = false;
+            if (buffer != null) {
+                buffer.close();
+            }
+            wakeOutput();
         }
 
         // Effects: join() but no try-catch
@@ -62,44 +152,200 @@ public class AudioFilePlaybackBackend {
         public void play() {
             line.start();
             pause = false;
+            wakeOutput();
         }
 
         private volatile boolean pause = false;
 
+        // Effects: wakes the output thread if it's waiting for playback to resume
+        private void wakeOutput() {
+            synchronized (pauseLock) {
+                pauseLock.notifyAll();
+            }
+        }
+
+        // Effects: blocks while audio is paused, without using any CPU
+        private void awaitUnpaused() {
+            synchronized (pauseLock) {
+                while (pause && !kill) {
+                    try {
+                        pauseLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        // Modifies: this
+        // Effects:  returns the preloaded next song if it's still next and can continue on the same line
+        //           otherwise returns null, keeping the preloaded song around for loadAudio()
+        private NextSongLoader takeNextSong() {
+            NextSongLoader following = loader;
+            loader = null;
+            if (following == null) {
+                return null;
+            }
+            AudioDecoder decoder = following.getDecoder();
+            AudioDataStructure expected = peekNextSong();
+            if (kill || boundary >= 0 || decoder == null || expected == null
+                    || !samePath(expected.getFilename(), following.getFilename())
+                    || !decoder.getAudioOutputFormat().matches(sourceFormat)) {
+                offerPreopened(following);
+                return null;
+            }
+            return following;
+        }
+
+        // Requires: called from the output thread once it has played everything before boundary
+        // Modifies: this, backend
+        // Effects:  switches over to the next song, telling the UI the previous one finished
+        private void crossBoundary() {
+            AudioDecoder finished = loadedFile;
+            NextSongLoader started = next;
+            gaplessFilename = started.getFilename();
+            loadedFile = started.getDecoder();
+            next = null;
+            boundary = -1;
+            finished.closeAudioFile();
+            replayGainVal = loadedFile.getReplayGain();
+            setReplayGain(replayGain);
+            CompletableFuture.runAsync(App::finishedSong);
+        }
+
         // Effects: plays audio in file loadedFile
         @Override
         public void run() {
             Thread.currentThread().setPriority(MAX_PRIORITY);
-            AudioSample sample;
-            while (run && loadedFile.moreSamples()) {
-                while (pause) {
-                    ExceptionIgnore.ignoreExc(() -> sleep(1, 0));
+            OutputThread output = new OutputThread(this);
+            output.start();
+            AudioDecoder decoding = loadedFile;
+            AudioSample sample = new AudioSample(); // Refilled by the decoder every loop
+            while (run) {
+                if (!decoding.moreSamples()) {
+                    NextSongLoader following = takeNextSong();
+                    if (following == null) {
+                        break;
+                    }
+                    next = following;
+                    boundary = buffer.getWritePosition();
+                    decoding = following.getDecoder();
+                    continue;
+                }
+                if (loader == null && boundary < 0
+                        && decoding.getFileDuration() - decoding.getCurrentTime() < PRELOAD_SECONDS) {
+                    loader = preloadNextSong();
                 }
-                sample = loadedFile.getNextSample();
-                for (int i = bytesPerSampleRead; i > bytesPerSampleWrite; i--) {
-                    sample.reduceBitdepth(i, audioFormat.isBigEndian());
+                ByteBuffer view = bytesPerSampleRead == bytesPerSampleWrite ? decoding.readBuffer() : null;
+                if (view != null) { // Straight from the decoder's data, no intermediate copy
+                    if (!buffer.write(view)) {
+                        break; // Killed
+                    }
+                    continue;
                 }
-                line.write(sample.getData(), 0, sample.getLength());
+                decoding.readSamples(sample);
+                if (bytesPerSampleRead != bytesPerSampleWrite) {
+                    sample.reduceBitdepth(bytesPerSampleRead, bytesPerSampleWrite, audioFormat.isBigEndian());
+                }
+                if (!buffer.write(sample.getData(), 0, sample.getLength())) {
+                    break; // Killed
+                }
+            }
+            buffer.close();
+            ExceptionIgnore.ignoreExc(() -> output.join());
+            if (buffer.getUnderruns() > 0) {
+                EventLog.getInstance().logEvent(new Event("Playback buffer underran "
+                        + buffer.getUnderruns() + " times"));
             }
             line.stop();
             line.close();
+            if (decoding != loadedFile) {
+                decoding.closeAudioFile(); // Killed before the output caught up
+            }
+            if (loader != null) {
+                offerPreopened(loader); // Probably getting skipped to
+            }
             loadedFile.closeAudioFile();
             loadedFile = null;
-            System.gc(); // Clean up potential decoder garbage
-            if (!kill) new FinishedSongThread().start();
-            decoderThread = null;
+            if (decoderThread == this) {
+                decoderThread = null;
+            }
+            if (!kill) {
+                CompletableFuture.runAsync(App::finishedSong); // Off this thread, it's done
+            }
+        }
+    }
+
+    // Modifies: this
+    // Effects:  sets where the backend finds out which song plays next, so it can be opened early
+    //           and started without a gap
+    public void setNextSongSupplier(NextSongSupplier supplier) {
+        nextSongSupplier = supplier;
+    }
+
+    // Effects: returns the song the UI will play next, or null if there isn't one
+    private AudioDataStructure peekNextSong() {
+        if (nextSongSupplier == null) {
+            return null;
+        }
+        try {
+            return nextSongSupplier.next();
+        } catch (RuntimeException e) {
+            return null; // Queue changed under us, just don't preload
         }
     }
 
+    // Effects: starts opening the next song in the background, returns null if there isn't one
+    private NextSongLoader preloadNextSong() {
+        AudioDataStructure following = peekNextSong();
+        if (following == null) {
+            return null;
+        }
+        NextSongLoader loader = new NextSongLoader(new File(following.getFilename()).getAbsolutePath());
+        loader.start();
+        return loader;
+    }
+
+    // Modifies: this
+    // Effects:  keeps loader around in case loadAudio() wants its song, closing whatever was kept before
+    private void offerPreopened(NextSongLoader loader) {
+        NextSongLoader old = preopened;
+        preopened = loader;
+        if (old != null && old != loader) {
+            old.discard();
+        }
+    }
+
+    // Modifies: this
+    // Effects:  returns the preopened decoder if it's for filename, otherwise closes it and returns null
+    private AudioDecoder takePreopened(String filename) {
+        NextSongLoader loader = preopened;
+        preopened = null;
+        if (loader == null) {
+            return null;
+        }
+        if (samePath(loader.getFilename(), filename)) {
+            return loader.getDecoder();
+        }
+        loader.discard();
+        return null;
+    }
+
+    // Effects: returns true if both filenames point to the same file
+    private static boolean samePath(String a, String b) {
+        return new File(a).getAbsolutePath().equals(new File(b).getAbsolutePath());
+    }
+
     // Effects: null-safe passthrough for loadedFile.skipInProgress()
     public boolean audioIsSkipping() {
-        if (loadedFile == null) {
+        AudioDecoder decoder = loadedFile; // Read once, the output thread might swap it
+        if (decoder == null) {
             return true;
         }
-        return loadedFile.skipInProgress();
+        return decoder.skipInProgress();
     }
 
-    private AudioDecoder loadedFile;
+    private volatile AudioDecoder loadedFile; // Swapped by the output thread on gapless transitions
     private AudioFormat audioFormat;
     private SourceDataLine line = null;
     private DecodingThread decoderThread = null;
@@ -155,22 +401,35 @@ public class AudioFilePlaybackBackend {
     // Modifies: this
     // Effects:  loads audio and gets decoder thread to
     public void loadAudio(String filename, AudioDataStructure structure) {
+        String gapless = gaplessFilename;
+        gaplessFilename = null;
+        if (gapless != null && decoderThread != null && samePath(gapless, filename)) {
+            return; // Already playing, it started right after the last song
+        }
         unloadAudio();
-        loadedFile = AudioFileLoader.loadFile(filename);
+        loadedFile = takePreopened(filename);
         if (loadedFile == null) {
-            return;
+            loadedFile = AudioFileLoader.loadFile(filename);
+            if (loadedFile == null) {
+                return;
+            }
+            loadedFile.prepareToPlayAudio();
         }
-        loadedFile.prepareToPlayAudio();
         if (!loadedFile.isReady()) {
             return;
         }
         try {
-            getAudioFormat();
+            AudioFormat source = loadedFile.getAudioOutputFormat();
+            if (sourceFormat == null || !source.matches(sourceFormat)) {
+                getAudioFormat(); // Only probe output lines when the format changes
+                sourceFormat = source;
+            }
             line = AudioSystem.getSourceDataLine(audioFormat);
             line.open(audioFormat);
             if (bytesPerSampleWrite != bytesPerSampleRead) {
                 App.audioQualityDegradation(structure);
             }
+            prepareRingBuffer();
             replayGainVal = loadedFile.getReplayGain();
             setReplayGain(replayGain);
         } catch (LineUnavailableException e) {
@@ -178,6 +437,49 @@ public class AudioFilePlaybackBackend {
         }
     }
 
+    // Modifies: this
+    // Effects:  sets how far ahead of the output the decoder runs, applies to the next loaded song
+    public void setBufferMillis(int millis) {
+        bufferMillis = Math.max(millis, OUTPUT_CHUNK_MILLIS);
+    }
+
+    // Effects: returns how far ahead of the output the decoder runs
+    public int getBufferMillis() {
+        return bufferMillis;
+    }
+
+    // Effects: returns how many times the decoder fell behind the output for the loaded song
+    public int getUnderruns() {
+        if (ringBuffer == null) {
+            return 0;
+        }
+        return ringBuffer.getUnderruns();
+    }
+
+    // Effects: returns number of bytes of output audio lasting millis
+    private int bytesFor(int millis) {
+        int frames = (int) (audioFormat.getFrameRate() * millis / 1000);
+        return frames * audioFormat.getFrameSize();
+    }
+
+    // Modifies: this
+    // Effects:  sets up an empty ring buffer for the output format
+    //           a fresh one every song, the previous song's threads may not have let go of theirs yet
+    private void prepareRingBuffer() {
+        ringBuffer = new PcmRingBuffer(Math.max(bytesFor(bufferMillis), audioFormat.getFrameSize()));
+    }
+
+    // Effects: returns seconds of audio decoded but not yet sent to the output line
+    private double getBufferedSeconds() {
+        if (ringBuffer == null || audioFormat == null) {
+            return 0;
+        }
+        DecodingThread thread = decoderThread;
+        long end = thread == null || thread.boundary < 0 ? ringBuffer.getWritePosition() : thread.boundary;
+        return Math.max(end - ringBuffer.getReadPosition(), 0)
+                / (double) (audioFormat.getFrameSize() * audioFormat.getFrameRate());
+    }
+
     // Modifies: this
     // Effects:  creates the (potentially downsampled) output audio format
     private void getAudioFormat() {
@@ -250,7 +552,7 @@ public class AudioFilePlaybackBackend {
             return 0;
         }
         if (decoderThread != null && decoderThread.isAlive()) {
-            return loadedFile.getCurrentTime() / loadedFile.getFileDuration();
+            return getCurrentTime() / loadedFile.getFileDuration();
         }
         return 0;
     }
@@ -268,7 +570,7 @@ public class AudioFilePlaybackBackend {
     //          returns -1 if none is loaded
     public double getCurrentTime() {
         if (loadedFile != null) {
-            return loadedFile.getCurrentTime();
+            return Math.max(loadedFile.getCurrentTime() - getBufferedSeconds(), 0);
         }
         return -1;
     }
@@ -309,8 +611,15 @@ public class AudioFilePlaybackBackend {
     // Requires: 0 <= time <= audio length
     // Modifies: this
     // Effects:  sets playback pointer to the specified time
+    //           ignored in the last moments of a song, once the next one is already being decoded
     public void seekTo(double time) {
+        if (decoderThread != null && decoderThread.boundary >= 0) {
+            return;
+        }
         loadedFile.goToTime(time);
+        if (ringBuffer != null) {
+            ringBuffer.discard(); // Everything buffered is from before the seek
+        }
         App.updatePlaybackStatus();
     }
 
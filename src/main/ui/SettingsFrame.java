@@ -50,12 +50,14 @@ public class SettingsFrame extends JFrame {
         checkBoxes[0].setSelected(settings.doSoundCheck());
         checkBoxes[1].setSelected(settings.doSaveOnImport());
         checkBoxes[2].setSelected(settings.doSaveOnClose());
+        checkBoxes[3].setSelected(settings.doBinaryDatabase());
     }
 
     JCheckBox[] checkBoxes = new JCheckBox[] {
             new JCheckBox("ReplayGain"),
             new JCheckBox("Save Database On File Import"),
-            new JCheckBox("Save Database On Close")
+            new JCheckBox("Save Database On Close"),
+            new JCheckBox("Compact Binary Database")
     };
 
     // Set up update listeners
@@ -78,5 +80,11 @@ public class SettingsFrame extends JFrame {
             }
             ExceptionIgnore.ignoreExc(() -> responder[2].run());
         });
+        checkBoxes[3].addChangeListener(e -> {
+            if (checkBoxes[3].isSelected() != settings.doBinaryDatabase()) {
+                settings.toggleBinaryDatabase();
+            }
+            ExceptionIgnore.ignoreExc(() -> responder[3].run());
+        });
     }
 }
@@ -52,6 +52,8 @@ public class AudioDataStructureTest {
             fail("Where dis file at?");
         }
         assertEquals(AudioFileType.AIFF, structure.getAudioFileType());
+        assertEquals(new File("./data/scarlet.aif").lastModified(), structure.getLastModified());
+        assertFalse(structure.isStale());
         assertEquals("Scarlet Fire", structure.getId3Data().getID3Data("Title"));
         assertEquals("Scarlet Fire by Otis McDonald", structure.getPlaybackString());
     }
@@ -75,6 +77,8 @@ public class AudioDataStructureTest {
                 + "pleRate\":44100,\"Track\":1},\"samplesize\":\"NO\"}"));
         assertEquals(6270486, nu.getFilesize());
         assertEquals(0, nu.getSamplesize());
+        assertEquals(0, nu.getLastModified()); // Older databases don't store it
+        assertTrue(nu.isStale());
         structure = new AudioDataStructure("./data/scarlet.aif");
         assertNotEquals(structure.hashCode(), nu.hashCode());
         assertFalse(structure.equals(nu));
@@ -90,4 +94,27 @@ public class AudioDataStructureTest {
         structure.markQualityErrorOccured();
         assertTrue(structure.qualityErrorAlreadyOccured());
     }
+
+    @Test
+    public void changeListenerTest() {
+        structure = new AudioDataStructure("./data/scarlet.aif");
+        int[] changes = {0};
+        structure.setChangeListener(data -> {
+            assertSame(structure, data);
+            changes[0]++;
+        });
+        long version = structure.getVersion();
+        ID3Container id3 = structure.getId3Data();
+        id3.setID3Data("Title", "Not Scarlet Fire");
+        id3.setID3Data("Title", "Not Scarlet Fire"); // Same value, nothing changes
+        assertEquals(1, changes[0]);
+        assertEquals(version + 1, structure.getVersion());
+        ID3Container replacement = new ID3Container();
+        structure.updateID3(replacement);
+        assertEquals(2, changes[0]);
+        id3.setID3Data("Title", "Old container"); // No longer attached
+        assertEquals(2, changes[0]);
+        replacement.setID3Long("Track", "1");
+        assertEquals(3, changes[0]);
+    }
 }
@@ -43,11 +43,14 @@ public class AudioFileLoaderTest {
     @Test
     public void loadFileTests() {
         try {
-            assertEquals(Aiff.class, loadFile("data/scarlet.aif").getClass());
-            assertEquals(WAV.class, loadFile("data/scarlet.wav").getClass());
-            assertEquals(WAV.class, loadFile("data/scarlet.aac.wav").getClass());
-            assertEquals(WAV.class, loadFile("data/scarlet.vorbis.wav").getClass());
-            assertEquals(WAV.class, loadFile("data/scarlet.mp3.wav").getClass());
+            assertEquals(MappedPcm.class, loadFile("data/scarlet.aif").getClass());
+            assertEquals(MappedPcm.class, loadFile("data/scarlet.wav").getClass());
+            assertEquals(MappedPcm.class, loadFile("data/scarlet.aac.wav").getClass());
+            assertEquals(MappedPcm.class, loadFile("data/scarlet.vorbis.wav").getClass());
+            assertEquals(MappedPcm.class, loadFile("data/scarlet.mp3.wav").getClass());
+            assertEquals(AudioFileType.AIFF, loadFile("data/scarlet.aif").getFileType());
+            assertEquals(AudioFileType.PCM_WAV, loadFile("data/scarlet.wav").getFileType());
+            assertEquals(WAV.class, loadFile("data/null.wav").getClass()); // Nothing to map
             assertEquals(MpegType.class, loadFile("data/scarlet.mp3").getClass());
             assertEquals(MpegType.class, loadFile("data/scarlet.mp2").getClass());
             assertEquals(Flac.class, loadFile("data/scarlet.flac").getClass());
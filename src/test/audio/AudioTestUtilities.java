@@ -0,0 +1,38 @@
+package audio;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+// Helpers shared by the decoder and encoder tests
+public final class AudioTestUtilities {
+    private AudioTestUtilities() {
+    }
+
+    // Effects: decodes the rest of decoder's audio through readSamples(), preparing it first if needed
+    public static byte[] readAll(AudioDecoder decoder) {
+        return readAll(decoder, false);
+    }
+
+    // Effects: decodes the rest of decoder's audio, preparing it first if needed
+    //          reads through readBuffer() if mapped, otherwise readSamples()
+    public static byte[] readAll(AudioDecoder decoder, boolean mapped) {
+        if (!decoder.isReady()) {
+            decoder.prepareToPlayAudio();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AudioSample sample = new AudioSample();
+        while (decoder.moreSamples()) {
+            if (mapped) {
+                ByteBuffer view = decoder.readBuffer();
+                byte[] viewed = new byte[view.remaining()];
+                view.get(viewed);
+                out.write(viewed, 0, viewed.length);
+            } else {
+                int length = decoder.readSamples(sample);
+                out.write(sample.getData(), 0, length);
+            }
+        }
+        decoder.closeAudioFile();
+        return out.toByteArray();
+    }
+}
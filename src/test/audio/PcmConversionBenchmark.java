@@ -0,0 +1,117 @@
+package audio;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Timing harness comparing PcmConversion with the loops it replaced, JMH isn't available in this build
+// Run its main method with the test classpath, optional arguments are iterations and rounds
+// Every round converts the same 64 KB of random audio iterations times, only the last round is printed
+// so the earlier ones warm up the JIT
+public final class PcmConversionBenchmark {
+    private static final int ITERATIONS = 3000;
+    private static final int ROUNDS = 3;
+
+    private PcmConversionBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : ITERATIONS;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : ROUNDS;
+        byte[] data = new byte[1 << 16];
+        new Random(1).nextBytes(data);
+        int length = data.length / 6 * 6; // Whole 16 and 24 bit stereo frames
+        int[] out = new int[data.length];
+        for (int bytes : new int[] {2, 3}) {
+            int[] expected = new int[data.length];
+            oldToInt(data, length, expected, bytes, false, true);
+            PcmConversion.toInt(data, 0, length, out, 0, bytes, false, true);
+            check(expected, out, length / bytes, bytes);
+            double[] times = new double[2];
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    oldToInt(data, length, out, bytes, false, true);
+                }
+                long middle = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    PcmConversion.toInt(data, 0, length, out, 0, bytes, false, true);
+                }
+                times[0] = (middle - start) / 1e6;
+                times[1] = (System.nanoTime() - middle) / 1e6;
+            }
+            System.out.printf("toInt %d bit: old %.1f ms, new %.1f ms%n", bytes * 8, times[0], times[1]);
+        }
+        byte[] work = data.clone();
+        byte[] expected = data.clone();
+        int narrowed = oldNarrow(expected, length, 3, false);
+        if (PcmConversion.narrow(work, 0, length, 3, 2, false) != narrowed
+                || !Arrays.equals(expected, 0, narrowed, work, 0, narrowed)) {
+            throw new IllegalStateException("Narrowing differs");
+        }
+        double[] times = new double[2];
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                System.arraycopy(data, 0, work, 0, length);
+                oldNarrow(work, length, 3, false);
+            }
+            long middle = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                System.arraycopy(data, 0, work, 0, length);
+                PcmConversion.narrow(work, 0, length, 3, 2, false);
+            }
+            times[0] = (middle - start) / 1e6;
+            times[1] = (System.nanoTime() - middle) / 1e6;
+        }
+        System.out.printf("narrow 24 -> 16 bit: old %.1f ms, new %.1f ms%n", times[0], times[1]);
+    }
+
+    // Modifies: out
+    // Effects:  the FLAC encoder's byte at a time decode before PcmConversion, returns number of samples
+    //           signed samples aren't sign extended, which FLAC doesn't mind, so check() only compares the low bits
+    private static int oldToInt(byte[] data, int length, int[] out, int bytesPerSample, boolean bigEndian,
+                                boolean isSigned) {
+        int recodedSample;
+        for (int i = 0, j = 0; i < length; i += bytesPerSample, j++) {
+            recodedSample = 0;
+            if (bigEndian) {
+                for (int a = 0; a < bytesPerSample; a++) {
+                    recodedSample |= (data[i + a] & 0xff) << (bytesPerSample - a - 1) * 8;
+                }
+            } else {
+                for (int a = 0; a < bytesPerSample; a++) {
+                    recodedSample |= (data[i + a] & 0xff) << a * 8;
+                }
+            }
+            if (!isSigned) {
+                recodedSample -= 1 << bytesPerSample * 8 - 1;
+            }
+            out[j] = recodedSample;
+        }
+        return length / bytesPerSample;
+    }
+
+    // Modifies: data
+    // Effects:  AudioSample.reduceBitdepth before PcmConversion, removes one byte per sample
+    //           returns the new length
+    private static int oldNarrow(byte[] data, int length, int currentSampleBitdepth, boolean bigEndian) {
+        int j = 0;
+        for (int i = 0; i < length; i++) {
+            if ((i + (bigEndian ? 1 : 0)) % currentSampleBitdepth != 0) {
+                data[j] = data[i];
+                j++;
+            }
+        }
+        return length * (currentSampleBitdepth - 1) / currentSampleBitdepth;
+    }
+
+    // Effects: throws IllegalStateException if the first count samples differ in their low bytesPerSample bytes
+    private static void check(int[] expected, int[] actual, int count, int bytesPerSample) {
+        int mask = (int) ((1L << bytesPerSample * 8) - 1);
+        for (int i = 0; i < count; i++) {
+            if (((expected[i] ^ actual[i]) & mask) != 0) {
+                throw new IllegalStateException("Sample " + i + " differs: " + expected[i] + " != " + actual[i]);
+            }
+        }
+    }
+}
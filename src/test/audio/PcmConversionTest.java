@@ -0,0 +1,93 @@
+package audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PcmConversionTest {
+    private static final Random random = new Random(42);
+
+    @Test // Test every sample size, byte order and signedness against a byte at a time decode
+    public void toIntTest() {
+        byte[] data = randomBytes(4 * 1000 + 3);
+        for (int bytes = 1; bytes <= 4; bytes++) {
+            for (boolean bigEndian : new boolean[] {false, true}) {
+                for (boolean signed : new boolean[] {false, true}) {
+                    int[] out = new int[data.length];
+                    assertEquals((data.length - 5) / bytes,
+                            PcmConversion.toInt(data, 5, data.length - 5, out, 1, bytes, bigEndian, signed));
+                    for (int i = 0; i < (data.length - 5) / bytes; i++) {
+                        assertEquals(decode(data, 5 + i * bytes, bytes, bigEndian, signed), out[i + 1]);
+                    }
+                    assertEquals(0, out[0]);
+                }
+            }
+        }
+        int[] out = new int[2];
+        PcmConversion.toInt(new byte[] {(byte) 0xFF, (byte) 0x7F, 0, 0}, 0, 4, out, 0, 2, false, true);
+        assertArrayEquals(new int[] {Short.MAX_VALUE, 0}, out);
+        PcmConversion.toInt(new byte[] {0, 0, (byte) 0xFF, (byte) 0xFF}, 0, 4, out, 0, 2, true, false);
+        assertArrayEquals(new int[] {Short.MIN_VALUE, Short.MAX_VALUE}, out);
+        assertThrows(IllegalArgumentException.class,
+                () -> PcmConversion.toInt(new byte[5], 0, 5, new int[1], 0, 5, false, true));
+    }
+
+    @Test // Test narrowing in one pass against removing a byte at a time
+    public void narrowTest() {
+        for (int from = 2; from <= 4; from++) {
+            for (int to = 1; to <= from; to++) {
+                for (boolean bigEndian : new boolean[] {false, true}) {
+                    byte[] data = randomBytes(from * 999);
+                    AudioSample expected = new AudioSample(data.clone());
+                    for (int i = from; i > to; i--) {
+                        expected.reduceBitdepth(i, i - 1, bigEndian);
+                    }
+                    assertEquals(data.length / from * to, expected.getLength());
+                    for (int i = 0; i < data.length / from; i++) { // Most significant bytes are kept
+                        int skip = bigEndian ? 0 : from - to;
+                        assertArrayEquals(Arrays.copyOfRange(data, i * from + skip, i * from + skip + to),
+                                Arrays.copyOfRange(expected.getData(), i * to, i * to + to));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void swapAndFlipTest() {
+        byte[] data = {1, 2, 3, 4, 5, 6, 7};
+        PcmConversion.swapByteOrder(data, 0, 7, 2);
+        assertArrayEquals(new byte[] {2, 1, 4, 3, 6, 5, 7}, data);
+        PcmConversion.swapByteOrder(data, 1, 6, 3);
+        assertArrayEquals(new byte[] {2, 3, 4, 1, 7, 5, 6}, data);
+        PcmConversion.swapByteOrder(data, 0, 7, 4);
+        assertArrayEquals(new byte[] {1, 4, 3, 2, 7, 5, 6}, data);
+        PcmConversion.flipSign(data, 0, 7, 1, false);
+        assertArrayEquals(new byte[] {-127, -124, -125, -126, -121, -123, -122}, data);
+        PcmConversion.flipSign(data, 0, 6, 2, false);
+        assertArrayEquals(new byte[] {-127, 4, -125, 2, -121, 5, -122}, data);
+        PcmConversion.flipSign(data, 0, 6, 3, true);
+        assertArrayEquals(new byte[] {1, 4, -125, -126, -121, 5, -122}, data);
+    }
+
+    // Effects: returns count random bytes
+    private static byte[] randomBytes(int count) {
+        byte[] data = new byte[count];
+        random.nextBytes(data);
+        return data;
+    }
+
+    // Effects: decodes one sample a byte at a time
+    private static int decode(byte[] data, int off, int bytes, boolean bigEndian, boolean signed) {
+        long value = 0;
+        for (int a = 0; a < bytes; a++) {
+            int shift = bigEndian ? (bytes - a - 1) * 8 : a * 8;
+            value |= (long) (data[off + a] & 0xFF) << shift;
+        }
+        long half = 1L << (bytes * 8 - 1);
+        return (int) (signed ? (value >= half ? value - 2 * half : value) : value - half);
+    }
+}
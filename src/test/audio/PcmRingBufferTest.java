@@ -0,0 +1,92 @@
+package audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PcmRingBufferTest {
+
+    @Test
+    public void wrapAroundTest() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        assertEquals(8, buffer.getCapacity());
+        byte[] out = new byte[8];
+        assertTrue(buffer.write(new byte[] {1, 2, 3, 4, 5, 6}, 0, 6));
+        assertEquals(6, buffer.getBuffered());
+        assertEquals(4, buffer.read(out, 0, 5, 2)); // Whole frames only
+        assertArrayEquals(new byte[] {1, 2, 3, 4, 0, 0, 0, 0}, out);
+        assertTrue(buffer.write(new byte[] {7, 8, 9, 10, 11, 12}, 0, 6)); // Wraps around the end
+        assertEquals(8, buffer.getBuffered());
+        assertEquals(8, buffer.read(out, 0, 8, 2));
+        assertArrayEquals(new byte[] {5, 6, 7, 8, 9, 10, 11, 12}, out);
+        assertEquals(0, buffer.getUnderruns());
+    }
+
+    @Test
+    public void byteBufferWriteTest() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        byte[] out = new byte[8];
+        assertTrue(buffer.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6})));
+        assertEquals(4, buffer.read(out, 0, 4, 2));
+        ByteBuffer view = ByteBuffer.wrap(new byte[] {0, 7, 8, 9, 10, 11, 12}, 1, 6).asReadOnlyBuffer();
+        assertTrue(buffer.write(view)); // Wraps around the end
+        assertFalse(view.hasRemaining());
+        assertEquals(8, buffer.read(out, 0, 8, 2));
+        assertArrayEquals(new byte[] {5, 6, 7, 8, 9, 10, 11, 12}, out);
+        buffer.close();
+        assertFalse(buffer.write(ByteBuffer.wrap(new byte[] {1})));
+    }
+
+    @Test
+    public void closeAndDiscardTest() {
+        PcmRingBuffer buffer = new PcmRingBuffer(8);
+        byte[] out = new byte[8];
+        buffer.write(new byte[] {1, 2, 3, 4}, 0, 4);
+        buffer.discard();
+        assertEquals(0, buffer.getBuffered());
+        buffer.write(new byte[] {5, 6, 7}, 0, 3);
+        buffer.close();
+        assertTrue(buffer.isClosed());
+        assertFalse(buffer.write(new byte[] {8}, 0, 1));
+        assertEquals(2, buffer.read(out, 0, 8, 2));
+        assertEquals(5, out[0]);
+        assertEquals(-1, buffer.read(out, 0, 8, 2)); // Leftover half frame is dropped
+    }
+
+    @Test
+    public void threadedTest() throws InterruptedException {
+        PcmRingBuffer buffer = new PcmRingBuffer(64);
+        int total = 100000;
+        Thread producer = new Thread(() -> {
+            byte[] chunk = new byte[25];
+            for (int i = 0; i < total; i += chunk.length) {
+                for (int j = 0; j < chunk.length; j++) {
+                    chunk[j] = (byte) (i + j);
+                }
+                buffer.write(chunk, 0, chunk.length);
+                if (i == total / 2) {
+                    try {
+                        Thread.sleep(50); // Decoder hiccup
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            buffer.close();
+        });
+        producer.start();
+        byte[] out = new byte[16];
+        int position = 0;
+        int read;
+        while ((read = buffer.read(out, 0, out.length, 1)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                assertEquals((byte) position++, out[i]);
+            }
+        }
+        producer.join();
+        assertEquals(total, position);
+        assertTrue(buffer.getUnderruns() >= 1);
+    }
+}
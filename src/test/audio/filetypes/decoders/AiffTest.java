@@ -93,4 +93,30 @@ public class AiffTest {
         // Error range due to math errors in scanning program
         assertTrue(Math.abs(-8.15 - aiffDecoder.getReplayGain()) < 0.05);
     }
+
+    @Test // Test if probing gets the format without preparing the decoder
+    public void probeTest() {
+        aiffDecoder.probeAudio();
+        assertFalse(aiffDecoder.isReady());
+        AudioFormat format = aiffDecoder.getAudioOutputFormat();
+        assertEquals(2, format.getChannels());
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(44100, format.getSampleRate());
+        assertEquals("Scarlet Fire", aiffDecoder.getID3().getID3Data("Title"));
+    }
+
+    @Test // Test if the same sample gets refilled without allocating new buffers
+    public void reuseTest() {
+        aiffDecoder.prepareToPlayAudio();
+        AudioSample sample = new AudioSample();
+        assertTrue(aiffDecoder.readSamples(sample) > 0);
+        aiffDecoder.readSamples(sample); // Buffers may grow to fit the first few frames
+        byte[] buffer = sample.getData();
+        assertEquals(sample.getLength(), aiffDecoder.readSamples(sample));
+        assertTrue(sample.getLength() > 0);
+        assertSame(buffer, sample.getData());
+        aiffDecoder.goToTime(aiffDecoder.getFileDuration() + 1);
+        assertEquals(0, aiffDecoder.readSamples(sample));
+        aiffDecoder.closeAudioFile();
+    }
 }
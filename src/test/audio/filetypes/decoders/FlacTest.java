@@ -97,4 +97,71 @@ public class FlacTest {
         // Default Value (fails to get from file for some reason)
         assertEquals(-6, flacDecoder.getReplayGain());
     }
+
+    @Test // Test if probing gets the format without preparing the decoder
+    public void probeTest() {
+        flacDecoder.probeAudio();
+        assertFalse(flacDecoder.isReady());
+        AudioFormat format = flacDecoder.getAudioOutputFormat();
+        assertEquals(2, format.getChannels());
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(44100, format.getSampleRate());
+        assertEquals("Scarlet Fire", flacDecoder.getID3().getID3Data("Title"));
+    }
+
+    @Test // Test if the same sample gets refilled without allocating new buffers
+    public void reuseTest() {
+        flacDecoder.prepareToPlayAudio();
+        AudioSample sample = new AudioSample();
+        assertTrue(flacDecoder.readSamples(sample) > 0);
+        flacDecoder.readSamples(sample); // Buffers may grow to fit the first few frames
+        byte[] buffer = sample.getData();
+        assertEquals(sample.getLength(), flacDecoder.readSamples(sample));
+        assertTrue(sample.getLength() > 0);
+        assertSame(buffer, sample.getData());
+        flacDecoder.goToTime(flacDecoder.getFileDuration() + 1);
+        assertEquals(0, flacDecoder.readSamples(sample));
+        flacDecoder.closeAudioFile();
+    }
+
+    @Test // Test if seeking backwards jumps to the right frame instead of decoding from the start
+    public void seekBackTest() {
+        AudioDecoder wavDecoder = new WAV("data/scarlet.wav");
+        flacDecoder.prepareToPlayAudio();
+        wavDecoder.prepareToPlayAudio();
+        flacDecoder.goToTime(5);
+        flacDecoder.goToTime(1.5);
+        // Lands on the first frame boundary after the target, frames are 4096 samples
+        assertTrue(Math.abs(1.5 - flacDecoder.getCurrentTime()) < 0.1);
+        wavDecoder.goToTime(flacDecoder.getCurrentTime());
+        AudioSample sample = flacDecoder.getNextSample();
+        AudioSample wavSample = wavDecoder.getNextSample();
+        int length = Math.min(sample.getLength(), wavSample.getLength());
+        assertTrue(length > 0);
+        for (int i = 0; i < length; i++) {
+            assertEquals(wavSample.getData()[i], sample.getData()[i]);
+        }
+        flacDecoder.goToTime(10);
+        assertFalse(flacDecoder.moreSamples());
+        flacDecoder.goToTime(0.5); // Decoder has to come back from the end
+        assertTrue(flacDecoder.moreSamples());
+        assertTrue(Math.abs(0.5 - flacDecoder.getCurrentTime()) < 0.1);
+    }
+
+    @Test // Test if the seek index finds frames and remembers them
+    public void seekIndexTest() throws Exception {
+        FlacSeekIndex index = new FlacSeekIndex("data/scarlet.flac");
+        long[] start = index.find(0);
+        assertEquals(index.getAudioStart(), start[0]);
+        assertEquals(0, start[1]);
+        int known = index.getKnownFrameCount();
+        long[] frame = index.find(44100 * 3);
+        assertTrue(frame[1] <= 44100 * 3);
+        assertTrue(frame[0] > start[0]);
+        assertTrue(index.getKnownFrameCount() > known);
+        assertArrayEquals(frame, index.find(frame[1]));
+        long[] next = index.find(frame[1] + 44100);
+        assertTrue(next[0] > frame[0]);
+        assertTrue(next[1] > frame[1]);
+    }
 }
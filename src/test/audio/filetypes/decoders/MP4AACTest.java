@@ -101,4 +101,30 @@ public class MP4AACTest {
         // Error range due to math errors in scanning program
         assertTrue(Math.abs(-8.15 - aacDecoder.getReplayGain()) < 0.05);
     }
+
+    @Test // Test if probing gets the format without preparing the decoder
+    public void probeTest() {
+        aacDecoder.probeAudio();
+        assertFalse(aacDecoder.isReady());
+        AudioFormat format = aacDecoder.getAudioOutputFormat();
+        assertEquals(2, format.getChannels());
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(44100, format.getSampleRate());
+        assertEquals("Scarlet Fire", aacDecoder.getID3().getID3Data("Title"));
+    }
+
+    @Test // Test if the same sample gets refilled without allocating new buffers
+    public void reuseTest() {
+        aacDecoder.prepareToPlayAudio();
+        AudioSample sample = new AudioSample();
+        assertTrue(aacDecoder.readSamples(sample) > 0);
+        aacDecoder.readSamples(sample); // Buffers may grow to fit the first few frames
+        byte[] buffer = sample.getData();
+        assertEquals(sample.getLength(), aacDecoder.readSamples(sample));
+        assertTrue(sample.getLength() > 0);
+        assertSame(buffer, sample.getData());
+        aacDecoder.goToTime(aacDecoder.getFileDuration() + 1);
+        assertEquals(0, aacDecoder.readSamples(sample));
+        aacDecoder.closeAudioFile();
+    }
 }
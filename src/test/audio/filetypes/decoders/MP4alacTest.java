@@ -112,4 +112,68 @@ public class MP4alacTest {
         // Error range due to math errors in scanning program
         assertTrue(Math.abs(-8.15 - alacDecoder.getReplayGain()) < 0.05);
     }
+
+    @Test // Test if probing gets the format without preparing the decoder
+    public void probeTest() {
+        alacDecoder.probeAudio();
+        assertFalse(alacDecoder.isReady());
+        AudioFormat format = alacDecoder.getAudioOutputFormat();
+        assertEquals(2, format.getChannels());
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(44100, format.getSampleRate());
+        assertEquals("Scarlet Fire", alacDecoder.getID3().getID3Data("Title"));
+    }
+
+    @Test // Test if the same sample gets refilled without allocating new buffers
+    public void reuseTest() {
+        alacDecoder.prepareToPlayAudio();
+        AudioSample sample = new AudioSample();
+        assertTrue(alacDecoder.readSamples(sample) > 0);
+        alacDecoder.readSamples(sample); // Buffers may grow to fit the first few frames
+        byte[] buffer = sample.getData();
+        assertEquals(sample.getLength(), alacDecoder.readSamples(sample));
+        assertTrue(sample.getLength() > 0);
+        assertSame(buffer, sample.getData());
+        alacDecoder.goToTime(alacDecoder.getFileDuration() + 1);
+        assertEquals(0, alacDecoder.readSamples(sample));
+        alacDecoder.closeAudioFile();
+    }
+
+    @Test // Test if seeking jumps straight to the right sample, exact to the frame
+    public void seekBackTest() {
+        AudioDecoder wavDecoder = new WAV("data/scarlet.wav");
+        alacDecoder.prepareToPlayAudio();
+        alacDecoder.goToTime(5);
+        alacDecoder.goToTime(1.5);
+        assertEquals(1.5, alacDecoder.getCurrentTime(), 1e-9);
+        wavDecoder.prepareToPlayAudio();
+        wavDecoder.goToTime(alacDecoder.getCurrentTime());
+        AudioSample sample = alacDecoder.getNextSample();
+        AudioSample wavSample = wavDecoder.getNextSample();
+        int length = Math.min(sample.getLength(), wavSample.getLength());
+        assertTrue(length > 0);
+        for (int i = 0; i < length; i++) {
+            assertEquals(wavSample.getData()[i], sample.getData()[i]);
+        }
+        alacDecoder.goToTime(10);
+        assertFalse(alacDecoder.moreSamples());
+        alacDecoder.goToTime(0.5); // Decoder has to come back from the end
+        assertTrue(alacDecoder.moreSamples());
+        assertTrue(alacDecoder.getNextSample().getLength() > 0);
+    }
+
+    @Test // Test if the sample table is flattened correctly
+    public void sampleTableTest() throws Exception {
+        Mp4SampleTable table = new Mp4SampleTable("data/scarlet.alac.m4a");
+        assertEquals(70, table.getSampleCount());
+        assertEquals(69 * 4096 + 4026, table.getTotalFrames());
+        assertEquals(0, table.sampleAt(0));
+        assertEquals(0, table.sampleAt(4095));
+        assertEquals(1, table.sampleAt(4096));
+        assertEquals(69, table.sampleAt(table.getTotalFrames() - 1));
+        assertEquals(70, table.sampleAt(table.getTotalFrames()));
+        assertEquals(4096 * 10, table.getFirstFrame(10));
+        assertTrue(table.getOffset(1) > table.getOffset(0));
+        assertTrue(table.getOffset(5) > table.getOffset(4)); // Next chunk
+    }
 }
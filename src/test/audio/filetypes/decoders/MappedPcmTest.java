@@ -0,0 +1,200 @@
+package audio.filetypes.decoders;
+
+import audio.AudioDecoder;
+import audio.AudioFileType;
+import audio.AudioSample;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static audio.AudioTestUtilities.readAll;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestClassOrder(ClassOrderer.OrderAnnotation.class)
+@Order(1)
+public class MappedPcmTest {
+    AudioDecoder pcmDecoder;
+
+    @BeforeEach
+    public void prepare() {
+        pcmDecoder = new MappedPcm("data/scarlet.wav", AudioFileType.PCM_WAV);
+        Thread.currentThread().setPriority(2);
+    }
+
+    @Test // Test if prepareToPlayAudio and closeAudioFile work
+    public void fileManagementTest() {
+        assertFalse(pcmDecoder.isReady());
+        pcmDecoder.prepareToPlayAudio();
+        assertTrue(pcmDecoder.isReady());
+        pcmDecoder.closeAudioFile();
+        assertFalse(pcmDecoder.isReady());
+        assertEquals("scarlet.wav", pcmDecoder.getFileName());
+        assertEquals(1146600 / 176400.0, pcmDecoder.getFileDuration());
+        assertEquals(AudioFileType.PCM_WAV, pcmDecoder.getFileType());
+        assertEquals("NO", pcmDecoder.getID3().getID3Data("VBR"));
+    }
+
+    @Test // Test if probing gets the format without preparing the decoder
+    public void probeTest() {
+        pcmDecoder.probeAudio();
+        assertFalse(pcmDecoder.isReady());
+        AudioFormat format = pcmDecoder.getAudioOutputFormat();
+        assertEquals(2, format.getChannels());
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(44100, format.getSampleRate());
+        assertEquals(AudioFormat.Encoding.PCM_SIGNED, format.getEncoding());
+        assertFalse(format.isBigEndian());
+        pcmDecoder.closeAudioFile();
+    }
+
+    @Test // Test if decoding matches the AudioSystem based decoder, copied and mapped
+    public void decodeTest() {
+        AudioDecoder wavDecoder = new WAV("data/scarlet.wav");
+        pcmDecoder.prepareToPlayAudio();
+        assertTrue(pcmDecoder.getAudioOutputFormat().matches(getFormat(wavDecoder)));
+        byte[] expected = readAll(wavDecoder, false);
+        assertArrayEquals(expected, readAll(pcmDecoder, false));
+        assertArrayEquals(expected, readAll(pcmDecoder, true));
+    }
+
+    @Test // Test if AIFF files read the same as the Aiff decoder
+    public void aiffTest() {
+        pcmDecoder = new MappedPcm("data/scarlet.aif", AudioFileType.AIFF);
+        AudioDecoder aiffDecoder = new Aiff("data/scarlet.aif");
+        pcmDecoder.prepareToPlayAudio();
+        assertTrue(pcmDecoder.getAudioOutputFormat().isBigEndian());
+        assertTrue(pcmDecoder.getAudioOutputFormat().matches(getFormat(aiffDecoder)));
+        assertArrayEquals(readAll(aiffDecoder, false), readAll(pcmDecoder, true));
+        assertEquals("Scarlet Fire", pcmDecoder.getID3().getID3Data("Title"));
+        assertEquals(AudioFileType.AIFF, pcmDecoder.getFileType());
+        pcmDecoder.closeAudioFile();
+    }
+
+    @Test
+    public void skipTest() {
+        pcmDecoder.prepareToPlayAudio();
+        assertEquals(0, pcmDecoder.getCurrentTime());
+        pcmDecoder.goToTime(5);
+        assertEquals(5, pcmDecoder.getCurrentTime());
+        pcmDecoder.goToTime(2);
+        assertEquals(2, pcmDecoder.getCurrentTime());
+        AudioSample sample = pcmDecoder.getNextSample();
+        AudioDecoder wavDecoder = new WAV("data/scarlet.wav");
+        wavDecoder.prepareToPlayAudio();
+        wavDecoder.goToTime(2);
+        AudioSample wavSample = wavDecoder.getNextSample();
+        assertArrayEquals(Arrays.copyOf(wavSample.getData(), wavSample.getLength()),
+                Arrays.copyOf(sample.getData(), wavSample.getLength()));
+        pcmDecoder.goToTime(10);
+        assertFalse(pcmDecoder.moreSamples());
+        assertFalse(pcmDecoder.skipInProgress());
+        assertEquals(0, pcmDecoder.readSamples(sample));
+        pcmDecoder.closeAudioFile();
+        wavDecoder.closeAudioFile();
+    }
+
+    @Test // Test if views of the mapped file match copied reads after seeking
+    public void bufferTest() {
+        AudioDecoder wavDecoder = new WAV("data/scarlet.wav");
+        pcmDecoder.prepareToPlayAudio();
+        wavDecoder.prepareToPlayAudio();
+        pcmDecoder.goToTime(5);
+        pcmDecoder.goToTime(1.5);
+        wavDecoder.goToTime(1.5);
+        assertEquals(1.5, pcmDecoder.getCurrentTime());
+        ByteBuffer view = pcmDecoder.readBuffer();
+        assertTrue(view.isReadOnly());
+        assertEquals(1.5 + view.remaining() / 176400.0, pcmDecoder.getCurrentTime());
+        byte[] expected = readAll(wavDecoder, false);
+        byte[] viewed = new byte[view.remaining()];
+        view.get(viewed);
+        assertArrayEquals(Arrays.copyOf(expected, viewed.length), viewed);
+        pcmDecoder.goToTime(1.5);
+        assertArrayEquals(expected, readAll(pcmDecoder, true));
+        pcmDecoder.prepareToPlayAudio();
+        pcmDecoder.goToTime(pcmDecoder.getFileDuration());
+        assertEquals(0, pcmDecoder.readBuffer().remaining());
+        assertFalse(pcmDecoder.moreSamples());
+        pcmDecoder.goToTime(0);
+        assertTrue(pcmDecoder.moreSamples());
+        pcmDecoder.closeAudioFile();
+    }
+
+    @Test // Test if reads and views work across mapping windows
+    public void windowTest() throws IOException {
+        PcmDataChunk whole = new PcmDataChunk("data/scarlet.wav");
+        PcmDataChunk windowed = new PcmDataChunk("data/scarlet.wav", 1002); // Rounds down to 1000
+        byte[] expected = new byte[(int) whole.getLength()];
+        assertEquals(expected.length, whole.read(expected));
+        byte[] read = new byte[expected.length];
+        assertEquals(expected.length, windowed.read(read));
+        assertArrayEquals(expected, read);
+        windowed.seek(990);
+        ByteBuffer view = windowed.slice(4096);
+        assertEquals(10, view.remaining()); // Stops at the end of the window
+        assertEquals(1000, windowed.slice(4096).remaining());
+        assertEquals(expected[990], view.get(0));
+        windowed.seek(expected.length);
+        assertTrue(windowed.atEnd());
+        assertEquals(0, windowed.slice(4096).remaining());
+        assertEquals(-1, windowed.read(read));
+        whole.close();
+        windowed.close();
+    }
+
+    @Test // Test RF64 and little endian AIFC files, which AudioSystem can't read
+    public void containerTest(@TempDir Path dir) throws IOException {
+        byte[] audio = Files.readAllBytes(Paths.get("data/scarlet.wav"));
+        audio = Arrays.copyOfRange(audio, 44, 44 + 1146600);
+        Path rf64 = dir.resolve("scarlet.wav");
+        ByteBuffer header = ByteBuffer.allocate(80).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RF64".getBytes()).putInt(-1).put("WAVE".getBytes());
+        header.put("ds64".getBytes()).putInt(28).putLong(72 + audio.length).putLong(audio.length)
+                .putLong(audio.length / 4).putInt(0);
+        header.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 2).putInt(44100)
+                .putInt(176400).putShort((short) 4).putShort((short) 16);
+        header.put("data".getBytes()).putInt(-1);
+        Files.write(rf64, concat(header, audio));
+        Path aifc = dir.resolve("scarlet.aifc");
+        header = ByteBuffer.allocate(64);
+        header.put("FORM".getBytes()).putInt(56 + audio.length).put("AIFC".getBytes());
+        header.put("COMM".getBytes()).putInt(22).putShort((short) 2).putInt(audio.length / 4)
+                .putShort((short) 16).putShort((short) 0x400E).putLong(44100L << 48).put("sowt".getBytes());
+        header.put("SSND".getBytes()).putInt(8 + audio.length).putInt(0).putInt(0);
+        Files.write(aifc, concat(header, audio));
+        AudioDecoder wavDecoder = new WAV("data/scarlet.wav");
+        byte[] expected = readAll(wavDecoder, false);
+        for (Path path : new Path[] {rf64, aifc}) {
+            assertTrue(MappedPcm.canDecode(path.toString()));
+            pcmDecoder = new MappedPcm(path.toString(), path == aifc ? AudioFileType.AIFF : AudioFileType.PCM_WAV);
+            pcmDecoder.prepareToPlayAudio();
+            AudioFormat format = pcmDecoder.getAudioOutputFormat();
+            assertEquals(44100, format.getSampleRate());
+            assertFalse(format.isBigEndian());
+            assertArrayEquals(expected, readAll(pcmDecoder, true));
+            pcmDecoder.closeAudioFile();
+        }
+        assertFalse(MappedPcm.canDecode("data/scarlet.mp3"));
+    }
+
+    // Effects: returns the format of decoder after preparing it
+    private static AudioFormat getFormat(AudioDecoder decoder) {
+        decoder.prepareToPlayAudio();
+        return decoder.getAudioOutputFormat();
+    }
+
+    // Effects: returns header's contents followed by audio
+    private static byte[] concat(ByteBuffer header, byte[] audio) {
+        byte[] out = Arrays.copyOf(header.array(), header.position() + audio.length);
+        System.arraycopy(audio, 0, out, header.position(), audio.length);
+        return out;
+    }
+}
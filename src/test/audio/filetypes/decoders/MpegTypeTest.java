@@ -151,4 +151,76 @@ public class MpegTypeTest {
         assertTrue(Math.abs(-8.15 - mp3Decoder.getReplayGain()) < 0.05);
         mp3Decoder.closeAudioFile();
     }
+
+    @Test // Test if probing gets the format without preparing the decoder
+    public void probeTest() {
+        mp3Decoder.probeAudio();
+        assertFalse(mp3Decoder.isReady());
+        AudioFormat format = mp3Decoder.getAudioOutputFormat();
+        assertEquals(2, format.getChannels());
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(44100, format.getSampleRate());
+        assertEquals("Scarlet Fire", mp3Decoder.getID3().getID3Data("Title"));
+    }
+
+    @Test // Test if the same sample gets refilled without allocating new buffers
+    public void reuseTest() {
+        mp3Decoder.prepareToPlayAudio();
+        AudioSample sample = new AudioSample();
+        assertTrue(mp3Decoder.readSamples(sample) > 0);
+        mp3Decoder.readSamples(sample); // Buffers may grow to fit the first few frames
+        byte[] buffer = sample.getData();
+        assertEquals(sample.getLength(), mp3Decoder.readSamples(sample));
+        assertTrue(sample.getLength() > 0);
+        assertSame(buffer, sample.getData());
+        mp3Decoder.goToTime(mp3Decoder.getFileDuration() + 1);
+        assertEquals(0, mp3Decoder.readSamples(sample));
+        mp3Decoder.closeAudioFile();
+    }
+
+    @Test // Test if seeking lands exactly where the counter says, comparing against a reference decode
+    public void seekBackTest() {
+        AudioDecoder wavDecoder = new WAV("data/scarlet.mp3.wav");
+        mp3Decoder.prepareToPlayAudio();
+        wavDecoder.prepareToPlayAudio();
+        mp3Decoder.goToTime(5);
+        mp3Decoder.goToTime(1.5);
+        // Error range due to frame size
+        assertTrue(Math.abs(1.5 - mp3Decoder.getCurrentTime()) < 0.05);
+        long position = Math.round(mp3Decoder.getCurrentTime() * 44100) * 4;
+        AudioSample sample = mp3Decoder.getNextSample();
+        AudioSample wavSample = wavDecoder.getNextSample();
+        long wavPosition = 0;
+        while (wavPosition + wavSample.getLength() <= position) {
+            wavPosition += wavSample.getLength();
+            wavSample = wavDecoder.getNextSample();
+        }
+        int wavOffset = (int) (position - wavPosition);
+        for (int i = 0; i < sample.getLength(); i++) {
+            if (i + wavOffset == wavSample.getLength()) {
+                wavSample = wavDecoder.getNextSample();
+                wavOffset = -i;
+            }
+            assertEquals(wavSample.getData()[i + wavOffset], sample.getData()[i]);
+        }
+        mp3Decoder.closeAudioFile();
+    }
+
+    @Test // Test if the seek index reads frame positions without decoding
+    public void seekIndexTest() throws Exception {
+        MpegSeekIndex index = new MpegSeekIndex("data/scarlet.mp3");
+        assertTrue(index.hasTableOfContents()); // LAME's CBR Info tag
+        assertEquals(250, index.getFrameCount());
+        assertEquals(250 * 1152 / 44100.0, index.getDuration(), 1e-9);
+        long[] start = index.locate(0);
+        long[] middle = index.locate(3);
+        assertEquals(0, start[1]);
+        assertTrue(Math.abs(3 * 44100 / 1152 - middle[1]) <= 2); // Table of contents is approximate
+        assertTrue(middle[0] > start[0]);
+        MpegSeekIndex mp2 = new MpegSeekIndex("data/scarlet.mp2");
+        assertFalse(mp2.hasTableOfContents());
+        assertEquals(0, mp2.framesDroppedAt(mp2.locate(2)[0]));
+        assertEquals(6, Math.floor(mp2.getDuration())); // Scans every frame header
+        assertEquals(2 * 44100 / 1152, mp2.locate(2)[1]);
+    }
 }
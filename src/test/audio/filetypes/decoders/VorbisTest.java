@@ -110,4 +110,30 @@ public class VorbisTest {
         // Default Value (fails to get from file for some reason)
         assertEquals(-6, vorbisDecoder.getReplayGain());
     }
+
+    @Test // Test if probing gets the format without preparing the decoder
+    public void probeTest() {
+        vorbisDecoder.probeAudio();
+        assertFalse(vorbisDecoder.isReady());
+        AudioFormat format = vorbisDecoder.getAudioOutputFormat();
+        assertEquals(2, format.getChannels());
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(44100, format.getSampleRate());
+        assertEquals("Scarlet Fire", vorbisDecoder.getID3().getID3Data("Title"));
+    }
+
+    @Test // Test if the same sample gets refilled without allocating new buffers
+    public void reuseTest() {
+        vorbisDecoder.prepareToPlayAudio();
+        AudioSample sample = new AudioSample();
+        assertTrue(vorbisDecoder.readSamples(sample) > 0);
+        vorbisDecoder.readSamples(sample); // Buffers may grow to fit the first few frames
+        byte[] buffer = sample.getData();
+        assertEquals(sample.getLength(), vorbisDecoder.readSamples(sample));
+        assertTrue(sample.getLength() > 0);
+        assertSame(buffer, sample.getData());
+        vorbisDecoder.goToTime(vorbisDecoder.getFileDuration() + 1);
+        assertEquals(0, vorbisDecoder.readSamples(sample));
+        vorbisDecoder.closeAudioFile();
+    }
 }
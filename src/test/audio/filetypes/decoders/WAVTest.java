@@ -29,7 +29,7 @@ public class  WAVTest {
         wavDecoder.closeAudioFile();
         assertFalse(wavDecoder.isReady());
         assertEquals("scarlet.wav", wavDecoder.getFileName());
-        assertEquals(7, Math.floor(wavDecoder.getFileDuration()));
+        assertEquals(6, Math.floor(wavDecoder.getFileDuration())); // Tags after the audio don't count
         assertEquals(AudioFileType.PCM_WAV, wavDecoder.getFileType());
     }
 
@@ -71,4 +71,38 @@ public class  WAVTest {
         wavDecoder.setArtwork(wavDecoder.getArtwork());
         assertEquals(-6, wavDecoder.getReplayGain());
     }
+
+    @Test // Test if probing gets the format without preparing the decoder
+    public void probeTest() {
+        wavDecoder.probeAudio();
+        assertFalse(wavDecoder.isReady());
+        AudioFormat format = wavDecoder.getAudioOutputFormat();
+        assertEquals(2, format.getChannels());
+        assertEquals(16, format.getSampleSizeInBits());
+        assertEquals(44100, format.getSampleRate());
+        assertEquals("scarlet.wav", wavDecoder.getID3().getID3Data("Title"));
+    }
+
+    @Test // Test if the same sample gets refilled without allocating new buffers
+    public void reuseTest() {
+        wavDecoder.prepareToPlayAudio();
+        AudioSample sample = new AudioSample();
+        assertTrue(wavDecoder.readSamples(sample) > 0);
+        wavDecoder.readSamples(sample); // Buffers may grow to fit the first few frames
+        byte[] buffer = sample.getData();
+        assertEquals(sample.getLength(), wavDecoder.readSamples(sample));
+        assertTrue(sample.getLength() > 0);
+        assertSame(buffer, sample.getData());
+        wavDecoder.goToTime(wavDecoder.getFileDuration() + 1);
+        assertEquals(0, wavDecoder.readSamples(sample));
+        wavDecoder.closeAudioFile();
+    }
+
+    @Test // Test if the AudioSystem decoder leaves mapped reads to MappedPcm
+    public void bufferTest() {
+        wavDecoder.prepareToPlayAudio();
+        assertNull(wavDecoder.readBuffer());
+        assertTrue(wavDecoder.moreSamples());
+        wavDecoder.closeAudioFile();
+    }
 }
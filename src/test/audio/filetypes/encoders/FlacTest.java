@@ -0,0 +1,72 @@
+package audio.filetypes.encoders;
+
+import audio.AudioDecoder;
+import audio.AudioEncoder;
+import audio.filetypes.decoders.WAV;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestClassOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+
+import static audio.AudioTestUtilities.readAll;
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestClassOrder(ClassOrderer.OrderAnnotation.class)
+@Order(2)
+public class FlacTest {
+
+    @Test
+    public void selectorTest() {
+        AudioEncoder encoder = new Flac();
+        HashMap<String, List<String>> options = encoder.getEncoderSpecificSelectors();
+        assertEquals(List.of("1152", "2304", "4096", "4608"), options.get("Block Size"));
+        assertEquals(List.of("Fastest", "Fast", "Default", "Best"), options.get("Compression"));
+        assertEquals(Runtime.getRuntime().availableProcessors(), options.get("Threads").size());
+        assertEquals("1", options.get("Threads").get(0));
+    }
+
+    @Test // Test if worker threads write the same file as encoding on one thread
+    public void parallelTest(@TempDir Path dir) throws IOException {
+        Path single = dir.resolve("single.flac");
+        Path parallel = dir.resolve("parallel.flac");
+        encode(single, "1", "Default");
+        encode(parallel, "4", "Default");
+        assertArrayEquals(Files.readAllBytes(single), Files.readAllBytes(parallel));
+        Path unset = dir.resolve("unset.flac");
+        encode(unset, null, "Default"); // Defaults to one thread
+        assertArrayEquals(Files.readAllBytes(single), Files.readAllBytes(unset));
+        byte[] expected = readAll(new WAV("./data/scarlet.wav"));
+        assertArrayEquals(expected, readAll(new audio.filetypes.decoders.Flac(parallel.toString())));
+        for (String level : new String[] {"Fastest", "Best"}) {
+            Path compressed = dir.resolve(level + ".flac");
+            encode(compressed, "4", level);
+            assertArrayEquals(expected, readAll(new audio.filetypes.decoders.Flac(compressed.toString())));
+        }
+        assertTrue(Files.size(dir.resolve("Best.flac")) <= Files.size(parallel));
+    }
+
+    // Effects: encodes the test WAV file to target with the specified settings, threads is left unset if null
+    private static void encode(Path target, String threads, String compression) {
+        AudioDecoder decoder = new WAV("./data/scarlet.wav");
+        AudioEncoder encoder = new Flac();
+        encoder.setSource(decoder);
+        decoder.prepareToPlayAudio();
+        HashMap<String, String> options = new HashMap<>();
+        options.put("Block Size", "4096");
+        options.put("Compression", compression);
+        if (threads != null) {
+            options.put("Threads", threads);
+        }
+        encoder.setAudioFormat(decoder.getAudioOutputFormat(), options);
+        assertTrue(encoder.encodeAudio(target.toString()));
+        assertEquals(1, encoder.encodedPercent());
+        decoder.closeAudioFile();
+    }
+}
@@ -10,8 +10,14 @@ import org.junit.jupiter.api.ClassOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestClassOrder;
+import org.junit.jupiter.api.io.TempDir;
 import ui.AudioFilePlaybackBackend;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -98,6 +104,31 @@ public class MP3Test {
         assertFalse(encoder.encodeAudio("./data/\u3042/scarlet.mp3"));
     }
 
+    @Test // Test if the tag is written up front and LAME's last frames make it into the file
+    public void streamingTest(@TempDir Path dir) throws IOException {
+        String to = dir.resolve("scarlet.mp3").toString();
+        decoder = new Aiff("./data/scarlet.aif");
+        encoder = new MP3();
+        encoder.setSource(decoder);
+        HashMap<String, String> options = new HashMap<>();
+        options.put("Bitrate", "64 kbps");
+        options.put("Stereo", "Yes");
+        options.put("Quality", "Lowest");
+        encoder.setAudioFormat(null, options);
+        assertTrue(encoder.encodeAudio(to));
+        assertEquals(1, encoder.encodedPercent());
+        byte[] file = Files.readAllBytes(Paths.get(to));
+        assertEquals("ID3", new String(file, 0, 3, StandardCharsets.US_ASCII));
+        assertEquals(3, file[3]); // ID3v2.3, like tags saved by the database
+        AudioDecoder mp3Decoder = new MpegType(to);
+        mp3Decoder.prepareToPlayAudio();
+        assertEquals("Scarlet Fire", mp3Decoder.getID3().getID3Data("Title"));
+        assertEquals("Audiodex", mp3Decoder.getID3().getID3Data("Encoder"));
+        decoder.probeAudio();
+        assertTrue(mp3Decoder.getFileDuration() >= decoder.getFileDuration()); // Nothing cut off the end
+        mp3Decoder.closeAudioFile();
+    }
+
     // Make a lambda for this
     private interface RunnableFloat {
         double run();
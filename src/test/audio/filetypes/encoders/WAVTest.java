@@ -2,17 +2,26 @@ package audio.filetypes.encoders;
 
 import audio.AudioDecoder;
 import audio.AudioEncoder;
+import audio.AudioFileType;
 import audio.filetypes.decoders.Aiff;
 import audio.filetypes.decoders.MP4alac;
+import audio.filetypes.decoders.MappedPcm;
 import model.ExceptionIgnore;
 import org.junit.jupiter.api.ClassOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestClassOrder;
+import org.junit.jupiter.api.io.TempDir;
 import ui.AudioFilePlaybackBackend;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 
+import static audio.AudioTestUtilities.readAll;
 import static org.junit.jupiter.api.Assertions.*;
 
 @TestClassOrder(ClassOrderer.OrderAnnotation.class)
@@ -85,6 +94,35 @@ public class WAVTest {
         assertNull(encoder.getEncoderSpecificSelectors()); // Japanese directory name
         assertFalse(encoder.encodeAudio("./data/\u3042/scarlet.wav"));
     }
+    @Test // Test if the writer converts big endian audio and switches to RF64 when it gets too big
+    public void streamingTest(@TempDir Path dir) throws IOException {
+        String riff = dir.resolve("riff.wav").toString();
+        String rf64 = dir.resolve("rf64.wav").toString();
+        decoder = new Aiff("./data/scarlet.aif");
+        decoder.prepareToPlayAudio();
+        encoder = new audio.filetypes.encoders.WAV();
+        encoder.setSource(decoder);
+        assertTrue(encoder.encodeAudio(riff));
+        decoder.closeAudioFile();
+        decoder = new MappedPcm("./data/scarlet.wav", AudioFileType.PCM_WAV);
+        decoder.prepareToPlayAudio();
+        try (WaveFileWriter out = new WaveFileWriter(rf64, decoder.getAudioOutputFormat(), 1000)) {
+            while (decoder.moreSamples()) {
+                out.write(decoder.readBuffer());
+            }
+            assertEquals(1146600, out.getDataLength());
+        }
+        decoder.closeAudioFile();
+        byte[] header = Files.readAllBytes(Paths.get(rf64));
+        assertEquals("RF64", new String(header, 0, 4, StandardCharsets.US_ASCII));
+        assertEquals("ds64", new String(header, 12, 4, StandardCharsets.US_ASCII));
+        assertEquals("RIFF", new String(Files.readAllBytes(Paths.get(riff)), 0, 4, StandardCharsets.US_ASCII));
+        byte[] expected = readAll(new audio.filetypes.decoders.WAV("./data/scarlet.wav"));
+        assertArrayEquals(expected, readAll(new audio.filetypes.decoders.WAV(riff))); // AudioSystem reads it
+        assertArrayEquals(expected, readAll(new MappedPcm(riff, AudioFileType.PCM_WAV)));
+        assertArrayEquals(expected, readAll(new MappedPcm(rf64, AudioFileType.PCM_WAV)));
+    }
+
     // Make a lambda for this
     private interface RunnableFloat {
         double run();
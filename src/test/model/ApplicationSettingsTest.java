@@ -26,6 +26,10 @@ public class ApplicationSettingsTest {
         assertTrue(settings.doSoundCheck());
         settings.toggleSoundCheck();
         assertFalse(settings.doSoundCheck());
+        assertFalse(settings.doBinaryDatabase());
+        settings.toggleBinaryDatabase();
+        assertTrue(settings.doBinaryDatabase());
+        assertTrue(new ApplicationSettings(settings.encode()).doBinaryDatabase());
     }
 
     @Test
@@ -53,6 +53,7 @@ public class AudioConversionTest {
         converter.waitForEncoderFinish();
         assertTrue(converter.isFinished());
         assertFalse(converter.errorOccurred());
+        assertTrue(converter.whenFinished().join());
     }
 
     @Test
@@ -84,6 +85,7 @@ public class AudioConversionTest {
     public void noInTest() {
         converter = new AudioConversion(new AudioDataStructure("data/scarlet"), "lmao");
         assertTrue(converter.errorOccurred());
+        assertFalse(converter.whenFinished().join()); // Already done, nobody has to wait
     }
 
     @Test
@@ -91,7 +93,7 @@ public class AudioConversionTest {
         converter = new AudioConversion(new AudioDataStructure("data/scarlet.mp3"),
                 "data/\u3042/scarlet.wav");
         converter.start();
-        converter.waitForEncoderFinish();
+        assertFalse(converter.whenFinished().join());
         assertTrue(converter.errorOccurred());
     }
 }
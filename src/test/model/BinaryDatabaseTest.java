@@ -0,0 +1,128 @@
+package model;
+
+import audio.AudioDataStructure;
+import audio.ID3Container;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryDatabaseTest {
+
+    // Effects: returns a few database entries with tags worth checking
+    private static List<AudioDataStructure> makeEntries() {
+        List<AudioDataStructure> files = new ArrayList<>();
+        files.add(new AudioDataStructure("./data/scarlet.aif"));
+        files.add(new AudioDataStructure("./data/scarlet.mp3"));
+        files.add(AudioDataStructure.decode(new JSONObject("{\"filetype\":\"MP3\",\"filename\":\"/lmao.mp3\","
+                + "\"bitrate\":-1,\"filesize\":\"6270486\",\"ID3data\":{\"Artist\":\"NoteBlock\",\"Track\":1,"
+                + "\"Year\":-20,\"Gain\":1.5},\"samplesize\":\"NO\"}")));
+        return files;
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        List<AudioDataStructure> files = makeEntries();
+        ApplicationSettings settings = new ApplicationSettings();
+        settings.toggleBinaryDatabase();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryDatabase.write(out, settings, files);
+        List<AudioDataStructure> loaded = new ArrayList<>();
+        ApplicationSettings loadedSettings = BinaryDatabase.read(ByteBuffer.wrap(out.toByteArray()), loaded::add);
+        assertEquals(settings.hashCode(), loadedSettings.hashCode());
+        assertEquals(files, loaded);
+        for (int i = 0; i < files.size(); i++) {
+            AudioDataStructure expected = files.get(i);
+            AudioDataStructure actual = loaded.get(i);
+            assertEquals(expected.getFilesize(), actual.getFilesize());
+            assertEquals(expected.getBitrate(), actual.getBitrate());
+            assertEquals(expected.getSamplesize(), actual.getSamplesize());
+            assertEquals(expected.getLastModified(), actual.getLastModified());
+            assertEquals(expected.getAudioFileType(), actual.getAudioFileType());
+            assertEquals(expected.getId3Data().getKeys(), actual.getId3Data().getKeys());
+        }
+        ID3Container id3 = loaded.get(2).getId3Data();
+        assertEquals(1L, id3.getID3Data("Track"));
+        assertEquals(-20L, id3.getID3Data("Year"));
+        assertEquals("1.5", id3.getID3Data("Gain")); // Decimals are kept as strings
+        assertEquals("NoteBlock", id3.getID3Data("Artist"));
+        // Shared strings are only stored once
+        StringWriter json = new StringWriter();
+        JsonDatabase.write(json, settings, files);
+        assertTrue(out.size() < json.toString().length() / 2);
+    }
+
+    @Test
+    public void corruptTest() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryDatabase.write(out, new ApplicationSettings(), makeEntries());
+        byte[] data = out.toByteArray();
+        assertThrows(IOException.class, () ->
+                BinaryDatabase.read(ByteBuffer.wrap(Arrays.copyOf(data, data.length - 5)), file -> { }));
+        byte[] badMagic = data.clone();
+        badMagic[0] = '{';
+        assertThrows(IOException.class, () -> BinaryDatabase.read(ByteBuffer.wrap(badMagic), file -> { }));
+        byte[] badVersion = data.clone();
+        badVersion[4] = 69;
+        assertThrows(IOException.class, () -> BinaryDatabase.read(ByteBuffer.wrap(badVersion), file -> { }));
+        byte[] hugeCount = Arrays.copyOf(data, 8);
+        hugeCount[5] = (byte) 0xFF;
+        hugeCount[6] = (byte) 0xFF;
+        hugeCount[7] = 0x7F;
+        assertThrows(IOException.class, () -> BinaryDatabase.read(ByteBuffer.wrap(hugeCount), file -> { }));
+        assertEquals(-1, BinaryDatabase.write("\u0000", new ApplicationSettings(), makeEntries()));
+    }
+
+    @Test
+    public void convertTest(@TempDir Path dir) throws IOException {
+        String json = dir.resolve("1.audiodex.json").toString();
+        String binary = dir.resolve("1.audiodex.bin").toString();
+        String back = dir.resolve("2.audiodex.json").toString();
+        List<AudioDataStructure> files = makeEntries();
+        assertNotEquals(-1, JsonDatabase.write(json, new ApplicationSettings(), files));
+        assertTrue(BinaryDatabase.convertFromJson(json, binary));
+        assertTrue(BinaryDatabase.convertToJson(binary, back));
+        List<AudioDataStructure> loaded = new ArrayList<>();
+        assertNotNull(JsonDatabase.read(back, loaded::add));
+        assertEquals(files, loaded);
+        assertTrue(Files.size(Path.of(binary)) < Files.size(Path.of(json)));
+        assertFalse(BinaryDatabase.convertFromJson(dir.resolve("lmao").toString(), binary));
+        assertFalse(BinaryDatabase.convertToJson(json, back)); // Not a binary database
+    }
+
+    @Test
+    public void dataManagerTest(@TempDir Path dir) {
+        DataManager database = new DataManager();
+        database.setUserDir(dir.toString() + "/");
+        database.loadDatabase();
+        database.getSettings().toggleBinaryDatabase();
+        database.addFileToSongDatabase("./data/scarlet.aif");
+        database.addFileToSongDatabase("./data/scarlet.flac");
+        assertTrue(database.saveDatabaseFile());
+        assertTrue(Files.exists(dir.resolve("1.audiodex.bin")));
+        DataManager reloaded = new DataManager();
+        reloaded.setUserDir(dir.toString() + "/");
+        reloaded.loadDatabase();
+        assertTrue(reloaded.getSettings().doBinaryDatabase());
+        assertEquals(2, reloaded.audioListSize());
+        assertEquals(database.getAudioFile(1), reloaded.getAudioFile(1));
+        // Switching back saves JSON, older binary versions can still be reverted to
+        reloaded.getSettings().toggleBinaryDatabase();
+        assertTrue(reloaded.saveDatabaseFile());
+        assertTrue(Files.exists(dir.resolve("2.audiodex.json")));
+        reloaded.revertDb();
+        assertEquals(2, reloaded.audioListSize());
+        assertTrue(reloaded.getSettings().doBinaryDatabase());
+    }
+}
@@ -0,0 +1,112 @@
+package model;
+
+import audio.AudioDataStructure;
+import audio.AudioFileType;
+import audio.ID3Container;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestClassOrder(ClassOrderer.OrderAnnotation.class)
+@Order(0)
+public class BulkConversionTest {
+    DataManager database;
+
+    @BeforeEach
+    public void prepare(@TempDir Path dir) {
+        database = new DataManager();
+        database.setUserDir(dir.toString() + "/");
+        database.loadDatabase();
+        database.addFileToSongDatabase("./data/scarlet.aif");
+        database.addFileToSongDatabase("./data/scarlet.flac");
+        database.addFileToSongDatabase("./data/scarlet.mp3");
+    }
+
+    @Test // Test if templates are filled in with safe tag values
+    public void templateTest(@TempDir Path out) {
+        BulkConversion bulk = new BulkConversion(out.toString(), "{Artist}/{Album}/{Track} {Title}", "mp3");
+        AudioDataStructure source = database.getAudioFile(0);
+        ID3Container id3 = new ID3Container();
+        id3.setID3Data("Artist", "AC/DC");
+        id3.setID3Data("Album", "..");
+        id3.setID3Data("Track", 3);
+        id3.setID3Data("Title", "Scarlet?");
+        source.updateID3(id3);
+        assertEquals(out.resolve("AC_DC").resolve("_").resolve("03 Scarlet_.mp3").toString(),
+                bulk.getTarget(source));
+        bulk = new BulkConversion(out.toString(), "{Composer}/{Filename}", "wav");
+        assertEquals(out.resolve("Unknown Composer").resolve("scarlet.wav").toString(), bulk.getTarget(source));
+    }
+
+    @Test // Test if only matching files are converted
+    public void filterTest(@TempDir Path out) {
+        for (int i = 0; i < database.audioListSize(); i++) {
+            database.getAudioFile(i).getId3Data().setID3Data("Title", "Scarlet " + i);
+        }
+        BulkConversion bulk = new BulkConversion(out.toString(), "{Title}", "wav");
+        assertEquals(3, bulk.plan(database).size());
+        bulk.setFileTypeFilter(AudioFileType.FLAC);
+        LinkedHashMap<AudioDataStructure, String> planned = bulk.plan(database);
+        assertEquals(1, planned.size());
+        assertEquals(AudioFileType.FLAC, planned.keySet().iterator().next().getAudioFileType());
+        bulk.setFileTypeFilter(null);
+        database.getAudioFile(2).getId3Data().setID3Data("Album", "Mirror Test");
+        bulk.setAlbumFilter("mirror test");
+        assertEquals(1, bulk.plan(database).size());
+        bulk.setArtistFilter("Nobody In Particular");
+        assertEquals(0, bulk.plan(database).size());
+        bulk = new BulkConversion(out.toString(), "{Filename}", "wav");
+        assertEquals(1, bulk.plan(database).size()); // Same name, same output
+    }
+
+    @Test // Test if running the same conversion again only converts what changed
+    public void incrementalTest(@TempDir Path out) {
+        BulkConversion bulk = new BulkConversion(out.toString(), "{Artist}/{Filename}", "wav");
+        bulk.setFileTypeFilter(AudioFileType.AIFF);
+        bulk.setAudioSettings(new HashMap<>());
+        ConversionScheduler scheduler = new ConversionScheduler(2, 0);
+        List<AudioConversion> conversions = bulk.createConversions(database);
+        assertEquals(1, conversions.size());
+        assertEquals(0, bulk.getSkipped());
+        conversions.forEach(conversion -> scheduler.submit(conversion, BulkConversion.PRIORITY));
+        conversions.forEach(AudioConversion::waitForEncoderFinish);
+        File target = new File(conversions.get(0).getTarget());
+        assertTrue(target.isFile());
+        assertTrue(conversions.get(0).whenFinished().join());
+        assertTrue(bulk.createConversions(database).isEmpty());
+        assertEquals(1, bulk.getSkipped());
+        assertTrue(target.setLastModified(0)); // Older than the source now
+        assertEquals(1, bulk.plan(database).size());
+        assertEquals(0, bulk.getSkipped());
+        scheduler.shutdown();
+    }
+
+    @Test // Test if a conversion that doesn't finish leaves nothing behind that counts as up to date
+    public void failedConversionTest(@TempDir Path out) {
+        BulkConversion bulk = new BulkConversion(out.toString(), "{Filename}", "wav");
+        bulk.setFileTypeFilter(AudioFileType.MP3);
+        ConversionScheduler scheduler = new ConversionScheduler(1, 0);
+        AudioConversion conversion = bulk.createConversions(database).get(0);
+        scheduler.submit(conversion, BulkConversion.PRIORITY);
+        while (conversion.getComplete() <= 0) { // Decoding MP3 takes long enough to catch it running
+            ExceptionIgnore.ignoreExc(() -> Thread.sleep(1));
+        }
+        File target = new File(conversion.getTarget());
+        assertFalse(target.exists()); // Quitting now would leave nothing at the target
+        assertEquals(1, bulk.plan(database).size());
+        conversion.cancel();
+        assertFalse(conversion.whenFinished().join());
+        assertFalse(target.exists());
+        assertArrayEquals(new String[0], out.toFile().list()); // No partial output either
+        assertEquals(1, bulk.plan(database).size());
+        assertEquals(0, bulk.getSkipped());
+        scheduler.shutdown();
+    }
+}
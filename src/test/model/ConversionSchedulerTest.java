@@ -0,0 +1,131 @@
+package model;
+
+import audio.AudioDataStructure;
+import org.junit.jupiter.api.ClassOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestClassOrder;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestClassOrder(ClassOrderer.OrderAnnotation.class)
+@Order(0)
+public class ConversionSchedulerTest {
+
+    @Test // Test if everything gets converted without going over the worker limit
+    public void batchTest(@TempDir Path dir) {
+        ConversionScheduler scheduler = new ConversionScheduler(2, 0);
+        assertEquals(2, scheduler.getThreads());
+        List<AudioConversion> conversions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            conversions.add(makeConversion(dir.resolve("scarlet" + i + ".wav")));
+            scheduler.submit(conversions.get(i));
+        }
+        int mostRunning = 0;
+        while (conversions.stream().anyMatch(conversion -> !conversion.isFinished())) {
+            mostRunning = Math.max(mostRunning, scheduler.getRunning());
+            ExceptionIgnore.ignoreExc(() -> Thread.sleep(1));
+        }
+        assertTrue(mostRunning <= 2);
+        for (AudioConversion conversion : conversions) {
+            assertTrue(conversion.whenFinished().join());
+            assertEquals(1, conversion.getAttempts());
+            assertTrue(Files.exists(Path.of(conversion.getTarget())));
+        }
+        assertEquals(4, scheduler.getCompleted());
+        assertEquals(0, scheduler.getFailed());
+        assertEquals(0, scheduler.getQueued());
+        assertTrue(scheduler.getRealtimeFactor() > 0);
+        assertTrue(scheduler.getFilesPerMinute() > 0);
+        assertTrue(scheduler.getStatusString().startsWith("0 running, 0 queued"));
+        scheduler.shutdown();
+    }
+
+    @Test // Test if higher priorities jump the queue
+    public void priorityTest(@TempDir Path dir) {
+        ConversionScheduler scheduler = new ConversionScheduler(1, 0);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        AudioConversion first = makeConversion(dir.resolve("first.wav"));
+        AudioConversion low = makeConversion(dir.resolve("low.wav"));
+        AudioConversion high = makeConversion(dir.resolve("high.wav"));
+        for (AudioConversion conversion : new AudioConversion[] {first, low, high}) {
+            conversion.whenFinished().thenRun(() -> order.add(conversion.getTarget()));
+        }
+        scheduler.submit(first); // Takes the only worker
+        scheduler.submit(low, 0);
+        scheduler.submit(high, 5);
+        low.waitForEncoderFinish();
+        assertEquals(List.of(first.getTarget(), high.getTarget(), low.getTarget()), order);
+        scheduler.shutdown();
+    }
+
+    @Test // Test if failed conversions are tried again before giving up
+    public void retryTest(@TempDir Path dir) {
+        ConversionScheduler scheduler = new ConversionScheduler(1, 2);
+        AudioConversion conversion = makeConversion(dir.resolve("missing/scarlet.wav"));
+        scheduler.submit(conversion);
+        assertFalse(conversion.whenFinished().join());
+        assertTrue(conversion.errorOccurred());
+        assertFalse(conversion.isCancelled());
+        assertEquals(3, conversion.getAttempts());
+        assertEquals(1, scheduler.getFailed());
+        scheduler.shutdown();
+    }
+
+    @Test // Test if cancelled conversions stop and don't leave files behind
+    public void cancelTest(@TempDir Path dir) {
+        ConversionScheduler scheduler = new ConversionScheduler(1, 0);
+        AudioConversion running = makeConversion(dir.resolve("running.mp3"));
+        AudioConversion queued = makeConversion(dir.resolve("queued.wav"));
+        scheduler.submit(running);
+        scheduler.submit(queued);
+        scheduler.cancel(queued);
+        assertTrue(queued.isFinished());
+        assertTrue(queued.errorOccurred());
+        assertTrue(queued.isCancelled());
+        assertEquals(0, queued.getAttempts());
+        assertEquals(0, scheduler.getQueued());
+        scheduler.cancelAll();
+        running.waitForEncoderFinish();
+        if (running.isCancelled()) { // Might have finished before it got cancelled
+            assertTrue(running.errorOccurred());
+            assertFalse(Files.exists(Path.of(running.getTarget())));
+        }
+        assertFalse(Files.exists(Path.of(queued.getTarget())));
+        assertEquals(running.isCancelled() ? 2 : 1, scheduler.getFailed());
+        scheduler.shutdown();
+    }
+
+    @Test // Test if a conversion cancelled part way through a compressed source stops and cleans up
+    public void cancelRunningTest(@TempDir Path dir) {
+        ConversionScheduler scheduler = new ConversionScheduler(1, 0);
+        AudioConversion conversion = new AudioConversion(new AudioDataStructure("data/scarlet.mp3"),
+                dir.resolve("scarlet.wav").toString());
+        scheduler.submit(conversion);
+        while (conversion.getComplete() <= 0) { // Decoding MP3 takes long enough to catch it running
+            assertFalse(conversion.isFinished());
+            ExceptionIgnore.ignoreExc(() -> Thread.sleep(1));
+        }
+        conversion.cancel();
+        assertFalse(conversion.whenFinished().join());
+        assertTrue(conversion.isCancelled());
+        assertTrue(conversion.errorOccurred());
+        assertEquals(1, conversion.getAttempts());
+        assertFalse(Files.exists(Path.of(conversion.getTarget())));
+        assertEquals(1, scheduler.getFailed());
+        assertEquals(0, scheduler.getCompleted());
+        scheduler.shutdown();
+    }
+
+    // Effects: returns a conversion of the test AIFF file to target
+    private static AudioConversion makeConversion(Path target) {
+        return new AudioConversion(new AudioDataStructure("data/scarlet.aif"), target.toString());
+    }
+}
@@ -3,8 +3,13 @@ package model;
 import audio.AudioDataStructure;
 import org.json.JSONArray;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -68,6 +73,14 @@ public class DataManagerTest {
         assertEquals(LIST_SIZE, database.audioListSize());
         database.sanitizeAudioDatabase();
         assertEquals(LIST_SIZE, database.audioListSize());
+        AudioDataStructure replaced = database.getAudioFile(1);
+        database.updateAudioFile(1, database.getAudioFile(0)); // Duplicate entry
+        database.sanitizeAudioDatabase();
+        assertEquals(LIST_SIZE - 1, database.audioListSize());
+        database.addFileToSongDatabase(database.getAudioFile(0).getFilename());
+        assertEquals(LIST_SIZE - 1, database.audioListSize());
+        database.addFileToSongDatabase(replaced.getFilename());
+        assertEquals(LIST_SIZE, database.audioListSize());
     }
 
     @Test
@@ -112,6 +125,27 @@ public class DataManagerTest {
 
     @Test
     @Order(6)
+    public void sortOrderTest() {
+        database.sortSongList("Filesize");
+        for (int i = 1; i < database.audioListSize(); i++) {
+            assertTrue(database.getAudioFile(i - 1).getFilesize() <= database.getAudioFile(i).getFilesize());
+        }
+        AudioDataStructure first = database.getAudioFile(0);
+        database.sortSongList("Title");
+        database.sortSongList("Filesize"); // Cached order
+        assertSame(first, database.getAudioFile(0));
+        database.removeSongIndex(0);
+        database.sortSongList("Filesize"); // Invalidated order
+        assertEquals(LIST_SIZE - 1, database.audioListSize());
+        assertNotSame(first, database.getAudioFile(0));
+        database.addFileToSongDatabase(first.getFilename());
+        database.sortSongList("Filesize");
+        assertEquals(LIST_SIZE, database.audioListSize());
+        assertEquals(first, database.getAudioFile(0));
+    }
+
+    @Test
+    @Order(7)
     public void revertDbTest() {
         database.revertDb();
         database.cleanDb(2);
@@ -120,7 +154,7 @@ public class DataManagerTest {
     }
 
     @Test
-    @Order(7)
+    @Order(8)
     public void cleanDbTest() {
         for (int i = 0; i < 10; i++) {
             assertTrue(database.saveDatabaseFile());
@@ -130,7 +164,7 @@ public class DataManagerTest {
     }
 
     @Test
-    @Order(8)
+    @Order(9)
     public void brokenDatabaseTest() {
         database.saveDatabaseFile();
         assertTrue(new File("./data/db/2.audiodex.json").delete());
@@ -159,7 +193,7 @@ public class DataManagerTest {
     }
 
     @Test
-    @Order(9)
+    @Order(10)
     public void brokenFileTest() {
         database.revertDb();
         DataManager.cleanDb("./data/readonly");
@@ -185,7 +219,7 @@ public class DataManagerTest {
     static DataManager manager;
 
     @Test
-    @Order(10)
+    @Order(11)
     public void legacyDatabaseTest() {
         if (!database.getSettings().doSoundCheck()) {
             database.getSettings().toggleSoundCheck();
@@ -203,4 +237,98 @@ public class DataManagerTest {
         } // Sound check defaults to off, it was set on.
         assertNotEquals(database.getSettings().doSoundCheck(), manager.getSettings().doSoundCheck());
     }
+
+    @Test
+    @Order(12)
+    public void rescanTest(@TempDir Path root) throws IOException {
+        Path library = Files.createDirectory(root.resolve("library"));
+        Files.copy(Paths.get("data/scarlet.mp3"), library.resolve("scarlet.mp3"));
+        Files.copy(Paths.get("data/scarlet.flac"), library.resolve("scarlet.flac"));
+        Files.copy(Paths.get("data/scarlet.aif"), root.resolve("scarlet.aif")); // Outside the library
+        DataManager rescanned = new DataManager();
+        rescanned.addDirToSongDatabase(library.toString());
+        rescanned.addFileToSongDatabase(root.resolve("scarlet.aif").toString());
+        rescanned.sortSongList("Filesize"); // mp3, flac, aif
+        assertEquals(3, rescanned.audioListSize());
+        AudioDataStructure mp3 = rescanned.getAudioFile(0);
+        AudioDataStructure flac = rescanned.getAudioFile(1);
+        assertFalse(mp3.isStale());
+        // Nothing changed, nothing gets touched
+        rescanned.rescanSongDatabase(library.toString(), null);
+        assertEquals(3, rescanned.audioListSize());
+        assertSame(mp3, rescanned.getAudioFile(0));
+        assertSame(flac, rescanned.getAudioFile(1));
+        // Change one file, delete another, add a new one
+        Path flacPath = library.resolve("scarlet.flac");
+        Files.setLastModifiedTime(flacPath, FileTime.fromMillis(Files.getLastModifiedTime(flacPath).toMillis()
+                - 60000));
+        assertTrue(flac.isStale());
+        Files.delete(root.resolve("scarlet.aif"));
+        Files.copy(Paths.get("data/scarlet.vorbis.ogg"), library.resolve("scarlet.ogg"));
+        rescanned.rescanSongDatabase(library.toString(), null);
+        assertEquals(3, rescanned.audioListSize());
+        assertTrue(rescanned.beenModified());
+        assertSame(mp3, rescanned.getAudioFile(0));
+        assertNotSame(flac, rescanned.getAudioFile(1));
+        assertEquals(flac.getFilename(), rescanned.getAudioFile(1).getFilename());
+        assertFalse(rescanned.getAudioFile(1).isStale());
+        assertTrue(rescanned.getAudioFile(2).getFilename().endsWith("scarlet.ogg"));
+    }
+
+    @Test
+    @Order(13)
+    public void corruptSnapshotTest(@TempDir Path dir) throws IOException {
+        DataManager corrupted = new DataManager();
+        corrupted.setUserDir(dir.toString() + "/");
+        corrupted.loadDatabase();
+        corrupted.addFileToSongDatabase("./data/scarlet.aif");
+        assertTrue(corrupted.saveDatabaseFile());
+        corrupted.addFileToSongDatabase("./data/scarlet.mp3");
+        corrupted.getSettings().toggleBinaryDatabase(); // Forces a new snapshot
+        assertTrue(corrupted.saveDatabaseFile());
+        assertTrue(Files.exists(dir.resolve("2.audiodex.bin")));
+        assertEquals(2, FileManager.readFile(dir.resolve("index.audiodex.db").toString()).split("\n").length);
+        // Bit rot, the file still decodes fine but it isn't what was saved
+        byte[] data = Files.readAllBytes(dir.resolve("2.audiodex.bin"));
+        data[data.length - 1] ^= 1;
+        Files.write(dir.resolve("2.audiodex.bin"), data);
+        DataManager reloaded = new DataManager();
+        reloaded.setUserDir(dir.toString() + "/");
+        reloaded.loadDatabase();
+        assertEquals(1, reloaded.audioListSize());
+        // Index now points at the good snapshot, later saves build on it
+        reloaded.addFileToSongDatabase("./data/scarlet.flac");
+        assertTrue(reloaded.saveDatabaseFile());
+        assertTrue(Files.exists(dir.resolve("1.audiodex.journal")));
+        reloaded.loadDatabase();
+        assertEquals(2, reloaded.audioListSize());
+    }
+
+    @Test
+    @Order(14)
+    public void rescanJournalTest(@TempDir Path dir) throws IOException {
+        Path library = Files.createDirectory(dir.resolve("library"));
+        Files.copy(Paths.get("data/scarlet.mp3"), library.resolve("scarlet.mp3"));
+        Files.copy(Paths.get("data/scarlet.flac"), library.resolve("scarlet.flac"));
+        Files.copy(Paths.get("data/scarlet.aif"), library.resolve("scarlet.aif"));
+        DataManager journaled = new DataManager();
+        journaled.setUserDir(dir.toString() + "/");
+        journaled.loadDatabase();
+        journaled.addDirToSongDatabase(library.toString());
+        assertTrue(journaled.saveDatabaseFile());
+        // Rescanning a changed file replaces its entry in place, which has to survive a reload
+        Path first = Paths.get(journaled.getAudioFile(0).getFilename());
+        Files.setLastModifiedTime(first, FileTime.fromMillis(Files.getLastModifiedTime(first).toMillis() - 60000));
+        journaled.rescanSongDatabase(library.toString(), null);
+        assertEquals(first.toString(), journaled.getAudioFile(0).getFilename());
+        assertTrue(journaled.saveDatabaseFile());
+        assertTrue(Files.exists(dir.resolve("1.audiodex.journal")));
+        DataManager reloaded = new DataManager();
+        reloaded.setUserDir(dir.toString() + "/");
+        reloaded.loadDatabase();
+        assertEquals(3, reloaded.audioListSize());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(journaled.getAudioFile(i).getFilename(), reloaded.getAudioFile(i).getFilename());
+        }
+    }
 }
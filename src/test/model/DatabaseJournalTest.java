@@ -0,0 +1,133 @@
+package model;
+
+import audio.AudioDataStructure;
+import audio.ID3Container;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatabaseJournalTest {
+
+    @Test
+    public void replayTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("1.audiodex.journal");
+        DatabaseJournal journal = new DatabaseJournal(file.toString());
+        assertEquals(0, journal.replay(record -> fail("Nothing to replay")));
+        AudioDataStructure data = new AudioDataStructure("./data/scarlet.aif");
+        journal.append(List.of(DatabaseJournal.putRecord(data)));
+        journal.append(List.of(DatabaseJournal.removeRecord(data.getFilename()),
+                DatabaseJournal.settingsRecord(new ApplicationSettings())));
+        assertEquals(2, journal.getBatchCount());
+        List<String> ops = new ArrayList<>();
+        journal = new DatabaseJournal(file.toString());
+        assertEquals(2, journal.replay(record -> ops.add(record.getString("op"))));
+        assertEquals(List.of("put", "remove", "settings"), ops);
+        assertTrue(journal.dropLastBatch());
+        ops.clear();
+        assertEquals(1, new DatabaseJournal(file.toString()).replay(record -> ops.add(record.getString("op"))));
+        assertEquals(List.of("put"), ops);
+        assertTrue(journal.dropLastBatch());
+        assertFalse(journal.dropLastBatch());
+        assertEquals(0, Files.size(file));
+    }
+
+    @Test
+    public void tornWriteTest(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("1.audiodex.journal");
+        DatabaseJournal journal = new DatabaseJournal(file.toString());
+        journal.append(List.of(DatabaseJournal.settingsRecord(new ApplicationSettings())));
+        long committed = Files.size(file);
+        // Process died halfway through the next save
+        String torn = DatabaseJournal.removeRecord("/lmao.mp3") + "\n{\"op\":\"rem";
+        Files.write(file, torn.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        List<JSONObject> replayed = new ArrayList<>();
+        journal = new DatabaseJournal(file.toString());
+        assertEquals(1, journal.replay(replayed::add));
+        assertEquals(1, replayed.size());
+        assertEquals(committed, Files.size(file)); // Torn batch is cut off
+        journal.append(Collections.emptyList());
+        assertEquals(2, new DatabaseJournal(file.toString()).replay(record -> { }));
+    }
+
+    @Test
+    public void dataManagerTest(@TempDir Path dir) throws IOException {
+        DataManager database = new DataManager();
+        database.setUserDir(dir.toString() + "/");
+        database.loadDatabase();
+        database.addFileToSongDatabase("./data/scarlet.aif");
+        database.addFileToSongDatabase("./data/scarlet.flac");
+        database.addFileToSongDatabase("./data/scarlet.mp3");
+        assertTrue(database.saveDatabaseFile());
+        Path snapshot = dir.resolve("1.audiodex.json");
+        long snapshotSize = Files.size(snapshot);
+        // Small changes only touch the journal
+        ID3Container id3 = new ID3Container(database.getAudioFile(0).getId3Data().encode());
+        id3.setID3Data("Title", "Not Scarlet Fire");
+        database.getAudioFile(0).updateID3(id3);
+        assertTrue(database.saveDatabaseFile());
+        database.removeSongIndex(2);
+        database.getSettings().toggleSoundCheck();
+        assertTrue(database.saveDatabaseFile());
+        assertEquals(snapshotSize, Files.size(snapshot));
+        assertFalse(Files.exists(dir.resolve("2.audiodex.json")));
+        assertTrue(Files.exists(dir.resolve("1.audiodex.journal")));
+        // Snapshot + journal gives back the saved state
+        DataManager reloaded = new DataManager();
+        reloaded.setUserDir(dir.toString() + "/");
+        reloaded.loadDatabase();
+        assertEquals(2, reloaded.audioListSize());
+        assertEquals("Not Scarlet Fire", reloaded.getAudioFile(0).getId3Data().getID3Data("Title"));
+        assertTrue(reloaded.getSettings().doSoundCheck());
+        assertFalse(reloaded.beenModified());
+        // Each revert drops one save
+        reloaded.revertDb();
+        assertEquals(3, reloaded.audioListSize());
+        assertFalse(reloaded.getSettings().doSoundCheck());
+        assertEquals("Not Scarlet Fire", reloaded.getAudioFile(0).getId3Data().getID3Data("Title"));
+        reloaded.revertDb();
+        assertEquals("Scarlet Fire", reloaded.getAudioFile(0).getId3Data().getID3Data("Title"));
+        reloaded.revertDb(); // Nothing older to go back to
+        assertEquals(3, reloaded.audioListSize());
+        database.cleanDb(1);
+        assertFalse(Files.exists(dir.resolve("1.audiodex.journal")));
+    }
+
+    @Test
+    public void dirtyTrackingTest(@TempDir Path dir) throws IOException {
+        DataManager database = new DataManager();
+        database.setUserDir(dir.toString() + "/");
+        database.loadDatabase();
+        database.addFileToSongDatabase("./data/scarlet.aif");
+        database.addFileToSongDatabase("./data/scarlet.flac");
+        assertTrue(database.beenModified());
+        assertTrue(database.saveDatabaseFile());
+        assertFalse(database.beenModified());
+        // Editing tags in place is noticed without rehashing anything
+        database.getAudioFile(1).getId3Data().setID3Data("Album", "Lmao");
+        assertTrue(database.beenModified());
+        assertTrue(database.saveDatabaseFile());
+        assertFalse(database.beenModified());
+        // Only the changed entry is journaled
+        List<String> lines = Files.readAllLines(dir.resolve("1.audiodex.journal"));
+        assertEquals(2, lines.size());
+        assertEquals("Lmao", new JSONObject(lines.get(0)).getJSONObject("data")
+                .getJSONObject("ID3data").getString("Album"));
+        // Removed entries stop being tracked
+        AudioDataStructure removed = database.getAudioFile(0);
+        database.removeSongIndex(0);
+        assertTrue(database.saveDatabaseFile());
+        removed.getId3Data().setID3Data("Album", "Gone");
+        assertFalse(database.beenModified());
+    }
+}
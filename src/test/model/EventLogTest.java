@@ -53,4 +53,14 @@ public class EventLogTest {
 		assertEquals("Event log cleared.", itr.next().getDescription());
 		assertFalse(itr.hasNext());
 	}
+
+	@Test
+	public void testLogWhileIterating() {
+		EventLog el = EventLog.getInstance();
+		Iterator<Event> itr = el.iterator();
+		el.logEvent(new Event("A4"));   // Iterator walks a copy, so this doesn't invalidate it
+		while (itr.hasNext()) {
+			assertFalse(itr.next().getDescription().equals("A4"));
+		}
+	}
 }
@@ -0,0 +1,66 @@
+package model;
+
+import audio.AudioDataStructure;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonDatabaseTest {
+
+    @Test
+    public void roundTripTest() {
+        List<AudioDataStructure> files = new ArrayList<>();
+        files.add(new AudioDataStructure("./data/scarlet.aif"));
+        files.add(new AudioDataStructure("./data/scarlet.mp3"));
+        ApplicationSettings settings = new ApplicationSettings();
+        settings.toggleSoundCheck();
+        StringWriter writer = new StringWriter();
+        JsonDatabase.write(writer, settings, files);
+        // Same layout as before, so older versions can still read it
+        JSONObject tree = new JSONObject(writer.toString());
+        assertEquals(2, tree.getJSONArray("files").length());
+        List<AudioDataStructure> loaded = new ArrayList<>();
+        ApplicationSettings loadedSettings = JsonDatabase.read(new StringReader(writer.toString()), loaded::add);
+        assertEquals(settings.hashCode(), loadedSettings.hashCode());
+        assertEquals(files, loaded);
+        assertEquals(files.get(1).getId3Data().getID3Data("Title"), loaded.get(1).getId3Data().getID3Data("Title"));
+    }
+
+    @Test
+    public void legacyAndOrderTest() {
+        JSONArray array = new JSONArray();
+        array.put(new AudioDataStructure("./data/scarlet.aif").encode());
+        List<AudioDataStructure> loaded = new ArrayList<>();
+        assertNull(JsonDatabase.read(new StringReader(array.toString()), loaded::add));
+        assertEquals(1, loaded.size());
+        loaded.clear();
+        String reordered = "{\"unknown\": {\"a\": [1, 2]}, \"files\": " + array + ", \"settings\": "
+                + new ApplicationSettings().encode() + "}";
+        assertNotNull(JsonDatabase.read(new StringReader(reordered), loaded::add));
+        assertEquals(1, loaded.size());
+        assertNull(JsonDatabase.read(new StringReader(" {} "), loaded::add));
+        assertNull(JsonDatabase.read(new StringReader("[]"), loaded::add));
+    }
+
+    @Test
+    public void malformedTest() {
+        String valid = "{\"settings\": " + new ApplicationSettings().encode() + ", \"files\": ["
+                + new AudioDataStructure("./data/scarlet.aif").encode() + "]}";
+        List<AudioDataStructure> loaded = new ArrayList<>();
+        assertThrows(JSONException.class, () ->
+                JsonDatabase.read(new StringReader(valid.substring(0, valid.length() - 10)), loaded::add));
+        assertThrows(JSONException.class, () -> JsonDatabase.read(new StringReader("lmao"), loaded::add));
+        assertThrows(JSONException.class, () -> JsonDatabase.read(new StringReader("[1]"), loaded::add));
+        assertThrows(JSONException.class, () -> JsonDatabase.read(new StringReader("{\"files\" []}"),
+                loaded::add));
+        assertEquals(-1, JsonDatabase.write("\u0000", new ApplicationSettings(), loaded));
+    }
+}
@@ -0,0 +1,66 @@
+package model;
+
+import audio.AudioDataStructure;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibraryScannerTest {
+
+    @Test
+    public void scanOrderTest() throws IOException {
+        List<String> expected;
+        try (Stream<Path> walk = Files.walk(Paths.get("./data/readonly"))) {
+            expected = walk.filter(Files::isRegularFile).map(path -> path.toAbsolutePath().normalize().toString())
+                    .collect(Collectors.toList());
+        }
+        List<String> merged = new ArrayList<>();
+        int[] lastProgress = new int[2];
+        LibraryScanner scanner = new LibraryScanner(3);
+        scanner.setProgressListener((scanned, found, filesPerSecond) -> {
+            assertTrue(scanned <= found);
+            assertTrue(filesPerSecond >= 0);
+            lastProgress[0] = scanned;
+            lastProgress[1] = found;
+        });
+        scanner.scan("./data/readonly", AudioDataStructure::new, data -> merged.add(data.getFilename()));
+        assertEquals(expected.size(), scanner.getFilesScanned());
+        assertEquals(expected.size(), lastProgress[0]);
+        assertEquals(expected.size(), lastProgress[1]);
+        assertEquals(expected, merged); // Merged in the order files were found
+        double filesPerSecond = scanner.getFilesPerSecond();
+        ExceptionIgnore.ignoreExc(() -> Thread.sleep(20));
+        assertEquals(filesPerSecond, scanner.getFilesPerSecond()); // Stops counting once the scan is done
+    }
+
+    @Test
+    public void skipAndFailTest() {
+        LibraryScanner scanner = new LibraryScanner(2);
+        List<AudioDataStructure> merged = new ArrayList<>();
+        scanner.scan("./data/readonly", filename -> {
+            if (filename.endsWith(".flac")) {
+                throw new IOException("Probe failed");
+            }
+            return null;
+        }, merged::add);
+        assertTrue(merged.isEmpty());
+        assertTrue(scanner.getFilesScanned() > 0);
+    }
+
+    @Test
+    public void notDirectoryTest() {
+        LibraryScanner scanner = new LibraryScanner();
+        scanner.scan("./data/scarlet.mp3", filename -> fail("Should not probe"), data -> fail("Should not merge"));
+        scanner.scan("./data/lmao", filename -> fail("Should not probe"), data -> fail("Should not merge"));
+        assertEquals(0, scanner.getFilesScanned());
+    }
+}
@@ -7,10 +7,15 @@ import org.junit.jupiter.api.ClassOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestClassOrder;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.zip.CRC32;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -57,4 +62,23 @@ public class UtilitiesTest {
             assertTrue(FileManager.isRoot(new File("/")));
         }
     }
+
+    @Test
+    public void AtomicWriteTest(@TempDir Path dir) throws IOException {
+        String filename = dir.resolve("test.txt").toString();
+        assertTrue(FileManager.writeToFile(filename, "old"));
+        assertTrue(FileManager.writeToFile(filename, "new contents"));
+        assertEquals("new contents", FileManager.readFile(filename));
+        CRC32 crc = new CRC32();
+        crc.update("new contents".getBytes(StandardCharsets.UTF_8));
+        assertEquals(crc.getValue(), FileManager.checksum(filename));
+        // Failed writes leave the old file alone
+        assertEquals(-1, FileManager.writeAtomically(filename, out -> {
+            out.write(1);
+            throw new IOException("Disk fell out");
+        }));
+        assertEquals("new contents", FileManager.readFile(filename));
+        assertEquals(1, dir.toFile().list().length); // No temporary files left over
+        assertEquals(-1, FileManager.checksum(dir.resolve("lmao").toString()));
+    }
 }